@@ -18,13 +18,18 @@
 package org.ladysnake.satin;
 
 import net.fabricmc.api.ClientModInitializer;
+import net.fabricmc.fabric.api.client.rendering.v1.HudRenderCallback;
+import net.fabricmc.fabric.api.resource.ResourceManagerHelper;
 import net.fabricmc.loader.api.FabricLoader;
+import net.minecraft.resource.ResourceType;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apiguardian.api.API;
 import org.ladysnake.satin.api.event.ResolutionChangeCallback;
 import org.ladysnake.satin.api.event.WorldRendererReloadCallback;
 import org.ladysnake.satin.impl.ReloadableShaderEffectManager;
+import org.ladysnake.satin.impl.RenderStatsOverlay;
+import org.ladysnake.satin.impl.ShaderReloadListener;
 
 import static org.apiguardian.api.API.Status.STABLE;
 
@@ -46,6 +51,8 @@ public class Satin implements ClientModInitializer {
     public void onInitializeClient() {
         ResolutionChangeCallback.EVENT.register(ReloadableShaderEffectManager.INSTANCE);
         WorldRendererReloadCallback.EVENT.register(ReloadableShaderEffectManager.INSTANCE);
+        HudRenderCallback.EVENT.register(RenderStatsOverlay::render);
+        ResourceManagerHelper.get(ResourceType.CLIENT_RESOURCES).registerReloadListener(new ShaderReloadListener());
         if (FabricLoader.getInstance().isModLoaded("optifabric")) {
             LOGGER.warn("[Satin] Optifine present in the instance, custom entity post process shaders will not work");
         }
@@ -0,0 +1,60 @@
+/*
+ * Satin
+ * Copyright (C) 2019-2024 Ladysnake
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; If not, see <https://www.gnu.org/licenses>.
+ */
+package org.ladysnake.satin.api.managed;
+
+import net.minecraft.client.MinecraftClient;
+import org.apiguardian.api.API;
+
+import java.util.List;
+
+import static org.apiguardian.api.API.Status.EXPERIMENTAL;
+
+/**
+ * A sequence of shader effects rendered one after the other, each one reading the output of the previous one.
+ *
+ * <p>Instead of every effect writing its result to the {@link MinecraftClient#getFramebuffer() main framebuffer}
+ * and the next one reading it back, intermediate results go through a pair of buffers owned by the chain,
+ * and only the last effect writes to the main framebuffer. Graphic state is also only set up and restored once per chain.
+ *
+ * <p>Member effects keep their own uniforms and targets, and can still be rendered on their own.
+ * Effects with auxiliary targets sampling the main framebuffer's color ({@code "id": "minecraft:main"}) cannot read
+ * a chain buffer instead: the previous output gets copied to the main framebuffer before they render,
+ * and they write their own output to the main framebuffer, so that they see the same content as when rendered on their own.
+ *
+ * @see ShaderEffectManager#createEffectChain(ManagedShaderEffect...)
+ */
+@API(status = EXPERIMENTAL, since = "2.1.0")
+public interface EffectChain {
+    /**
+     * @return the effects of this chain, in rendering order
+     */
+    List<ManagedShaderEffect> getEffects();
+
+    /**
+     * Renders every effect of this chain that is active in the current frame.
+     *
+     * @param tickDelta the fraction of a tick elapsed since the last one
+     * @see ManagedShaderEffect#render(float)
+     */
+    void render(float tickDelta);
+
+    /**
+     * Releases the buffers owned by this chain. The chain can still be rendered afterwards, in which case they get allocated again.
+     */
+    void release();
+}
@@ -0,0 +1,62 @@
+/*
+ * Satin
+ * Copyright (C) 2019-2024 Ladysnake
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; If not, see <https://www.gnu.org/licenses>.
+ */
+package org.ladysnake.satin.api.managed;
+
+import org.apiguardian.api.API;
+
+import static org.apiguardian.api.API.Status.EXPERIMENTAL;
+
+/**
+ * The ways in which a {@link ManagedShaderEffect} may be degraded when managed effects exceed their
+ * {@linkplain ShaderEffectManager#setGpuTimeBudget(float) GPU time budget}.
+ *
+ * @see ManagedShaderEffect#setDegradation(EffectDegradation)
+ */
+@API(status = EXPERIMENTAL, since = "2.1.0")
+public enum EffectDegradation {
+    /**
+     * The effect always renders at full quality
+     */
+    NONE(0f),
+    /**
+     * The effect renders at half its usual {@linkplain ManagedShaderEffect#getRenderScale() resolution scale}
+     */
+    REDUCE_RESOLUTION(0.75f),
+    /**
+     * The effect only renders every other frame.
+     * On skipped frames, the main framebuffer gets its last output again, which lags one frame behind the world.
+     */
+    HALF_RATE(0.5f),
+    /**
+     * The effect does not render at all
+     */
+    SKIP(1f);
+
+    private final float savings;
+
+    EffectDegradation(float savings) {
+        this.savings = savings;
+    }
+
+    /**
+     * @return the expected fraction of an effect's GPU time saved by this degradation
+     */
+    public float getExpectedSavings() {
+        return this.savings;
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Satin
+ * Copyright (C) 2019-2024 Ladysnake
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; If not, see <https://www.gnu.org/licenses>.
+ */
+package org.ladysnake.satin.api.managed;
+
+import org.apiguardian.api.API;
+
+import static org.apiguardian.api.API.Status.EXPERIMENTAL;
+
+/**
+ * GPU time statistics over the last few hundred frames in which something got timed, in milliseconds.
+ *
+ * @param sampleCount the number of timed frames these statistics are computed from
+ * @param average     the average GPU time
+ * @param median      the 50th percentile of GPU times
+ * @param p95         the 95th percentile of GPU times
+ * @param max         the highest GPU time
+ * @see ShaderEffectManager#getGpuTimings(ManagedShaderEffect)
+ */
+@API(status = EXPERIMENTAL, since = "2.1.0")
+public record GpuTimings(int sampleCount, double average, double median, double p95, double max) {
+    public static final GpuTimings EMPTY = new GpuTimings(0, 0, 0, 0, 0);
+}
@@ -67,6 +67,8 @@ public interface ManagedFramebuffer {
      * Gets a simple {@link RenderLayer} that is functionally identical to {@code baseLayer},
      * but with a different {@link RenderPhase.Target} that binds this framebuffer.
      *
+     * <p>The viewport is set to the size of this framebuffer while the layer draws, then back to the size of the main framebuffer.
+     *
      * @param baseLayer the layer to copy
      * @return a render layer using this framebuffer
      * @see RenderLayerHelper#copy(RenderLayer, String, Consumer)
@@ -39,6 +39,7 @@ import org.ladysnake.satin.api.managed.uniform.UniformMat4;
 
 import javax.annotation.Nullable;
 import java.io.IOException;
+import java.util.function.BooleanSupplier;
 import java.util.function.Consumer;
 
 import static org.apiguardian.api.API.Status.*;
@@ -129,7 +130,8 @@ public interface ManagedShaderEffect extends UniformFinder {
      * draw, draws the {@link MinecraftClient#getFramebuffer() main framebuffer}'s texture
      * to intermediate {@link Framebuffer framebuffers} as defined by the JSON files
      * and resets part of the graphic state. The shader will be {@link #initialize() initialized}
-     * if it has not been before.
+     * if it has not been before. When called within {@link ShaderEffectManager#renderBatched(Runnable)}, resetting the graphic state
+     * is deferred until the batch ends, or until {@link ShaderEffectManager#restoreRenderState()} gets called.
      * <p>
      * This method should be called every frame when the shader is active.
      * Uniforms should be set before rendering.
@@ -137,6 +139,118 @@ public interface ManagedShaderEffect extends UniformFinder {
     @API(status = STABLE, since = "1.0.0")
     void render(float tickDelta);
 
+    /**
+     * Sets whether uniform values should be written to the underlying programs as soon as they are set,
+     * or only when this shader {@link #render(float) renders}.
+     *
+     * <p>In deferred mode, only the latest value of each uniform gets written, once per render,
+     * which saves work when uniforms are set several times per frame or when this effect
+     * does not render every frame. This applies to uniforms, uniform arrays and samplers alike,
+     * except for sampler units assigned through {@link org.ladysnake.satin.api.managed.uniform.SamplerUniform#setDirect(int)}.
+     * Values set through {@link #setupDynamicUniforms(int, Runnable)} and {@link #getShaderEffect()} bypass this mechanism.
+     *
+     * @param deferred {@code true} to delay uniform writes until the next render, {@code false} to write them immediately
+     */
+    @API(status = EXPERIMENTAL, since = "2.1.0")
+    void setDeferredUniformUploads(boolean deferred);
+
+    /**
+     * Sets a fixed resolution scale for the targets of this effect.
+     *
+     * <p>Targets that are sized after the game's framebuffer in the JSON definition get allocated at
+     * {@code scale} times its size, and every pass renders at the resolution of its output.
+     * The final pass writing to {@code minecraft:main} then upscales its input to the full resolution.
+     * Targets with an explicit size are not affected.
+     *
+     * <p>Calling this method disables any {@linkplain #setDynamicRenderScale(float, float) dynamic render scale}.
+     *
+     * @param scale the resolution scale, between 0 (exclusive) and 1 (inclusive)
+     */
+    @API(status = EXPERIMENTAL, since = "2.1.0")
+    void setRenderScale(float scale);
+
+    /**
+     * Lets the resolution scale of this effect's targets be driven by the measured frame time.
+     *
+     * <p>When frames take longer than {@code targetFrameTime}, the scale progressively goes down until
+     * it reaches {@code minScale}. It goes back up towards 1 when frames get faster than the target.
+     *
+     * @param minScale        the lowest resolution scale this effect may run at, between 0 (exclusive) and 1 (inclusive)
+     * @param targetFrameTime the frame time to aim for, in milliseconds
+     * @see #setRenderScale(float)
+     */
+    @API(status = EXPERIMENTAL, since = "2.1.0")
+    void setDynamicRenderScale(float minScale, float targetFrameTime);
+
+    /**
+     * @return the resolution scale currently used by this effect's targets
+     */
+    @API(status = EXPERIMENTAL, since = "2.1.0")
+    float getRenderScale();
+
+    /**
+     * Sets the priority of this effect when managed effects exceed their {@linkplain ShaderEffectManager#setGpuTimeBudget(float) GPU time budget}.
+     * Effects with a lower priority get degraded first.
+     *
+     * @param priority the priority of this effect, 0 by default
+     */
+    @API(status = EXPERIMENTAL, since = "2.1.0")
+    void setPriority(int priority);
+
+    /**
+     * Sets how this effect may be degraded when managed effects exceed their {@linkplain ShaderEffectManager#setGpuTimeBudget(float) GPU time budget}.
+     *
+     * @param degradation the way this effect may be degraded, {@link EffectDegradation#NONE} by default
+     */
+    @API(status = EXPERIMENTAL, since = "2.1.0")
+    void setDegradation(EffectDegradation degradation);
+
+    /**
+     * Sets the GPU time this effect is expected to take, used by the budget scheduler until its actual cost has been measured.
+     *
+     * @param milliseconds the expected GPU time of a render of this effect at full quality
+     */
+    @API(status = EXPERIMENTAL, since = "2.1.0")
+    void setEstimatedCost(float milliseconds);
+
+    /**
+     * @return {@code true} if this effect is currently degraded to stay within the GPU time budget
+     */
+    @API(status = EXPERIMENTAL, since = "2.1.0")
+    boolean isDegraded();
+
+    /**
+     * Enables or disables this effect.
+     *
+     * <p>Calls to {@link #render(float)} on a disabled effect return immediately, without running any pass.
+     * Uniform values set while the effect is disabled are only uploaded once it gets enabled again,
+     * and a disabled effect does not get initialized again when resources are reloaded until it is used.
+     *
+     * @param enabled {@code false} to make this effect skip rendering, {@code true} by default
+     */
+    @API(status = EXPERIMENTAL, since = "2.1.0")
+    void setEnabled(boolean enabled);
+
+    /**
+     * @return {@code true} if this effect is {@linkplain #setEnabled(boolean) enabled}
+     */
+    @API(status = EXPERIMENTAL, since = "2.1.0")
+    boolean isEnabled();
+
+    /**
+     * Sets a condition for this effect to render, evaluated once at the start of every frame.
+     *
+     * <p>Calls to {@link #render(float)} in a frame for which the predicate returned {@code false}
+     * return immediately, without running any pass.
+     *
+     * <p>Effects can also be skipped based on the value of one of their uniforms, by adding for example
+     * {@code "satin:skip_if": {"uniform": "Intensity", "equals": 0}} to their json definition.
+     *
+     * @param predicate the condition for this effect to render, or {@code null} to always render it
+     */
+    @API(status = EXPERIMENTAL, since = "2.1.0")
+    void setActivePredicate(@Nullable BooleanSupplier predicate);
+
     @API(status = EXPERIMENTAL, since = "1.4.0")
     ManagedFramebuffer getTarget(String name);
 
@@ -157,6 +271,123 @@ public interface ManagedShaderEffect extends UniformFinder {
     @API(status = EXPERIMENTAL, since = "1.0.0")
     void setupDynamicUniforms(int index, Runnable dynamicSetBlock);
 
+    /**
+     * Finds a uniform declared in json, only targeting the pass at the given index.
+     *
+     * <p>This lets the same uniform have a different value in each pass, with the same change detection as {@link #findUniform1i(String)}.
+     * Handles obtained through this method should not be mixed with handles targeting every pass for the same uniform.
+     *
+     * @param uniformName the name of the uniform field in the shader source file
+     * @param passIndex   the index of the pass within the shader effect's JSON definition, or -1 to target every pass
+     * @throws IllegalArgumentException if {@code passIndex} is below -1
+     */
+    @API(status = EXPERIMENTAL, since = "2.1.0")
+    Uniform1i findUniform1i(String uniformName, int passIndex);
+
+    /**
+     * Finds a uniform declared in json, only targeting the pass at the given index.
+     *
+     * <p>This lets the same uniform have a different value in each pass, with the same change detection as {@link #findUniform2i(String)}.
+     * Handles obtained through this method should not be mixed with handles targeting every pass for the same uniform.
+     *
+     * @param uniformName the name of the uniform field in the shader source file
+     * @param passIndex   the index of the pass within the shader effect's JSON definition, or -1 to target every pass
+     * @throws IllegalArgumentException if {@code passIndex} is below -1
+     */
+    @API(status = EXPERIMENTAL, since = "2.1.0")
+    Uniform2i findUniform2i(String uniformName, int passIndex);
+
+    /**
+     * Finds a uniform declared in json, only targeting the pass at the given index.
+     *
+     * <p>This lets the same uniform have a different value in each pass, with the same change detection as {@link #findUniform3i(String)}.
+     * Handles obtained through this method should not be mixed with handles targeting every pass for the same uniform.
+     *
+     * @param uniformName the name of the uniform field in the shader source file
+     * @param passIndex   the index of the pass within the shader effect's JSON definition, or -1 to target every pass
+     * @throws IllegalArgumentException if {@code passIndex} is below -1
+     */
+    @API(status = EXPERIMENTAL, since = "2.1.0")
+    Uniform3i findUniform3i(String uniformName, int passIndex);
+
+    /**
+     * Finds a uniform declared in json, only targeting the pass at the given index.
+     *
+     * <p>This lets the same uniform have a different value in each pass, with the same change detection as {@link #findUniform4i(String)}.
+     * Handles obtained through this method should not be mixed with handles targeting every pass for the same uniform.
+     *
+     * @param uniformName the name of the uniform field in the shader source file
+     * @param passIndex   the index of the pass within the shader effect's JSON definition, or -1 to target every pass
+     * @throws IllegalArgumentException if {@code passIndex} is below -1
+     */
+    @API(status = EXPERIMENTAL, since = "2.1.0")
+    Uniform4i findUniform4i(String uniformName, int passIndex);
+
+    /**
+     * Finds a uniform declared in json, only targeting the pass at the given index.
+     *
+     * <p>This lets the same uniform have a different value in each pass, with the same change detection as {@link #findUniform1f(String)}.
+     * Handles obtained through this method should not be mixed with handles targeting every pass for the same uniform.
+     *
+     * @param uniformName the name of the uniform field in the shader source file
+     * @param passIndex   the index of the pass within the shader effect's JSON definition, or -1 to target every pass
+     * @throws IllegalArgumentException if {@code passIndex} is below -1
+     */
+    @API(status = EXPERIMENTAL, since = "2.1.0")
+    Uniform1f findUniform1f(String uniformName, int passIndex);
+
+    /**
+     * Finds a uniform declared in json, only targeting the pass at the given index.
+     *
+     * <p>This lets the same uniform have a different value in each pass, with the same change detection as {@link #findUniform2f(String)}.
+     * Handles obtained through this method should not be mixed with handles targeting every pass for the same uniform.
+     *
+     * @param uniformName the name of the uniform field in the shader source file
+     * @param passIndex   the index of the pass within the shader effect's JSON definition, or -1 to target every pass
+     * @throws IllegalArgumentException if {@code passIndex} is below -1
+     */
+    @API(status = EXPERIMENTAL, since = "2.1.0")
+    Uniform2f findUniform2f(String uniformName, int passIndex);
+
+    /**
+     * Finds a uniform declared in json, only targeting the pass at the given index.
+     *
+     * <p>This lets the same uniform have a different value in each pass, with the same change detection as {@link #findUniform3f(String)}.
+     * Handles obtained through this method should not be mixed with handles targeting every pass for the same uniform.
+     *
+     * @param uniformName the name of the uniform field in the shader source file
+     * @param passIndex   the index of the pass within the shader effect's JSON definition, or -1 to target every pass
+     * @throws IllegalArgumentException if {@code passIndex} is below -1
+     */
+    @API(status = EXPERIMENTAL, since = "2.1.0")
+    Uniform3f findUniform3f(String uniformName, int passIndex);
+
+    /**
+     * Finds a uniform declared in json, only targeting the pass at the given index.
+     *
+     * <p>This lets the same uniform have a different value in each pass, with the same change detection as {@link #findUniform4f(String)}.
+     * Handles obtained through this method should not be mixed with handles targeting every pass for the same uniform.
+     *
+     * @param uniformName the name of the uniform field in the shader source file
+     * @param passIndex   the index of the pass within the shader effect's JSON definition, or -1 to target every pass
+     * @throws IllegalArgumentException if {@code passIndex} is below -1
+     */
+    @API(status = EXPERIMENTAL, since = "2.1.0")
+    Uniform4f findUniform4f(String uniformName, int passIndex);
+
+    /**
+     * Finds a uniform declared in json, only targeting the pass at the given index.
+     *
+     * <p>This lets the same uniform have a different value in each pass, with the same change detection as {@link #findUniformMat4(String)}.
+     * Handles obtained through this method should not be mixed with handles targeting every pass for the same uniform.
+     *
+     * @param uniformName the name of the uniform field in the shader source file
+     * @param passIndex   the index of the pass within the shader effect's JSON definition, or -1 to target every pass
+     * @throws IllegalArgumentException if {@code passIndex} is below -1
+     */
+    @API(status = EXPERIMENTAL, since = "2.1.0")
+    UniformMat4 findUniformMat4(String uniformName, int passIndex);
+
     /**
      * Sets the value of a uniform declared in json
      *
@@ -0,0 +1,47 @@
+/*
+ * Satin
+ * Copyright (C) 2019-2024 Ladysnake
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; If not, see <https://www.gnu.org/licenses>.
+ */
+package org.ladysnake.satin.api.managed;
+
+import org.apiguardian.api.API;
+
+import static org.apiguardian.api.API.Status.EXPERIMENTAL;
+
+/**
+ * A snapshot of the work done by Satin during a single frame.
+ *
+ * @param effectsRendered       the number of {@link ManagedShaderEffect}s rendered
+ * @param passesExecuted        the number of post-processing passes run by those effects
+ * @param framebufferBinds      the number of framebuffers bound by Satin, including those bound by effect passes
+ * @param uniformSets           the number of values set through managed uniforms
+ * @param redundantUniformSets  the number of values set through managed uniforms that were skipped, as they did not change
+ * @param samplerRebinds        the number of sampler uniforms that got assigned a different texture
+ * @param depthCopies           the number of depth textures copied through {@link org.ladysnake.satin.api.experimental.ReadableDepthFramebuffer#freezeDepthMap()}
+ * @see ShaderEffectManager#getLastFrameStatistics()
+ */
+@API(status = EXPERIMENTAL, since = "2.1.0")
+public record RenderStatistics(
+        int effectsRendered,
+        int passesExecuted,
+        int framebufferBinds,
+        int uniformSets,
+        int redundantUniformSets,
+        int samplerRebinds,
+        int depthCopies
+) {
+    public static final RenderStatistics EMPTY = new RenderStatistics(0, 0, 0, 0, 0, 0, 0);
+}
@@ -22,8 +22,11 @@ import net.minecraft.client.render.VertexFormat;
 import net.minecraft.client.render.VertexFormats;
 import net.minecraft.util.Identifier;
 import org.apiguardian.api.API;
+import org.ladysnake.satin.api.managed.uniform.UniformFinder;
+import org.ladysnake.satin.api.managed.uniform.UniformName;
 import org.ladysnake.satin.impl.ReloadableShaderEffectManager;
 
+import java.util.List;
 import java.util.function.Consumer;
 
 import static org.apiguardian.api.API.Status.EXPERIMENTAL;
@@ -116,4 +119,118 @@ public interface ShaderEffectManager {
 
     @API(status = EXPERIMENTAL, since = "1.4.0")
     void dispose(ManagedCoreShader shader);
+
+    /**
+     * Creates a chain of shader effects, which renders them one after the other without
+     * going through the main framebuffer in between.
+     *
+     * @param effects the effects to render, in order
+     * @return a new effect chain
+     * @see EffectChain
+     */
+    @API(status = EXPERIMENTAL, since = "2.1.0")
+    EffectChain createEffectChain(ManagedShaderEffect... effects);
+
+    /**
+     * Runs code rendering several shader effects, restoring the graphic state only once it returns.
+     *
+     * <p>By default, every {@linkplain ManagedShaderEffect#render(float) effect render} binds the main framebuffer
+     * and restores its viewport, blending and depth testing afterwards. Within {@code renderer}, effects
+     * instead leave the graphic state as they need it, so that consecutive effects do not set it up again.
+     * Code drawing anything else in between should call {@link #restoreRenderState()} first.
+     *
+     * <p>Batches may be nested, in which case the graphic state gets restored when the outermost one returns.
+     *
+     * @param renderer code rendering shader effects
+     * @see EffectChain
+     */
+    @API(status = EXPERIMENTAL, since = "2.1.0")
+    void renderBatched(Runnable renderer);
+
+    /**
+     * Immediately restores the graphic state changed by shader effects rendered within {@link #renderBatched(Runnable)}.
+     *
+     * <p>Outside of a batch, effects restore the graphic state themselves and calling this method has no effect.
+     */
+    @API(status = EXPERIMENTAL, since = "2.1.0")
+    void restoreRenderState();
+
+    /**
+     * Creates an implementation of a uniform binder interface, which abstract methods
+     * are all annotated with {@link UniformName}.
+     *
+     * <p>Uniforms are looked up once, when the binder is created. Calling a binder method
+     * then writes directly to the corresponding uniform, without any name lookup.
+     * Binders keep working across shader reloads and resolution changes.
+     *
+     * @param shader     the shader declaring the uniforms
+     * @param binderType a public interface declaring a setter for each uniform
+     * @param <B>        the type of binder
+     * @return a binder for the given shader's uniforms
+     * @throws IllegalArgumentException if {@code binderType} is not a public interface, or declares invalid methods
+     */
+    @API(status = EXPERIMENTAL, since = "2.1.0")
+    <B> B createUniformBinder(UniformFinder shader, Class<B> binderType);
+
+    /**
+     * Returns counters describing the work done by Satin during the last complete frame.
+     *
+     * <p>Counters are always collected, and are cheap enough to be queried every frame.
+     *
+     * @return a snapshot of the last frame's render statistics
+     */
+    @API(status = EXPERIMENTAL, since = "2.1.0")
+    RenderStatistics getLastFrameStatistics();
+
+    /**
+     * Sets whether the {@linkplain #getLastFrameStatistics() last frame's render statistics} should be displayed on screen.
+     *
+     * @param enabled {@code true} to display the statistics overlay
+     */
+    @API(status = EXPERIMENTAL, since = "2.1.0")
+    void setStatisticsOverlayEnabled(boolean enabled);
+
+    /**
+     * Sets whether the GPU time taken by managed shader effects should be measured.
+     *
+     * <p>Timing is also enabled while the {@linkplain #setStatisticsOverlayEnabled(boolean) statistics overlay} is displayed.
+     * Results are read back a few frames late, so that measuring never stalls rendering.
+     *
+     * @param enabled {@code true} to measure the GPU time of every rendered effect
+     */
+    @API(status = EXPERIMENTAL, since = "2.1.0")
+    void setGpuTimingEnabled(boolean enabled);
+
+    /**
+     * Returns statistics of the GPU time taken by the recent renders of a shader effect.
+     *
+     * @param effect a shader effect managed by this manager
+     * @return the effect's GPU time statistics, or {@link GpuTimings#EMPTY} if it has not been timed
+     * @see #setGpuTimingEnabled(boolean)
+     */
+    @API(status = EXPERIMENTAL, since = "2.1.0")
+    GpuTimings getGpuTimings(ManagedShaderEffect effect);
+
+    /**
+     * Returns statistics of the GPU time taken by each pass of a shader effect during its recent renders.
+     *
+     * @param effect a shader effect managed by this manager
+     * @return the GPU time statistics of each pass, in pass order, or an empty list if the effect has not been timed
+     * @see #setGpuTimingEnabled(boolean)
+     */
+    @API(status = EXPERIMENTAL, since = "2.1.0")
+    List<GpuTimings> getPassGpuTimings(ManagedShaderEffect effect);
+
+    /**
+     * Sets the GPU time managed shader effects may take each frame, enabling {@linkplain #setGpuTimingEnabled(boolean) GPU timing}.
+     *
+     * <p>When the measured cost of recently rendered effects exceeds this budget, effects get
+     * {@linkplain ManagedShaderEffect#setDegradation(EffectDegradation) degraded} by ascending
+     * {@linkplain ManagedShaderEffect#setPriority(int) priority} until the expected cost fits in the budget.
+     * The cost of effects that have not been measured yet is {@linkplain ManagedShaderEffect#setEstimatedCost(float) estimated}.
+     *
+     * @param milliseconds the GPU time budget per frame, or 0 to never degrade effects
+     */
+    @API(status = EXPERIMENTAL, since = "2.1.0")
+    void setGpuTimeBudget(float milliseconds);
 }
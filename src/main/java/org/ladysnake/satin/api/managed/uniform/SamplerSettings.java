@@ -0,0 +1,61 @@
+/*
+ * Satin
+ * Copyright (C) 2019-2024 Ladysnake
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; If not, see <https://www.gnu.org/licenses>.
+ */
+package org.ladysnake.satin.api.managed.uniform;
+
+import org.apiguardian.api.API;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL12;
+
+import static org.apiguardian.api.API.Status.EXPERIMENTAL;
+
+/**
+ * The parameters used to sample a texture, independently of the texture's own parameters.
+ *
+ * <p>Each distinct set of parameters is backed by a single shared OpenGL sampler object,
+ * letting the same texture be sampled with different settings by different shaders
+ * without changing the texture's state.
+ *
+ * <p>Post shader programs can also select sampler settings in their JSON definition:
+ * <pre>{@code
+ * "samplers": [
+ *     { "name": "DiffuseSampler", "satin:filter": "nearest", "satin:wrap": "repeat" }
+ * ]
+ * }</pre>
+ * Supported keys are {@code satin:filter} (or {@code satin:min_filter} and {@code satin:mag_filter}),
+ * {@code satin:wrap} and {@code satin:compare}.
+ *
+ * @param minFilter   the minifying filter, e.g. {@link GL11#GL_LINEAR}
+ * @param magFilter   the magnifying filter, either {@link GL11#GL_LINEAR} or {@link GL11#GL_NEAREST}
+ * @param wrap        the wrap mode used for every texture coordinate, e.g. {@link GL12#GL_CLAMP_TO_EDGE}
+ * @param compareFunc the depth comparison function, e.g. {@link GL11#GL_LEQUAL}, or {@link GL11#GL_NONE} to disable depth comparison
+ * @see SamplerUniform#setSamplerSettings(SamplerSettings)
+ */
+@API(status = EXPERIMENTAL, since = "2.1.0")
+public record SamplerSettings(int minFilter, int magFilter, int wrap, int compareFunc) {
+    public static final SamplerSettings LINEAR_CLAMP = of(GL11.GL_LINEAR, GL12.GL_CLAMP_TO_EDGE);
+    public static final SamplerSettings NEAREST_CLAMP = of(GL11.GL_NEAREST, GL12.GL_CLAMP_TO_EDGE);
+
+    /**
+     * @param filter the filter used for both minification and magnification
+     * @param wrap   the wrap mode used for every texture coordinate
+     * @return sampler settings without depth comparison
+     */
+    public static SamplerSettings of(int filter, int wrap) {
+        return new SamplerSettings(filter, filter, wrap, GL11.GL_NONE);
+    }
+}
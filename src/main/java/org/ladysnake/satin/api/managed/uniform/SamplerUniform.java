@@ -21,6 +21,9 @@ import net.minecraft.client.gl.Framebuffer;
 import net.minecraft.client.texture.AbstractTexture;
 import org.apiguardian.api.API;
 
+import javax.annotation.Nullable;
+
+import static org.apiguardian.api.API.Status.EXPERIMENTAL;
 import static org.apiguardian.api.API.Status.MAINTAINED;
 
 @API(status = MAINTAINED)
@@ -57,4 +60,16 @@ public interface SamplerUniform {
      */
     @API(status = MAINTAINED, since = "1.4.0")
     void set(int textureName);
+
+    /**
+     * Sets the parameters with which this sampler reads its texture, overriding the texture's own parameters
+     * and any settings from the program's JSON definition.
+     *
+     * <p>This has no effect if the driver does not support sampler objects (OpenGL 3.3).
+     *
+     * @param settings the settings to sample the texture with, or {@code null} to go back to the JSON-defined settings if any,
+     *                 or to the texture's own parameters otherwise
+     */
+    @API(status = EXPERIMENTAL, since = "2.1.0")
+    void setSamplerSettings(@Nullable SamplerSettings settings);
 }
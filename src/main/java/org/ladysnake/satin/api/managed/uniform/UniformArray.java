@@ -0,0 +1,131 @@
+/*
+ * Satin
+ * Copyright (C) 2019-2024 Ladysnake
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; If not, see <https://www.gnu.org/licenses>.
+ */
+package org.ladysnake.satin.api.managed.uniform;
+
+import org.apiguardian.api.API;
+import org.joml.Matrix4f;
+import org.joml.Vector4f;
+
+import static org.apiguardian.api.API.Status.EXPERIMENTAL;
+
+/**
+ * A GLSL uniform array, such as {@code uniform vec4 Lights[32];}.
+ *
+ * <p>Element values are staged off-heap, and every contiguous range of elements modified since the last draw
+ * gets uploaded with a single {@code glUniform*v} call when the program is next bound.
+ * Unlike regular uniforms, array uniforms do not need to be declared in the program's JSON file.
+ *
+ * @see UniformFinder#findUniformArray(String, ElementType, int)
+ */
+@API(status = EXPERIMENTAL, since = "2.1.0")
+public interface UniformArray {
+    /**
+     * @return the type of this array's elements
+     */
+    ElementType getElementType();
+
+    /**
+     * @return the number of elements in this array, as requested when it was found
+     */
+    int getLength();
+
+    /**
+     * Sets the value of a {@code float} element
+     *
+     * @throws IllegalStateException if this array's elements are not {@link ElementType#FLOAT floats}
+     */
+    void set(int index, float value);
+
+    /**
+     * Sets the value of a {@code vec2} element
+     *
+     * @throws IllegalStateException if this array's elements are not {@link ElementType#VEC2 vec2s}
+     */
+    void set(int index, float value0, float value1);
+
+    /**
+     * Sets the value of a {@code vec3} element
+     *
+     * @throws IllegalStateException if this array's elements are not {@link ElementType#VEC3 vec3s}
+     */
+    void set(int index, float value0, float value1, float value2);
+
+    /**
+     * Sets the value of a {@code vec4} element
+     *
+     * @throws IllegalStateException if this array's elements are not {@link ElementType#VEC4 vec4s}
+     */
+    void set(int index, float value0, float value1, float value2, float value3);
+
+    /**
+     * Sets the value of a {@code vec4} element
+     *
+     * @throws IllegalStateException if this array's elements are not {@link ElementType#VEC4 vec4s}
+     */
+    void set(int index, Vector4f value);
+
+    /**
+     * Sets the value of a {@code mat4} element
+     *
+     * @throws IllegalStateException if this array's elements are not {@link ElementType#MAT4 4x4 matrices}
+     */
+    void set(int index, Matrix4f value);
+
+    /**
+     * Sets the value of every element of this array
+     *
+     * @param values the values of every element, in order, with a length of {@code getLength() * getElementType().getComponents()}
+     * @throws IllegalArgumentException if {@code values} has an invalid length
+     */
+    void setFromArray(float[] values);
+
+    /**
+     * Sets the value of a range of elements in this array, leaving the others untouched.
+     *
+     * <p>Only the modified range gets uploaded on the next draw, which makes this method
+     * well suited to updating a few elements of a large array.
+     *
+     * @param firstElement the index of the first element to set
+     * @param values       an array containing the values of the elements to set
+     * @param offset       the index in {@code values} of the first element's first component
+     * @param elementCount the number of elements to set
+     * @throws IndexOutOfBoundsException if the range exceeds the bounds of this uniform array or of {@code values}
+     */
+    void setFromArray(int firstElement, float[] values, int offset, int elementCount);
+
+    enum ElementType {
+        FLOAT(1),
+        VEC2(2),
+        VEC3(3),
+        VEC4(4),
+        MAT4(16);
+
+        private final int components;
+
+        ElementType(int components) {
+            this.components = components;
+        }
+
+        /**
+         * @return the number of floats making up a single element of this type
+         */
+        public int getComponents() {
+            return this.components;
+        }
+    }
+}
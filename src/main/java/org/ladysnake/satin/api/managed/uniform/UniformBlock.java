@@ -0,0 +1,121 @@
+/*
+ * Satin
+ * Copyright (C) 2019-2024 Ladysnake
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; If not, see <https://www.gnu.org/licenses>.
+ */
+package org.ladysnake.satin.api.managed.uniform;
+
+import org.apiguardian.api.API;
+
+import static org.apiguardian.api.API.Status.EXPERIMENTAL;
+
+/**
+ * A {@code std140} uniform block backed by a single uniform buffer object.
+ *
+ * <p>Every managed program that declares a block with the same name shares the same buffer,
+ * meaning a value written through one of the field handles is seen by all of them.
+ * Field writes are staged on the CPU and uploaded at most once per frame, right before the block is used.
+ *
+ * <p>Example of a block declaration in GLSL:
+ * <pre>{@code
+ * layout(std140) uniform MyParameters {
+ *     vec4 Color;
+ *     float Intensity;
+ * };
+ * }</pre>
+ *
+ * @see UniformFinder#findUniformBlock(String)
+ * @since 2.1.0
+ */
+@API(status = EXPERIMENTAL, since = "2.1.0")
+public interface UniformBlock {
+    /**
+     * Finds a field declared in this block
+     *
+     * @param fieldName the name of the field in the shader source file
+     */
+    @API(status = EXPERIMENTAL, since = "2.1.0")
+    Uniform1i findUniform1i(String fieldName);
+
+    /**
+     * Finds a field declared in this block
+     *
+     * @param fieldName the name of the field in the shader source file
+     */
+    @API(status = EXPERIMENTAL, since = "2.1.0")
+    Uniform2i findUniform2i(String fieldName);
+
+    /**
+     * Finds a field declared in this block
+     *
+     * @param fieldName the name of the field in the shader source file
+     */
+    @API(status = EXPERIMENTAL, since = "2.1.0")
+    Uniform3i findUniform3i(String fieldName);
+
+    /**
+     * Finds a field declared in this block
+     *
+     * @param fieldName the name of the field in the shader source file
+     */
+    @API(status = EXPERIMENTAL, since = "2.1.0")
+    Uniform4i findUniform4i(String fieldName);
+
+    /**
+     * Finds a field declared in this block
+     *
+     * @param fieldName the name of the field in the shader source file
+     */
+    @API(status = EXPERIMENTAL, since = "2.1.0")
+    Uniform1f findUniform1f(String fieldName);
+
+    /**
+     * Finds a field declared in this block
+     *
+     * @param fieldName the name of the field in the shader source file
+     */
+    @API(status = EXPERIMENTAL, since = "2.1.0")
+    Uniform2f findUniform2f(String fieldName);
+
+    /**
+     * Finds a field declared in this block
+     *
+     * @param fieldName the name of the field in the shader source file
+     */
+    @API(status = EXPERIMENTAL, since = "2.1.0")
+    Uniform3f findUniform3f(String fieldName);
+
+    /**
+     * Finds a field declared in this block
+     *
+     * @param fieldName the name of the field in the shader source file
+     */
+    @API(status = EXPERIMENTAL, since = "2.1.0")
+    Uniform4f findUniform4f(String fieldName);
+
+    /**
+     * Finds a field declared in this block
+     *
+     * @param fieldName the name of the field in the shader source file
+     */
+    @API(status = EXPERIMENTAL, since = "2.1.0")
+    UniformMat4 findUniformMat4(String fieldName);
+
+    /**
+     * @return the indexed {@code GL_UNIFORM_BUFFER} binding point this block is bound to
+     */
+    @API(status = EXPERIMENTAL, since = "2.1.0")
+    int getBindingPoint();
+}
@@ -102,4 +102,29 @@ public interface UniformFinder {
     @API(status = EXPERIMENTAL, since = "1.4.0")
     SamplerUniform findSampler(String samplerName);
 
+    /**
+     * Finds a {@code std140} uniform block declared in the shader source files.
+     *
+     * <p>Uniform blocks are shared between every managed program that declares them,
+     * so the returned object is the same regardless of which shader it was requested from.
+     *
+     * @param blockName the name of the uniform block in the shader source file
+     * @see UniformBlock
+     */
+    @API(status = EXPERIMENTAL, since = "2.1.0")
+    UniformBlock findUniformBlock(String blockName);
+
+    /**
+     * Finds a uniform array declared in the shader source files.
+     *
+     * <p>The array does not need to be declared in json.
+     *
+     * @param uniformName the name of the uniform array in the shader source file, without brackets
+     * @param elementType the type of each element of the array
+     * @param length      the number of elements in the array
+     * @throws IllegalStateException if a uniform array with the same name was previously found with a different type or length
+     * @see UniformArray
+     */
+    @API(status = EXPERIMENTAL, since = "2.1.0")
+    UniformArray findUniformArray(String uniformName, UniformArray.ElementType elementType, int length);
 }
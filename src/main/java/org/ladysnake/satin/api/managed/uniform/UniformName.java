@@ -0,0 +1,60 @@
+/*
+ * Satin
+ * Copyright (C) 2019-2024 Ladysnake
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; If not, see <https://www.gnu.org/licenses>.
+ */
+package org.ladysnake.satin.api.managed.uniform;
+
+import org.apiguardian.api.API;
+import org.ladysnake.satin.api.managed.ShaderEffectManager;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import static org.apiguardian.api.API.Status.EXPERIMENTAL;
+
+/**
+ * Binds a method of a uniform binder interface to a uniform.
+ *
+ * <p>The type of the uniform is inferred from the method's parameters, which can be
+ * 1 to 4 {@code int}s, 1 to 4 {@code float}s, a {@link org.joml.Vector2f}, {@link org.joml.Vector3f},
+ * {@link org.joml.Vector4f} or a {@link org.joml.Matrix4f}. Annotated methods must return {@code void}.
+ *
+ * <p>Example:
+ * <pre>{@code
+ * public interface MyUniforms {
+ *     @UniformName("STime")
+ *     void setTime(float time);
+ *
+ *     @UniformName("InverseTransformMatrix")
+ *     void setInverseTransform(Matrix4f matrix);
+ * }
+ * }</pre>
+ *
+ * @see ShaderEffectManager#createUniformBinder(UniformFinder, Class)
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+@API(status = EXPERIMENTAL, since = "2.1.0")
+public @interface UniformName {
+    /**
+     * @return the name of the uniform field in the shader source file
+     */
+    String value();
+}
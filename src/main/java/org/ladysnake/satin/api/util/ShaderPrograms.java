@@ -28,7 +28,11 @@ import net.minecraft.client.gl.GlUniform;
 import net.minecraft.util.Identifier;
 import org.apiguardian.api.API;
 import org.ladysnake.satin.Satin;
+import org.ladysnake.satin.impl.SamplerUnitCaches;
+import org.lwjgl.opengl.GL;
 import org.lwjgl.opengl.GL20;
+import org.lwjgl.opengl.GL41;
+import org.lwjgl.opengl.GLCapabilities;
 
 import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
@@ -46,6 +50,27 @@ public final class ShaderPrograms {
 
     /**A map of programs to maps of uniform names to location*/
     private static final Int2ObjectMap<Object2IntMap<String>> uniformsCache = new Int2ObjectOpenHashMap<>();
+    /**0 if not checked yet, 1 if supported, -1 if not*/
+    private static int directStateAccess;
+
+    /**
+     * Checks whether uniforms can be set on a program without it being currently used,
+     * through {@code glProgramUniform*} functions from OpenGL 4.1 or {@code ARB_separate_shader_objects}.
+     *
+     * <p>When this method returns {@code true}, the {@code setUniform} methods of this class
+     * can be called without {@linkplain #useShader(int) using} the program first.
+     *
+     * @return {@code true} if direct state access uniform functions are available
+     */
+    @API(status = EXPERIMENTAL, since = "2.1.0")
+    public static boolean isDirectStateAccessSupported() {
+        if (directStateAccess == 0) {
+            RenderSystem.assertOnRenderThread();
+            GLCapabilities caps = GL.getCapabilities();
+            directStateAccess = caps.glProgramUniform1i != 0L ? 1 : -1;
+        }
+        return directStateAccess > 0;
+    }
 
     /**
      * Sets the currently used program.
@@ -106,12 +131,17 @@ public final class ShaderPrograms {
         int uniform = getUniformLocation(program, uniformName);
         if (uniform != -1) {
             operation.accept(uniform);
+            // the operation may have assigned a sampler unit
+            SamplerUnitCaches.invalidate();
         }
     }
 
     /**
      * Sets the value of an int uniform from the current shader program
      *
+     * <p>If {@linkplain #isDirectStateAccessSupported() direct state access} is supported,
+     * the program does not need to be the current one.
+     *
      * @param program     OpenGL shader program object
      * @param uniformName the name of the uniform field in the shader source file
      * @param value       an int value for this uniform
@@ -124,13 +154,22 @@ public final class ShaderPrograms {
 
         int uniform = getUniformLocation(program, uniformName);
         if (uniform != -1) {
-            GL20.glUniform1i(uniform, value);
+            if (isDirectStateAccessSupported()) {
+                GL41.glProgramUniform1i(program, uniform, value);
+            } else {
+                GL20.glUniform1i(uniform, value);
+            }
+            // the uniform may be a sampler
+            SamplerUnitCaches.invalidate();
         }
     }
 
     /**
      * Sets the value of a float uniform field from the current shader program
      *
+     * <p>If {@linkplain #isDirectStateAccessSupported() direct state access} is supported,
+     * the program does not need to be the current one.
+     *
      * @param program     OpenGL shader program object
      * @param uniformName the name of the uniform field in the shader source file
      * @param value       float value of the uniform
@@ -143,13 +182,20 @@ public final class ShaderPrograms {
 
         int uniform = getUniformLocation(program, uniformName);
         if (uniform != -1) {
-            GL20.glUniform1f(uniform, value);
+            if (isDirectStateAccessSupported()) {
+                GL41.glProgramUniform1f(program, uniform, value);
+            } else {
+                GL20.glUniform1f(uniform, value);
+            }
         }
     }
 
     /**
      * Sets the value of a mat4 uniform in the current shader
      *
+     * <p>If {@linkplain #isDirectStateAccessSupported() direct state access} is supported,
+     * the program does not need to be the current one.
+     *
      * @param program     OpenGL shader program object
      * @param uniformName the name of the uniform field in the shader source file
      * @param mat4        a raw array of float values
@@ -162,7 +208,11 @@ public final class ShaderPrograms {
 
         int uniform = getUniformLocation(program, uniformName);
         if (uniform != -1) {
-            GL20.glUniformMatrix4fv(uniform, false, mat4);
+            if (isDirectStateAccessSupported()) {
+                GL41.glProgramUniformMatrix4fv(program, uniform, false, mat4);
+            } else {
+                GL20.glUniformMatrix4fv(uniform, false, mat4);
+            }
         }
     }
 
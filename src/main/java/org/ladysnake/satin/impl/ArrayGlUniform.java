@@ -0,0 +1,130 @@
+/*
+ * Satin
+ * Copyright (C) 2019-2024 Ladysnake
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; If not, see <https://www.gnu.org/licenses>.
+ */
+package org.ladysnake.satin.impl;
+
+import net.minecraft.client.gl.GlUniform;
+import net.minecraft.client.gl.ShaderProgramSetupView;
+import org.ladysnake.satin.api.managed.uniform.UniformArray;
+import org.lwjgl.opengl.GL20;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+/**
+ * A {@link GlUniform} holding a whole uniform array, which only uploads the range of elements modified since its last upload.
+ *
+ * <p>Element values are staged in the off-heap buffer allocated by {@link GlUniform}, which is freed along with its program.
+ */
+final class ArrayGlUniform extends GlUniform {
+    private static final int UNKNOWN_LOCATION = Integer.MIN_VALUE;
+
+    private final int program;
+    private final UniformArray.ElementType elementType;
+    private final int length;
+    /**Lazily queried locations of each element, as implementations are not required to give them consecutive locations*/
+    private final int[] elementLocations;
+    private int dirtyStart = Integer.MAX_VALUE;
+    private int dirtyEnd = 0;
+
+    ArrayGlUniform(String name, UniformArray.ElementType elementType, int length, int program, int location, ShaderProgramSetupView owner) {
+        super(name, getDataType(elementType), length * elementType.getComponents(), owner);
+        this.program = program;
+        this.elementType = elementType;
+        this.length = length;
+        this.elementLocations = new int[length];
+        Arrays.fill(this.elementLocations, UNKNOWN_LOCATION);
+        this.elementLocations[0] = location;
+        this.setLocation(location);
+        // elements between two modified ranges get uploaded too
+        MemoryUtil.memSet(this.getFloatData(), 0);
+    }
+
+    private static int getDataType(UniformArray.ElementType elementType) {
+        return switch (elementType) {
+            case FLOAT -> GlUniform.FLOAT1;
+            case VEC2 -> GlUniform.FLOAT2;
+            case VEC3 -> GlUniform.FLOAT3;
+            case VEC4 -> GlUniform.FLOAT4;
+            case MAT4 -> GlUniform.MAT4X4;
+        };
+    }
+
+    boolean matches(UniformArray.ElementType elementType, int length) {
+        return this.elementType == elementType && this.length == length;
+    }
+
+    /**
+     * Copies element values to the staging buffer, and marks them for upload
+     *
+     * @param firstElement the index of the first modified element
+     * @param values       the values of every element of the array
+     * @param elementCount the number of modified elements
+     */
+    void write(int firstElement, float[] values, int elementCount) {
+        int components = this.elementType.getComponents();
+        int start = firstElement * components;
+        this.getFloatData().put(start, values, start, elementCount * components);
+        this.dirtyStart = Math.min(this.dirtyStart, firstElement);
+        this.dirtyEnd = Math.max(this.dirtyEnd, firstElement + elementCount);
+    }
+
+    /**
+     * Marks every element for upload, after the program's uniform state got overwritten
+     */
+    void markAllDirty() {
+        this.dirtyStart = 0;
+        this.dirtyEnd = this.length;
+    }
+
+    @Override
+    public void upload() {
+        int start = this.dirtyStart;
+        int count = this.dirtyEnd - start;
+        if (count <= 0) {
+            return;
+        }
+        this.dirtyStart = Integer.MAX_VALUE;
+        this.dirtyEnd = 0;
+
+        int location = this.getElementLocation(start);
+        if (location == -1) {
+            // element got optimized out, and so did every element after it
+            return;
+        }
+
+        FloatBuffer data = this.getFloatData();
+        long address = MemoryUtil.memAddress(data, start * this.elementType.getComponents());
+        switch (this.elementType) {
+            case FLOAT -> GL20.nglUniform1fv(location, count, address);
+            case VEC2 -> GL20.nglUniform2fv(location, count, address);
+            case VEC3 -> GL20.nglUniform3fv(location, count, address);
+            case VEC4 -> GL20.nglUniform4fv(location, count, address);
+            case MAT4 -> GL20.nglUniformMatrix4fv(location, count, false, address);
+        }
+    }
+
+    private int getElementLocation(int element) {
+        int location = this.elementLocations[element];
+        if (location == UNKNOWN_LOCATION) {
+            location = GlUniform.getUniformLocation(this.program, this.getName() + "[" + element + "]");
+            this.elementLocations[element] = location;
+        }
+        return location;
+    }
+}
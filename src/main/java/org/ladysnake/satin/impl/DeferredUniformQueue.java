@@ -0,0 +1,50 @@
+/*
+ * Satin
+ * Copyright (C) 2019-2024 Ladysnake
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; If not, see <https://www.gnu.org/licenses>.
+ */
+package org.ladysnake.satin.impl;
+
+import java.util.Arrays;
+
+/**
+ * A dense list of {@link ManagedUniformBase uniforms} which latest value has not been written to their targets yet.
+ *
+ * <p>Each uniform is queued at most once between two flushes, no matter how many times it gets set.
+ */
+final class DeferredUniformQueue {
+    private ManagedUniformBase[] pending = new ManagedUniformBase[16];
+    private int size;
+
+    void enqueue(ManagedUniformBase uniform) {
+        if (this.size == this.pending.length) {
+            this.pending = Arrays.copyOf(this.pending, this.size * 2);
+        }
+        this.pending[this.size++] = uniform;
+    }
+
+    /**
+     * Writes the latest value of every queued uniform to its targets, then empties this queue
+     */
+    void flush() {
+        ManagedUniformBase[] pending = this.pending;
+        int size = this.size;
+        for (int i = 0; i < size; i++) {
+            pending[i].flushDeferred();
+            pending[i] = null;
+        }
+        this.size = 0;
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * Satin
+ * Copyright (C) 2019-2024 Ladysnake
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; If not, see <https://www.gnu.org/licenses>.
+ */
+package org.ladysnake.satin.impl;
+
+import org.ladysnake.satin.api.managed.GpuTimings;
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL33;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Measures the GPU time taken by a shader effect and each of its passes.
+ *
+ * <p>A {@code GL_TIMESTAMP} query is issued before the first pass and after each pass, so that a single set of queries
+ * covers both the whole effect and its passes ({@code GL_TIME_ELAPSED} queries cannot be nested).
+ * Query sets are cycled through a ring spanning several frames, and results are only read once available,
+ * so that timing never stalls the pipeline. A frame is not timed if its slot in the ring is still in flight.
+ */
+public final class EffectGpuTimer implements AutoCloseable {
+    private static final int RING_SIZE = 4;
+    private static final int HISTORY_SIZE = 240;
+    /**0 if not checked yet, 1 if supported, -1 if not*/
+    private static int supported;
+    /**The timer recording the effect currently being rendered, if any*/
+    @Nullable
+    private static EffectGpuTimer active;
+
+    private final int[][] queries = new int[RING_SIZE][0];
+    private final int[] queryCounts = new int[RING_SIZE];
+    private final boolean[] inFlight = new boolean[RING_SIZE];
+    /**Whether the results of an in flight slot were measured before the last {@link #reset()}*/
+    private final boolean[] discarded = new boolean[RING_SIZE];
+    private final Samples effectSamples = new Samples();
+    private final List<Samples> passSamples = new ArrayList<>();
+    private int nextSlot;
+    private int recordingSlot = -1;
+
+    static boolean isSupported() {
+        if (supported == 0) {
+            supported = GL.getCapabilities().glQueryCounter != 0L ? 1 : -1;
+        }
+        return supported > 0;
+    }
+
+    /**
+     * Records a timestamp after a pass of the effect currently being rendered, if it is being timed
+     */
+    public static void onPassRendered() {
+        if (active != null) {
+            active.timestamp();
+        }
+    }
+
+    /**
+     * Collects available results, then starts timing a render of the effect
+     *
+     * @param passCount the number of passes about to be rendered
+     */
+    void begin(int passCount) {
+        this.collect();
+        int slot = this.nextSlot;
+        if (this.inFlight[slot]) {
+            // the GPU is more than RING_SIZE frames behind, skip this one rather than waiting
+            return;
+        }
+        int queryCount = passCount + 1;
+        if (this.queries[slot].length < queryCount) {
+            if (this.queries[slot].length > 0) {
+                GL15.glDeleteQueries(this.queries[slot]);
+            }
+            this.queries[slot] = new int[queryCount];
+            GL15.glGenQueries(this.queries[slot]);
+        }
+        this.queryCounts[slot] = 0;
+        this.recordingSlot = slot;
+        active = this;
+        this.timestamp();
+    }
+
+    private void timestamp() {
+        int slot = this.recordingSlot;
+        if (slot >= 0 && this.queryCounts[slot] < this.queries[slot].length) {
+            GL33.glQueryCounter(this.queries[slot][this.queryCounts[slot]++], GL33.GL_TIMESTAMP);
+        }
+    }
+
+    void end() {
+        active = null;
+        int slot = this.recordingSlot;
+        if (slot >= 0) {
+            this.inFlight[slot] = true;
+            this.discarded[slot] = false;
+            this.nextSlot = (slot + 1) % RING_SIZE;
+            this.recordingSlot = -1;
+        }
+    }
+
+    private void collect() {
+        for (int slot = 0; slot < RING_SIZE; slot++) {
+            int count = this.queryCounts[slot];
+            if (!this.inFlight[slot] || count < 2) {
+                this.inFlight[slot] = false;
+                continue;
+            }
+            int[] queries = this.queries[slot];
+            // queries complete in order, so the last one being available means every other one is too
+            if (GL15.glGetQueryObjecti(queries[count - 1], GL15.GL_QUERY_RESULT_AVAILABLE) == 0) {
+                continue;
+            }
+            this.inFlight[slot] = false;
+            if (this.discarded[slot]) {
+                this.discarded[slot] = false;
+                continue;
+            }
+            if (this.passSamples.size() != count - 1) {
+                // pass count changed, previous samples are meaningless
+                this.passSamples.clear();
+                for (int i = 1; i < count; i++) {
+                    this.passSamples.add(new Samples());
+                }
+            }
+            long first = GL33.glGetQueryObjecti64(queries[0], GL15.GL_QUERY_RESULT);
+            long previous = first;
+            for (int i = 1; i < count; i++) {
+                long timestamp = GL33.glGetQueryObjecti64(queries[i], GL15.GL_QUERY_RESULT);
+                this.passSamples.get(i - 1).add(timestamp - previous);
+                previous = timestamp;
+            }
+            this.effectSamples.add(previous - first);
+        }
+    }
+
+    /**
+     * Forgets every sample, including those of renders that are still in flight
+     */
+    void reset() {
+        System.arraycopy(this.inFlight, 0, this.discarded, 0, RING_SIZE);
+        this.effectSamples.clear();
+        this.passSamples.clear();
+    }
+
+    GpuTimings getEffectTimings() {
+        return this.effectSamples.compute();
+    }
+
+    List<GpuTimings> getPassTimings() {
+        List<GpuTimings> ret = new ArrayList<>(this.passSamples.size());
+        for (Samples samples : this.passSamples) {
+            ret.add(samples.compute());
+        }
+        return ret;
+    }
+
+    @Override
+    public void close() {
+        if (active == this) {
+            active = null;
+        }
+        for (int[] slotQueries : this.queries) {
+            if (slotQueries.length > 0) {
+                GL15.glDeleteQueries(slotQueries);
+            }
+        }
+        Arrays.fill(this.queries, new int[0]);
+    }
+
+    /**
+     * A ring of the latest GPU time samples, in nanoseconds
+     */
+    private static final class Samples {
+        private final long[] values = new long[HISTORY_SIZE];
+        private int size;
+        private int next;
+
+        void add(long nanos) {
+            this.values[this.next] = nanos;
+            this.next = (this.next + 1) % HISTORY_SIZE;
+            this.size = Math.min(this.size + 1, HISTORY_SIZE);
+        }
+
+        void clear() {
+            this.size = 0;
+            this.next = 0;
+        }
+
+        GpuTimings compute() {
+            if (this.size == 0) {
+                return GpuTimings.EMPTY;
+            }
+            long[] sorted = Arrays.copyOf(this.values, this.size);
+            Arrays.sort(sorted);
+            long total = 0;
+            for (long value : sorted) {
+                total += value;
+            }
+            return new GpuTimings(
+                    this.size,
+                    total / (double) this.size / 1_000_000.0,
+                    percentile(sorted, 0.5) / 1_000_000.0,
+                    percentile(sorted, 0.95) / 1_000_000.0,
+                    sorted[sorted.length - 1] / 1_000_000.0
+            );
+        }
+
+        private static long percentile(long[] sorted, double fraction) {
+            return sorted[Math.min(sorted.length - 1, (int) Math.ceil(fraction * sorted.length) - 1)];
+        }
+    }
+}
@@ -0,0 +1,27 @@
+/*
+ * Satin
+ * Copyright (C) 2019-2024 Ladysnake
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; If not, see <https://www.gnu.org/licenses>.
+ */
+package org.ladysnake.satin.impl;
+
+import java.util.function.IntSupplier;
+
+/**
+ * A {@link SamplerAccess} for {@link net.minecraft.client.gl.JsonEffectShaderProgram}s, which samplers are bound through {@link IntSupplier}s
+ */
+public interface EffectSamplerAccess extends SamplerAccess {
+    void satin$bindSampler(String name, IntSupplier value);
+}
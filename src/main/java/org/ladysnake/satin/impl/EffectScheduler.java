@@ -0,0 +1,80 @@
+/*
+ * Satin
+ * Copyright (C) 2019-2024 Ladysnake
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; If not, see <https://www.gnu.org/licenses>.
+ */
+package org.ladysnake.satin.impl;
+
+import org.ladysnake.satin.api.managed.EffectDegradation;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Degrades managed shader effects by ascending priority when their GPU time exceeds a budget.
+ *
+ * <p>Decisions only get revisited every {@value #INTERVAL} frames, so that effects do not flicker
+ * between qualities and reduced resolution targets do not get reallocated every frame.
+ *
+ * @see ReloadableShaderEffectManager#setGpuTimeBudget(float)
+ */
+final class EffectScheduler {
+    /**Number of frames between two scheduling decisions*/
+    static final int INTERVAL = 30;
+    private static final Comparator<ResettableManagedShaderEffect> BY_PRIORITY = Comparator.comparingInt(ResettableManagedShaderEffect::getPriority);
+
+    private int lastUpdate;
+
+    /**
+     * Degrades or restores effects rendered during the last interval, if that interval has elapsed
+     *
+     * @param shaders every managed shader
+     * @param budget  the GPU time budget, in milliseconds, or 0 to restore every effect
+     */
+    void update(Collection<ResettableManagedShaderBase<?>> shaders, float budget) {
+        int frame = RenderStats.frameIndex;
+        if (frame - this.lastUpdate < INTERVAL) {
+            return;
+        }
+        int intervalStart = this.lastUpdate;
+        this.lastUpdate = frame;
+
+        List<ResettableManagedShaderEffect> active = new ArrayList<>();
+        float totalCost = 0f;
+        for (ResettableManagedShaderBase<?> shader : shaders) {
+            if (shader instanceof ResettableManagedShaderEffect effect) {
+                if (budget <= 0f) {
+                    effect.setDegraded(false);
+                } else if (effect.getLastRenderFrame() >= intervalStart) {
+                    active.add(effect);
+                    totalCost += effect.getFullCost();
+                }
+            }
+        }
+
+        active.sort(BY_PRIORITY);
+        for (ResettableManagedShaderEffect effect : active) {
+            EffectDegradation degradation = effect.getDegradation();
+            if (totalCost > budget && degradation != EffectDegradation.NONE) {
+                totalCost -= effect.getFullCost() * degradation.getExpectedSavings();
+                effect.setDegraded(true);
+            } else {
+                effect.setDegraded(false);
+            }
+        }
+    }
+}
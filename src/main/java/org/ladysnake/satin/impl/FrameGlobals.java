@@ -0,0 +1,117 @@
+/*
+ * Satin
+ * Copyright (C) 2019-2024 Ladysnake
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; If not, see <https://www.gnu.org/licenses>.
+ */
+package org.ladysnake.satin.impl;
+
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.gl.Framebuffer;
+import net.minecraft.client.render.Camera;
+import net.minecraft.util.math.Vec3d;
+import org.joml.Matrix4f;
+import org.ladysnake.satin.api.managed.uniform.Uniform1f;
+import org.ladysnake.satin.api.managed.uniform.Uniform2f;
+import org.ladysnake.satin.api.managed.uniform.Uniform3f;
+import org.ladysnake.satin.api.managed.uniform.UniformMat4;
+
+/**
+ * The {@value #BLOCK_NAME} uniform block, filled once per frame with values commonly needed by post-processing shaders.
+ *
+ * <p>Shaders can declare it by importing {@code satin:frame_globals.glsl}. No computation happens
+ * as long as no managed shader declares the block.
+ */
+final class FrameGlobals {
+    static final String BLOCK_NAME = "SatinFrameGlobals";
+
+    private final ManagedUniformBlock block;
+    private final UniformMat4 viewMatrix;
+    private final UniformMat4 projectionMatrix;
+    private final UniformMat4 inverseViewMatrix;
+    private final UniformMat4 inverseProjectionMatrix;
+    private final UniformMat4 inverseTransformMatrix;
+    private final UniformMat4 previousViewMatrix;
+    private final UniformMat4 previousProjectionMatrix;
+    private final Uniform3f cameraPosition;
+    private final Uniform3f previousCameraPosition;
+    private final Uniform2f screenSize;
+    private final Uniform1f gameTime;
+    private final Uniform1f tickDelta;
+
+    private final Matrix4f scratch = new Matrix4f();
+    private final Matrix4f lastView = new Matrix4f();
+    private final Matrix4f lastProjection = new Matrix4f();
+    private double lastCameraX, lastCameraY, lastCameraZ;
+    private boolean hasPreviousFrame;
+
+    FrameGlobals(ManagedUniformBlock block) {
+        this.block = block;
+        this.viewMatrix = block.findUniformMat4("ViewMatrix");
+        this.projectionMatrix = block.findUniformMat4("ProjectionMatrix");
+        this.inverseViewMatrix = block.findUniformMat4("InverseViewMatrix");
+        this.inverseProjectionMatrix = block.findUniformMat4("InverseProjectionMatrix");
+        this.inverseTransformMatrix = block.findUniformMat4("InverseTransformMatrix");
+        this.previousViewMatrix = block.findUniformMat4("PreviousViewMatrix");
+        this.previousProjectionMatrix = block.findUniformMat4("PreviousProjectionMatrix");
+        this.cameraPosition = block.findUniform3f("CameraPosition");
+        this.previousCameraPosition = block.findUniform3f("PreviousCameraPosition");
+        this.screenSize = block.findUniform2f("ScreenSize");
+        this.gameTime = block.findUniform1f("GameTime");
+        this.tickDelta = block.findUniform1f("TickDelta");
+    }
+
+    /**
+     * Computes this frame's values, and writes them to the block's staging buffer
+     *
+     * @param view       the camera's rotation matrix, as passed to world rendering
+     * @param projection the projection matrix used for world rendering
+     */
+    void update(Camera camera, Matrix4f view, Matrix4f projection, float gameTime, float tickDelta) {
+        if (!this.block.hasLayout()) {
+            return;
+        }
+
+        Vec3d cameraPos = camera.getPos();
+        if (!this.hasPreviousFrame) {
+            this.lastView.set(view);
+            this.lastProjection.set(projection);
+            this.lastCameraX = cameraPos.x;
+            this.lastCameraY = cameraPos.y;
+            this.lastCameraZ = cameraPos.z;
+            this.hasPreviousFrame = true;
+        }
+        this.previousViewMatrix.set(this.lastView);
+        this.previousProjectionMatrix.set(this.lastProjection);
+        this.previousCameraPosition.set((float) this.lastCameraX, (float) this.lastCameraY, (float) this.lastCameraZ);
+
+        this.viewMatrix.set(view);
+        this.projectionMatrix.set(projection);
+        this.inverseViewMatrix.set(view.invert(this.scratch));
+        this.inverseProjectionMatrix.set(projection.invert(this.scratch));
+        this.inverseTransformMatrix.set(projection.mul(view, this.scratch).invert());
+        this.cameraPosition.set((float) cameraPos.x, (float) cameraPos.y, (float) cameraPos.z);
+
+        Framebuffer main = MinecraftClient.getInstance().getFramebuffer();
+        this.screenSize.set((float) main.textureWidth, (float) main.textureHeight);
+        this.gameTime.set(gameTime);
+        this.tickDelta.set(tickDelta);
+
+        this.lastView.set(view);
+        this.lastProjection.set(projection);
+        this.lastCameraX = cameraPos.x;
+        this.lastCameraY = cameraPos.y;
+        this.lastCameraZ = cameraPos.z;
+    }
+}
@@ -30,15 +30,19 @@ import javax.annotation.Nullable;
 public final class FramebufferWrapper implements ManagedFramebuffer {
     private final RenderLayerSupplier renderLayerSupplier;
     private final String name;
+    /**Brings the wrapped framebuffer up to date with the game's framebuffer size*/
+    private final Runnable beforeUse;
     @Nullable
     private Framebuffer wrapped;
 
-    FramebufferWrapper(String name) {
+    FramebufferWrapper(String name, Runnable beforeUse) {
         this.name = name;
+        this.beforeUse = beforeUse;
         this.renderLayerSupplier = RenderLayerSupplier.framebuffer(
                 this.name + System.identityHashCode(this),
-                () -> this.beginWrite(false),
-                () -> MinecraftClient.getInstance().getFramebuffer().beginWrite(false)
+                // targets of scaled effects are smaller than the main framebuffer
+                () -> this.beginWrite(true),
+                () -> MinecraftClient.getInstance().getFramebuffer().beginWrite(true)
         );
     }
 
@@ -49,6 +53,9 @@ public final class FramebufferWrapper implements ManagedFramebuffer {
             this.wrapped = shaderEffect.getSecondaryTarget(this.name);
             if (this.wrapped == null) {
                 Satin.LOGGER.warn("No target framebuffer found with name {} in shader {}", this.name, shaderEffect.getName());
+            } else if (this.wrapped instanceof PooledFramebuffer pooled) {
+                // targets used from code may be read outside of their effect's render
+                pooled.makeDedicated();
             }
         }
     }
@@ -60,11 +67,13 @@ public final class FramebufferWrapper implements ManagedFramebuffer {
     @Nullable
     @Override
     public Framebuffer getFramebuffer() {
+        this.beforeUse.run();
         return wrapped;
     }
 
     @Override
     public void copyDepthFrom(Framebuffer buffer) {
+        this.beforeUse.run();
         if (this.wrapped != null) {
             this.wrapped.copyDepthFrom(buffer);
         }
@@ -72,8 +81,10 @@ public final class FramebufferWrapper implements ManagedFramebuffer {
 
     @Override
     public void beginWrite(boolean updateViewport) {
+        this.beforeUse.run();
         if (this.wrapped != null) {
             this.wrapped.beginWrite(updateViewport);
+            RenderStats.framebufferBinds++;
         }
     }
 
@@ -85,6 +96,7 @@ public final class FramebufferWrapper implements ManagedFramebuffer {
 
     @Override
     public void draw(int width, int height, boolean disableBlend) {
+        this.beforeUse.run();
         if (this.wrapped != null) {
             this.wrapped.draw(width, height, disableBlend);
         }
@@ -97,6 +109,7 @@ public final class FramebufferWrapper implements ManagedFramebuffer {
 
     @Override
     public void clear(boolean swallowErrors) {
+        this.beforeUse.run();
         if (this.wrapped != null) {
             this.wrapped.clear(swallowErrors);
         }
@@ -0,0 +1,180 @@
+/*
+ * Satin
+ * Copyright (C) 2019-2024 Ladysnake
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; If not, see <https://www.gnu.org/licenses>.
+ */
+package org.ladysnake.satin.impl;
+
+import com.google.common.base.Preconditions;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.mojang.blaze3d.systems.RenderSystem;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.gl.Framebuffer;
+import net.minecraft.client.gl.PostEffectProcessor;
+import net.minecraft.client.gl.SimpleFramebuffer;
+import net.minecraft.resource.ResourceFactory;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.JsonHelper;
+import org.ladysnake.satin.api.managed.EffectChain;
+import org.ladysnake.satin.api.managed.ManagedShaderEffect;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.List;
+
+/**
+ * An {@link EffectChain} which members ping-pong between two buffers, redirecting their uses of the main framebuffer.
+ *
+ * @see ResettableManagedShaderEffect#renderPasses(PostEffectProcessor, float, Framebuffer, Framebuffer)
+ */
+public final class ManagedEffectChain implements EffectChain {
+    private static final String MAIN_TARGET = "minecraft:main";
+
+    private final List<ManagedShaderEffect> effects;
+    private final ResettableManagedShaderEffect[] members;
+    /**Effects rendering in the current frame, reused between renders*/
+    private final ResettableManagedShaderEffect[] renderingMembers;
+    private final PostEffectProcessor[] renderingEffects;
+    private final Framebuffer[] buffers = new Framebuffer[2];
+
+    ManagedEffectChain(List<ManagedShaderEffect> effects) {
+        Preconditions.checkArgument(!effects.isEmpty(), "An effect chain needs at least one effect");
+        this.effects = effects;
+        this.members = new ResettableManagedShaderEffect[effects.size()];
+        for (int i = 0; i < effects.size(); i++) {
+            if (!(effects.get(i) instanceof ResettableManagedShaderEffect member)) {
+                throw new IllegalArgumentException("Effect chains only support effects obtained from the ShaderEffectManager, got " + effects.get(i));
+            }
+            this.members[i] = member;
+        }
+        this.renderingMembers = new ResettableManagedShaderEffect[this.members.length];
+        this.renderingEffects = new PostEffectProcessor[this.members.length];
+    }
+
+    @Override
+    public List<ManagedShaderEffect> getEffects() {
+        return this.effects;
+    }
+
+    @Override
+    public void render(float tickDelta) {
+        int count = 0;
+        for (ResettableManagedShaderEffect member : this.members) {
+            PostEffectProcessor sg = member.prepareRender();
+            // members skipping a half rate frame still take part in the chain, with their last output
+            if (sg != null || member.getRepeatedOutput() != null) {
+                this.renderingMembers[count] = member;
+                this.renderingEffects[count++] = sg;
+            }
+        }
+        if (count == 0) {
+            return;
+        }
+
+        Framebuffer main = MinecraftClient.getInstance().getFramebuffer();
+        ResettableManagedShaderEffect.beginRender();
+        try {
+            // null stands for the main framebuffer
+            @Nullable Framebuffer source = null;
+            for (int i = 0; i < count; i++) {
+                ResettableManagedShaderEffect member = this.renderingMembers[i];
+                PostEffectProcessor sg = this.renderingEffects[i];
+                this.renderingMembers[i] = null;
+                this.renderingEffects[i] = null;
+                if (sg == null) {
+                    source = member.getRepeatedOutput();
+                    continue;
+                }
+                if (member.readsMainColor() && source != null) {
+                    // auxiliary targets sample the main framebuffer directly, so it must hold the previous output
+                    ResettableManagedShaderEffect.blit(source, main);
+                    source = null;
+                }
+                Framebuffer halfRateOutput = member.getHalfRateOutput();
+                if (halfRateOutput != null) {
+                    if (member.renderHalfRate(sg, tickDelta, source, halfRateOutput)) {
+                        source = halfRateOutput;
+                    }
+                } else {
+                    boolean last = i == count - 1;
+                    // the member writes the main framebuffer itself when its later passes may sample what it wrote
+                    Framebuffer destination = last || member.readsMainColor() ? null : this.getBuffer(source == this.buffers[0] ? 1 : 0, main);
+                    if (member.renderPasses(sg, tickDelta, source, destination)) {
+                        source = destination;
+                    }
+                }
+            }
+            if (source != null) {
+                // the last output still has to end up in the main framebuffer
+                ResettableManagedShaderEffect.blit(source, main);
+            }
+        } finally {
+            ResettableManagedShaderEffect.endRender();
+        }
+    }
+
+    private Framebuffer getBuffer(int index, Framebuffer main) {
+        Framebuffer buffer = this.buffers[index];
+        if (buffer == null) {
+            buffer = new SimpleFramebuffer(main.textureWidth, main.textureHeight, false, MinecraftClient.IS_SYSTEM_MAC);
+            buffer.setClearColor(0.0F, 0.0F, 0.0F, 0.0F);
+            this.buffers[index] = buffer;
+        } else if (buffer.textureWidth != main.textureWidth || buffer.textureHeight != main.textureHeight) {
+            buffer.resize(main.textureWidth, main.textureHeight, MinecraftClient.IS_SYSTEM_MAC);
+        }
+        return buffer;
+    }
+
+    /**
+     * Checks whether a post effect definition samples the main framebuffer's color through an auxiliary target,
+     * which cannot be redirected like pass inputs and outputs
+     */
+    static boolean readsMainColor(ResourceFactory resourceFactory, Identifier location) {
+        JsonObject effect;
+        try (Reader reader = resourceFactory.openAsReader(location)) {
+            effect = JsonHelper.deserialize(reader);
+        } catch (IOException | JsonParseException e) {
+            // reported when the post effect actually gets parsed
+            return false;
+        }
+        for (JsonElement pass : JsonHelper.getArray(effect, "passes", new JsonArray())) {
+            if (!pass.isJsonObject()) {
+                continue;
+            }
+            for (JsonElement auxTarget : JsonHelper.getArray(pass.getAsJsonObject(), "auxtargets", new JsonArray())) {
+                // "minecraft:main:depth" samples the depth buffer, which chain buffers do not replace
+                if (auxTarget.isJsonObject() && MAIN_TARGET.equals(JsonHelper.getString(auxTarget.getAsJsonObject(), "id", ""))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void release() {
+        RenderSystem.assertOnRenderThread();
+        for (int i = 0; i < this.buffers.length; i++) {
+            if (this.buffers[i] != null) {
+                this.buffers[i].delete();
+                this.buffers[i] = null;
+            }
+        }
+    }
+}
@@ -23,8 +23,13 @@ import net.minecraft.client.gl.GlUniform;
 import net.minecraft.client.gl.JsonEffectShaderProgram;
 import net.minecraft.client.gl.PostEffectPass;
 import net.minecraft.client.gl.ShaderProgram;
+import net.minecraft.client.gl.ShaderProgramSetupView;
+import org.ladysnake.satin.api.managed.uniform.SamplerSettings;
 import org.ladysnake.satin.api.managed.uniform.SamplerUniform;
+import org.ladysnake.satin.api.util.ShaderPrograms;
+import org.lwjgl.opengl.GL41;
 
+import javax.annotation.Nullable;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.function.IntSupplier;
@@ -41,6 +46,11 @@ public abstract class ManagedSamplerUniformBase extends ManagedUniformBase imple
     protected SamplerAccess[] targets = new SamplerAccess[0];
     protected int[] locations = new int[0];
     protected Object cachedValue;
+    /**Value set while writes are deferred, bound to the targets on the next flush*/
+    @Nullable
+    protected Object pendingValue;
+    @Nullable
+    private SamplerSettings samplerSettings;
 
     public ManagedSamplerUniformBase(String name) {
         super(name);
@@ -53,7 +63,7 @@ public abstract class ManagedSamplerUniformBase extends ManagedUniformBase imple
         for (PostEffectPass shader : shaders) {
             JsonEffectShaderProgram program = shader.getProgram();
             SamplerAccess access = (SamplerAccess) program;
-            if (access.satin$hasSampler(this.name)) {
+            if (access.satin$hasSampler(this.name) && !targets.contains(access)) {
                 targets.add(access);
                 rawTargets.add(getSamplerLoc(access));
             }
@@ -84,21 +94,83 @@ public abstract class ManagedSamplerUniformBase extends ManagedUniformBase imple
     }
 
     private void syncCurrentValues() {
+        if (this.samplerSettings != null) {
+            for (SamplerAccess target : this.targets) {
+                target.satin$setSamplerSettings(this.name, this.samplerSettings);
+            }
+        }
         Object value = this.cachedValue;
         if (value != null) { // after the first upload
             this.cachedValue = null;
-            this.set(value);
+            this.bind(value);
+        }
+    }
+
+    protected void set(Object value) {
+        if (this.defer()) {
+            this.pendingValue = value;
+        } else {
+            this.pendingValue = null;
+            this.bind(value);
+        }
+    }
+
+    /**
+     * Binds a texture to this sampler in every target, skipping the update if it is already bound
+     */
+    protected abstract void bind(Object value);
+
+    @Override
+    void writeDeferred() {
+        Object value = this.pendingValue;
+        if (value != null) {
+            this.pendingValue = null;
+            this.bind(value);
         }
     }
 
-    protected abstract void set(Object value);
+    @Override
+    public void setSamplerSettings(@Nullable SamplerSettings settings) {
+        for (SamplerAccess target : this.targets) {
+            target.satin$setSamplerSettings(this.name, settings);
+        }
+        this.samplerSettings = settings;
+    }
+
+    @Override
+    void clearTargets() {
+        this.targets = new SamplerAccess[0];
+        this.locations = new int[0];
+    }
+
+    /**
+     * Replaces the targets of this uniform without looking them up in a program, for testing purposes
+     */
+    void setTargets(SamplerAccess[] targets, int[] locations) {
+        this.targets = targets;
+        this.locations = locations;
+        this.syncCurrentValues();
+    }
 
     @Override
     public void setDirect(int activeTexture) {
         int length = this.locations.length;
+        boolean dsa = ShaderPrograms.isDirectStateAccessSupported();
+        RenderStats.samplerRebinds++;
+        // the sampler is no longer bound through the program, so the next set call must bind it again
+        this.cachedValue = null;
+        // units are assigned right away, as the caller binds the texture itself
+        this.pendingValue = null;
         for (int i = 0; i < length; i++) {
-            this.targets[i].satin$removeSampler(this.name);
-            GlUniform.uniform1(this.locations[i], activeTexture);
+            SamplerAccess target = this.targets[i];
+            target.satin$removeSampler(this.name);
+            target.satin$cacheSamplerUnit(this.locations[i], activeTexture);
+            if (dsa) {
+                // no need for the target program to be in use
+                GL41.glProgramUniform1i(((ShaderProgramSetupView) target).getGlRef(), this.locations[i], activeTexture);
+            } else {
+                GlUniform.uniform1(this.locations[i], activeTexture);
+            }
         }
     }
 }
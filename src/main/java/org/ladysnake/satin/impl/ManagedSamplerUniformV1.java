@@ -42,13 +42,14 @@ public final class ManagedSamplerUniformV1 extends ManagedSamplerUniformBase {
     }
 
     @Override
-    protected void set(Object value) {
+    protected void bind(Object value) {
         SamplerAccess[] targets = this.targets;
         if (targets.length > 0 && this.cachedValue != value) {
             for (SamplerAccess target : targets) {
                 ((ShaderProgram) target).addSampler(this.name, value);
             }
             this.cachedValue = value;
+            RenderStats.samplerRebinds++;
         }
     }
 }
@@ -18,45 +18,107 @@
 package org.ladysnake.satin.impl;
 
 import net.minecraft.client.gl.Framebuffer;
-import net.minecraft.client.gl.JsonEffectShaderProgram;
 import net.minecraft.client.texture.AbstractTexture;
 import org.ladysnake.satin.api.managed.uniform.SamplerUniformV2;
 
+import javax.annotation.Nullable;
 import java.util.function.IntSupplier;
 
 public final class ManagedSamplerUniformV2 extends ManagedSamplerUniformBase implements SamplerUniformV2 {
+    /**Bound once to every target, then updated in place as long as the sampler is set through one of the typed setters*/
+    private final TextureSupplier texture = new TextureSupplier();
+
     public ManagedSamplerUniformV2(String name) {
         super(name);
     }
 
     @Override
     public void set(AbstractTexture texture) {
-        set(texture::getGlId);
+        this.setTexture(this.texture.set(texture));
     }
 
     @Override
     public void set(Framebuffer textureFbo) {
-        set(textureFbo::getColorAttachment);
+        this.setTexture(this.texture.set(textureFbo));
     }
 
     @Override
     public void set(int textureName) {
-        set(() -> textureName);
+        this.setTexture(this.texture.set(textureName));
     }
 
-    @Override
-    protected void set(Object value) {
-        this.set((IntSupplier) value);
+    private void setTexture(boolean changed) {
+        if (this.cachedValue != this.texture || this.pendingValue != null) {
+            this.set((IntSupplier) this.texture);
+        } else if (changed) {
+            // the supplier is already bound, and will return the new texture on the next draw
+            RenderStats.samplerRebinds++;
+        }
     }
 
     @Override
     public void set(IntSupplier value) {
-        SamplerAccess[] targets = this.targets;
-        if (targets.length > 0 && this.cachedValue != value) {
-            for (SamplerAccess target : targets) {
-                ((JsonEffectShaderProgram) target).bindSampler(this.name, value);
+        this.set((Object) value);
+    }
+
+    @Override
+    protected void bind(Object value) {
+        if (this.cachedValue != value) {
+            for (SamplerAccess target : this.targets) {
+                ((EffectSamplerAccess) target).satin$bindSampler(this.name, value);
             }
             this.cachedValue = value;
+            RenderStats.samplerRebinds++;
+        }
+    }
+
+    /**
+     * A mutable texture reference, compared by texture identity rather than by supplier identity
+     */
+    private static final class TextureSupplier implements IntSupplier {
+        @Nullable
+        private AbstractTexture texture;
+        @Nullable
+        private Framebuffer framebuffer;
+        private int textureName;
+
+        boolean set(AbstractTexture texture) {
+            if (this.texture == texture) {
+                return false;
+            }
+            this.texture = texture;
+            this.framebuffer = null;
+            return true;
+        }
+
+        boolean set(Framebuffer framebuffer) {
+            if (this.framebuffer == framebuffer) {
+                return false;
+            }
+            this.texture = null;
+            this.framebuffer = framebuffer;
+            return true;
+        }
+
+        boolean set(int textureName) {
+            if (this.texture == null && this.framebuffer == null && this.textureName == textureName) {
+                return false;
+            }
+            this.texture = null;
+            this.framebuffer = null;
+            this.textureName = textureName;
+            return true;
+        }
+
+        @Override
+        public int getAsInt() {
+            // textures and framebuffers may change their GL id over their lifetime, so we only query it when drawing
+            if (this.texture != null) {
+                return this.texture.getGlId();
+            } else if (this.framebuffer != null) {
+                return this.framebuffer.getColorAttachment();
+            }
+            return this.textureName;
         }
     }
 }
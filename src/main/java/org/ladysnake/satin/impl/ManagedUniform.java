@@ -34,6 +34,7 @@ import org.ladysnake.satin.api.managed.uniform.Uniform4f;
 import org.ladysnake.satin.api.managed.uniform.Uniform4i;
 import org.ladysnake.satin.api.managed.uniform.UniformMat4;
 
+import javax.annotation.Nullable;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -45,24 +46,64 @@ public final class ManagedUniform extends ManagedUniformBase implements
     private static final GlUniform[] NO_TARGETS = new GlUniform[0];
 
     private final int count;
+    /**Index of the only pass this uniform targets, or -1 to target every pass declaring it*/
+    private final int passIndex;
+
+    /**No value has been set yet*/
+    private static final byte UNSET = 0;
+    /**{@link #words} hold integer values*/
+    private static final byte INTS = 1;
+    /**{@link #words} hold the raw bits of float values*/
+    private static final byte FLOATS = 2;
+    /**{@link #words} hold the raw bits of every float of an array or matrix*/
+    private static final byte ARRAY = 3;
 
     private GlUniform[] targets = NO_TARGETS;
-    private int i0, i1, i2, i3;
-    private float f0, f1, f2, f3;
-    private boolean firstUpload = true;
+    /**Last values set, used to skip redundant uploads and to write them again to new targets*/
+    private final int[] words;
+    /**Which kind of setter last wrote {@link #words}*/
+    private byte representation = UNSET;
+    /**Float values of {@link #words} when they hold an array, passed to targets on upload*/
+    @Nullable
+    private float[] arrayScratch;
 
     public ManagedUniform(String name, int count) {
+        this(name, count, -1);
+    }
+
+    /**
+     * @param passIndex the index of the only post-processing pass to target, or -1 to target every pass
+     */
+    public ManagedUniform(String name, int count, int passIndex) {
         super(name);
         this.count = count;
+        this.passIndex = passIndex;
+        this.words = new int[Math.max(count, 4)];
+    }
+
+    /**
+     * @return the index of the only post-processing pass this uniform targets, or -1 if it targets every pass
+     */
+    int getPassIndex() {
+        return this.passIndex;
+    }
+
+    @Override
+    void writeDeferred() {
+        this.uploadCurrentValues();
     }
 
     @Override
     public boolean findUniformTargets(List<PostEffectPass> shaders) {
+        if (this.passIndex >= 0) {
+            shaders = this.passIndex < shaders.size() ? List.of(shaders.get(this.passIndex)) : List.of();
+        }
         List<GlUniform> list = new ArrayList<>();
         for (PostEffectPass shader : shaders) {
             GlUniform uniform = shader.getProgram().getUniformByName(this.name);
 
-            if (uniform != null) {
+            // fused passes may be listed several times
+            if (uniform != null && !list.contains(uniform)) {
                 if (uniform.getCount() != this.count) {
                     throw new IllegalStateException("Mismatched number of values, expected " + this.count + " but JSON definition declares " + uniform.getCount());
                 }
@@ -94,29 +135,104 @@ public final class ManagedUniform extends ManagedUniformBase implements
     }
 
     private void syncCurrentValues() {
-        if (!this.firstUpload) {
-            for (GlUniform target : this.targets) {
-                if (target.getIntData() != null) {
-                    target.setForDataType(i0, i1, i2, i3);
-                } else {
-                    assert target.getFloatData() != null;
+        if (this.representation != UNSET) {
+            this.uploadCurrentValues();
+        }
+    }
+
+    private void uploadCurrentValues() {
+        int[] w = this.words;
+        switch (this.representation) {
+            case INTS -> {
+                for (GlUniform target : this.targets) {
+                    target.setForDataType(w[0], w[1], w[2], w[3]);
+                }
+            }
+            case FLOATS -> {
+                float f0 = Float.intBitsToFloat(w[0]), f1 = Float.intBitsToFloat(w[1]), f2 = Float.intBitsToFloat(w[2]), f3 = Float.intBitsToFloat(w[3]);
+                for (GlUniform target : this.targets) {
                     target.setForDataType(f0, f1, f2, f3);
                 }
             }
+            case ARRAY -> {
+                float[] values = this.getArrayScratch();
+                for (int i = 0; i < this.count; i++) {
+                    values[i] = Float.intBitsToFloat(w[i]);
+                }
+                for (GlUniform target : this.targets) {
+                    target.set(values);
+                }
+            }
+            default -> { }
         }
     }
 
+    private boolean differs(byte representation, int w0) {
+        return this.representation != representation || this.words[0] != w0;
+    }
+
+    private boolean differs(byte representation, int w0, int w1) {
+        int[] w = this.words;
+        return this.representation != representation || w[0] != w0 || w[1] != w1;
+    }
+
+    private boolean differs(byte representation, int w0, int w1, int w2) {
+        int[] w = this.words;
+        return this.representation != representation || w[0] != w0 || w[1] != w1 || w[2] != w2;
+    }
+
+    private boolean differs(byte representation, int w0, int w1, int w2, int w3) {
+        int[] w = this.words;
+        return this.representation != representation || w[0] != w0 || w[1] != w1 || w[2] != w2 || w[3] != w3;
+    }
+
+    /**
+     * Records new values, which have been written to the targets or queued
+     */
+    private void store(byte representation, int w0) {
+        this.words[0] = w0;
+        this.representation = representation;
+    }
+
+    private void store(byte representation, int w0, int w1) {
+        int[] w = this.words;
+        w[0] = w0;
+        w[1] = w1;
+        this.representation = representation;
+    }
+
+    private void store(byte representation, int w0, int w1, int w2) {
+        int[] w = this.words;
+        w[0] = w0;
+        w[1] = w1;
+        w[2] = w2;
+        this.representation = representation;
+    }
+
+    private void store(byte representation, int w0, int w1, int w2, int w3) {
+        int[] w = this.words;
+        w[0] = w0;
+        w[1] = w1;
+        w[2] = w2;
+        w[3] = w3;
+        this.representation = representation;
+    }
+
     @Override
     public void set(int value) {
         GlUniform[] targets = this.targets;
         int nbTargets = targets.length;
         if (nbTargets > 0) {
-            if (firstUpload || i0 != value) {
-                for (GlUniform target : targets) {
-                    target.set(value);
+            RenderStats.uniformSets++;
+            if (this.differs(INTS, value)) {
+                if (!this.defer()) {
+                    for (GlUniform target : targets) {
+                        target.set(value);
+                    }
                 }
-                i0 = value;
-                firstUpload = false;
+                this.store(INTS, value);
+            } else {
+                RenderStats.redundantUniformSets++;
             }
         }
     }
@@ -126,13 +242,16 @@ public final class ManagedUniform extends ManagedUniformBase implements
         GlUniform[] targets = this.targets;
         int nbTargets = targets.length;
         if (nbTargets > 0) {
-            if (firstUpload || i0 != value0 || i1 != value1) {
-                for (GlUniform target : targets) {
-                    target.set(value0, value1);
+            RenderStats.uniformSets++;
+            if (this.differs(INTS, value0, value1)) {
+                if (!this.defer()) {
+                    for (GlUniform target : targets) {
+                        target.set(value0, value1);
+                    }
                 }
-                i0 = value0;
-                i1 = value1;
-                firstUpload = false;
+                this.store(INTS, value0, value1);
+            } else {
+                RenderStats.redundantUniformSets++;
             }
         }
     }
@@ -142,14 +261,16 @@ public final class ManagedUniform extends ManagedUniformBase implements
         GlUniform[] targets = this.targets;
         int nbTargets = targets.length;
         if (nbTargets > 0) {
-            if (firstUpload || i0 != value0 || i1 != value1 || i2 != value2) {
-                for (GlUniform target : targets) {
-                    target.set(value0, value1, value2);
+            RenderStats.uniformSets++;
+            if (this.differs(INTS, value0, value1, value2)) {
+                if (!this.defer()) {
+                    for (GlUniform target : targets) {
+                        target.set(value0, value1, value2);
+                    }
                 }
-                i0 = value0;
-                i1 = value1;
-                i2 = value2;
-                firstUpload = false;
+                this.store(INTS, value0, value1, value2);
+            } else {
+                RenderStats.redundantUniformSets++;
             }
         }
     }
@@ -159,15 +280,16 @@ public final class ManagedUniform extends ManagedUniformBase implements
         GlUniform[] targets = this.targets;
         int nbTargets = targets.length;
         if (nbTargets > 0) {
-            if (firstUpload || i0 != value0 || i1 != value1 || i2 != value2 || i3 != value3) {
-                for (GlUniform target : targets) {
-                    target.set(value0, value1, value2, value3);
+            RenderStats.uniformSets++;
+            if (this.differs(INTS, value0, value1, value2, value3)) {
+                if (!this.defer()) {
+                    for (GlUniform target : targets) {
+                        target.set(value0, value1, value2, value3);
+                    }
                 }
-                i0 = value0;
-                i1 = value1;
-                i2 = value2;
-                i3 = value3;
-                firstUpload = false;
+                this.store(INTS, value0, value1, value2, value3);
+            } else {
+                RenderStats.redundantUniformSets++;
             }
         }
     }
@@ -177,12 +299,17 @@ public final class ManagedUniform extends ManagedUniformBase implements
         GlUniform[] targets = this.targets;
         int nbTargets = targets.length;
         if (nbTargets > 0) {
-            if (firstUpload || f0 != value) {
-                for (GlUniform target : targets) {
-                    target.set(value);
+            RenderStats.uniformSets++;
+            int w0 = Float.floatToRawIntBits(value);
+            if (this.differs(FLOATS, w0)) {
+                if (!this.defer()) {
+                    for (GlUniform target : targets) {
+                        target.set(value);
+                    }
                 }
-                f0 = value;
-                firstUpload = false;
+                this.store(FLOATS, w0);
+            } else {
+                RenderStats.redundantUniformSets++;
             }
         }
     }
@@ -192,13 +319,17 @@ public final class ManagedUniform extends ManagedUniformBase implements
         GlUniform[] targets = this.targets;
         int nbTargets = targets.length;
         if (nbTargets > 0) {
-            if (firstUpload || f0 != value0 || f1 != value1) {
-                for (GlUniform target : targets) {
-                    target.set(value0, value1);
+            RenderStats.uniformSets++;
+            int w0 = Float.floatToRawIntBits(value0), w1 = Float.floatToRawIntBits(value1);
+            if (this.differs(FLOATS, w0, w1)) {
+                if (!this.defer()) {
+                    for (GlUniform target : targets) {
+                        target.set(value0, value1);
+                    }
                 }
-                f0 = value0;
-                f1 = value1;
-                firstUpload = false;
+                this.store(FLOATS, w0, w1);
+            } else {
+                RenderStats.redundantUniformSets++;
             }
         }
     }
@@ -213,14 +344,17 @@ public final class ManagedUniform extends ManagedUniformBase implements
         GlUniform[] targets = this.targets;
         int nbTargets = targets.length;
         if (nbTargets > 0) {
-            if (firstUpload || f0 != value0 || f1 != value1 || f2 != value2) {
-                for (GlUniform target : targets) {
-                    target.set(value0, value1, value2);
+            RenderStats.uniformSets++;
+            int w0 = Float.floatToRawIntBits(value0), w1 = Float.floatToRawIntBits(value1), w2 = Float.floatToRawIntBits(value2);
+            if (this.differs(FLOATS, w0, w1, w2)) {
+                if (!this.defer()) {
+                    for (GlUniform target : targets) {
+                        target.set(value0, value1, value2);
+                    }
                 }
-                f0 = value0;
-                f1 = value1;
-                f2 = value2;
-                firstUpload = false;
+                this.store(FLOATS, w0, w1, w2);
+            } else {
+                RenderStats.redundantUniformSets++;
             }
         }
     }
@@ -235,15 +369,17 @@ public final class ManagedUniform extends ManagedUniformBase implements
         GlUniform[] targets = this.targets;
         int nbTargets = targets.length;
         if (nbTargets > 0) {
-            if (firstUpload || f0 != value0 || f1 != value1 || f2 != value2 || f3 != value3) {
-                for (GlUniform target : targets) {
-                    target.set(value0, value1, value2, value3);
+            RenderStats.uniformSets++;
+            int w0 = Float.floatToRawIntBits(value0), w1 = Float.floatToRawIntBits(value1), w2 = Float.floatToRawIntBits(value2), w3 = Float.floatToRawIntBits(value3);
+            if (this.differs(FLOATS, w0, w1, w2, w3)) {
+                if (!this.defer()) {
+                    for (GlUniform target : targets) {
+                        target.set(value0, value1, value2, value3);
+                    }
                 }
-                f0 = value0;
-                f1 = value1;
-                f2 = value2;
-                f3 = value3;
-                firstUpload = false;
+                this.store(FLOATS, w0, w1, w2, w3);
+            } else {
+                RenderStats.redundantUniformSets++;
             }
         }
     }
@@ -258,9 +394,12 @@ public final class ManagedUniform extends ManagedUniformBase implements
         GlUniform[] targets = this.targets;
         int nbTargets = targets.length;
         if (nbTargets > 0) {
-            for (GlUniform target : targets) {
-                target.set(value);
+            RenderStats.uniformSets++;
+            if (this.count != 16) {
+                throw new IllegalStateException("Uniform " + this.name + " is not a 4x4 matrix");
             }
+            float[] values = value.get(this.getArrayScratch());
+            this.setArrayValues(targets, values);
         }
     }
 
@@ -273,9 +412,50 @@ public final class ManagedUniform extends ManagedUniformBase implements
         GlUniform[] targets = this.targets;
         int nbTargets = targets.length;
         if (nbTargets > 0) {
-            for (GlUniform target : targets) {
-                target.set(values);
+            RenderStats.uniformSets++;
+            this.setArrayValues(targets, values);
+        }
+    }
+
+    private void setArrayValues(GlUniform[] targets, float[] values) {
+        int[] w = this.words;
+        boolean changed = this.representation != ARRAY;
+        for (int i = 0; i < this.count; i++) {
+            int word = Float.floatToRawIntBits(values[i]);
+            if (w[i] != word) {
+                w[i] = word;
+                changed = true;
             }
         }
+        if (changed) {
+            if (!this.defer()) {
+                for (GlUniform target : targets) {
+                    target.set(values);
+                }
+            }
+            this.representation = ARRAY;
+        } else {
+            RenderStats.redundantUniformSets++;
+        }
+    }
+
+    private float[] getArrayScratch() {
+        if (this.arrayScratch == null) {
+            this.arrayScratch = new float[this.count];
+        }
+        return this.arrayScratch;
+    }
+
+    @Override
+    void clearTargets() {
+        this.targets = NO_TARGETS;
+    }
+
+    /**
+     * Replaces the targets of this uniform without looking them up in a program, for testing purposes
+     */
+    void setTargets(GlUniform... targets) {
+        this.targets = targets;
+        this.syncCurrentValues();
     }
 }
@@ -0,0 +1,232 @@
+/*
+ * Satin
+ * Copyright (C) 2019-2024 Ladysnake
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; If not, see <https://www.gnu.org/licenses>.
+ */
+package org.ladysnake.satin.impl;
+
+import net.minecraft.client.gl.GlUniform;
+import net.minecraft.client.gl.JsonEffectShaderProgram;
+import net.minecraft.client.gl.PostEffectPass;
+import net.minecraft.client.gl.ShaderProgram;
+import net.minecraft.client.gl.ShaderProgramSetupView;
+import org.joml.Matrix4f;
+import org.joml.Vector4f;
+import org.ladysnake.satin.api.managed.uniform.UniformArray;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+public final class ManagedUniformArray extends ManagedUniformBase implements UniformArray {
+    private static final ArrayGlUniform[] NO_TARGETS = new ArrayGlUniform[0];
+
+    private final ElementType elementType;
+    private final int length;
+    /**Last values of every element, written again to new targets after a reload*/
+    private final float[] values;
+    private ArrayGlUniform[] targets = NO_TARGETS;
+    private boolean firstUpload = true;
+    /**Range of elements which latest values are waiting for a deferred write*/
+    private int pendingStart = Integer.MAX_VALUE;
+    private int pendingEnd;
+
+    public ManagedUniformArray(String name, ElementType elementType, int length) {
+        super(name);
+        if (length <= 0) {
+            throw new IllegalArgumentException("Uniform array length must be positive, got " + length);
+        }
+        this.elementType = elementType;
+        this.length = length;
+        this.values = new float[length * elementType.getComponents()];
+    }
+
+    @Override
+    public boolean findUniformTargets(List<PostEffectPass> shaders) {
+        List<ArrayGlUniform> list = new ArrayList<>();
+        for (PostEffectPass shader : shaders) {
+            JsonEffectShaderProgram program = shader.getProgram();
+            ArrayGlUniform target = this.findTarget(program, program.getUniformByName(this.name), program.getGlRef());
+            if (target != null && !list.contains(target)) {
+                list.add(target);
+            }
+        }
+        this.targets = list.toArray(NO_TARGETS);
+        this.syncCurrentValues();
+        return this.targets.length > 0;
+    }
+
+    @Override
+    public boolean findUniformTarget(ShaderProgram shader) {
+        ArrayGlUniform target = this.findTarget(shader, shader.getUniform(this.name), shader.getGlRef());
+        this.targets = target == null ? NO_TARGETS : new ArrayGlUniform[] {target};
+        this.syncCurrentValues();
+        return target != null;
+    }
+
+    private ArrayGlUniform findTarget(ShaderProgramSetupView program, GlUniform existing, int glRef) {
+        if (existing instanceof ArrayGlUniform array) {
+            // the program has not been reloaded since we last looked
+            if (!array.matches(this.elementType, this.length)) {
+                throw new IllegalStateException("Mismatched uniform array definition for " + this.name + ", expected " + this.length + " " + this.elementType + " elements");
+            }
+            return array;
+        }
+        int location = GlUniform.getUniformLocation(glRef, this.name);
+        if (location == -1) {
+            return null;
+        }
+        ArrayGlUniform ret = new ArrayGlUniform(this.name, this.elementType, this.length, glRef, location, program);
+        ((UniformListAccess) program).satin$putUniform(ret);
+        return ret;
+    }
+
+    @Override
+    void clearTargets() {
+        this.targets = NO_TARGETS;
+    }
+
+    private void syncCurrentValues() {
+        if (!this.firstUpload) {
+            for (ArrayGlUniform target : this.targets) {
+                target.write(0, this.values, this.length);
+            }
+        }
+    }
+
+    @Override
+    public ElementType getElementType() {
+        return this.elementType;
+    }
+
+    @Override
+    public int getLength() {
+        return this.length;
+    }
+
+    private void checkType(ElementType expected) {
+        if (this.elementType != expected) {
+            throw new IllegalStateException("Uniform array " + this.name + " holds " + this.elementType + " elements, not " + expected);
+        }
+    }
+
+    @Override
+    public void set(int index, float value) {
+        this.checkType(ElementType.FLOAT);
+        Objects.checkIndex(index, this.length);
+        float[] values = this.values;
+        if (this.firstUpload || values[index] != value) {
+            values[index] = value;
+            this.markModified(index, 1);
+        }
+    }
+
+    @Override
+    public void set(int index, float value0, float value1) {
+        this.checkType(ElementType.VEC2);
+        Objects.checkIndex(index, this.length);
+        float[] values = this.values;
+        int i = index * 2;
+        if (this.firstUpload || values[i] != value0 || values[i + 1] != value1) {
+            values[i] = value0;
+            values[i + 1] = value1;
+            this.markModified(index, 1);
+        }
+    }
+
+    @Override
+    public void set(int index, float value0, float value1, float value2) {
+        this.checkType(ElementType.VEC3);
+        Objects.checkIndex(index, this.length);
+        float[] values = this.values;
+        int i = index * 3;
+        if (this.firstUpload || values[i] != value0 || values[i + 1] != value1 || values[i + 2] != value2) {
+            values[i] = value0;
+            values[i + 1] = value1;
+            values[i + 2] = value2;
+            this.markModified(index, 1);
+        }
+    }
+
+    @Override
+    public void set(int index, float value0, float value1, float value2, float value3) {
+        this.checkType(ElementType.VEC4);
+        Objects.checkIndex(index, this.length);
+        float[] values = this.values;
+        int i = index * 4;
+        if (this.firstUpload || values[i] != value0 || values[i + 1] != value1 || values[i + 2] != value2 || values[i + 3] != value3) {
+            values[i] = value0;
+            values[i + 1] = value1;
+            values[i + 2] = value2;
+            values[i + 3] = value3;
+            this.markModified(index, 1);
+        }
+    }
+
+    @Override
+    public void set(int index, Vector4f value) {
+        this.set(index, value.x(), value.y(), value.z(), value.w());
+    }
+
+    @Override
+    public void set(int index, Matrix4f value) {
+        this.checkType(ElementType.MAT4);
+        Objects.checkIndex(index, this.length);
+        value.get(this.values, index * 16);
+        this.markModified(index, 1);
+    }
+
+    @Override
+    public void setFromArray(float[] values) {
+        if (this.values.length != values.length) {
+            throw new IllegalArgumentException("Mismatched values size, expected " + this.values.length + " but got " + values.length);
+        }
+        this.setFromArray(0, values, 0, this.length);
+    }
+
+    @Override
+    public void setFromArray(int firstElement, float[] values, int offset, int elementCount) {
+        int components = this.elementType.getComponents();
+        Objects.checkFromIndexSize(firstElement, elementCount, this.length);
+        Objects.checkFromIndexSize(offset, elementCount * components, values.length);
+        System.arraycopy(values, offset, this.values, firstElement * components, elementCount * components);
+        this.markModified(firstElement, elementCount);
+    }
+
+    private void markModified(int firstElement, int elementCount) {
+        this.firstUpload = false;
+        if (this.defer()) {
+            this.pendingStart = Math.min(this.pendingStart, firstElement);
+            this.pendingEnd = Math.max(this.pendingEnd, firstElement + elementCount);
+            return;
+        }
+        for (ArrayGlUniform target : this.targets) {
+            target.write(firstElement, this.values, elementCount);
+        }
+    }
+
+    @Override
+    void writeDeferred() {
+        int start = this.pendingStart;
+        int count = this.pendingEnd - start;
+        this.pendingStart = Integer.MAX_VALUE;
+        this.pendingEnd = 0;
+        if (count > 0) {
+            for (ArrayGlUniform target : this.targets) {
+                target.write(start, this.values, count);
+            }
+        }
+    }
+}
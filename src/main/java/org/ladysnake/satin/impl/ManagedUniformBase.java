@@ -20,10 +20,14 @@ package org.ladysnake.satin.impl;
 import net.minecraft.client.gl.PostEffectPass;
 import net.minecraft.client.gl.ShaderProgram;
 
+import javax.annotation.Nullable;
 import java.util.List;
 
 public abstract class ManagedUniformBase {
     protected final String name;
+    @Nullable
+    private DeferredUniformQueue deferredQueue;
+    private boolean queued;
 
     public ManagedUniformBase(String name) {
         this.name = name;
@@ -36,4 +40,56 @@ public abstract class ManagedUniformBase {
     public String getName() {
         return name;
     }
+
+    /**
+     * Forgets the targets of this uniform, once the programs holding them got released.
+     *
+     * <p>Values set afterwards are kept, and written to the new targets once they get found.
+     */
+    void clearTargets() {
+        // NO-OP
+    }
+
+    /**
+     * Sets the queue in which this uniform records itself when its value changes.
+     *
+     * <p>While a queue is set, new values are only written to this uniform's targets
+     * when {@link DeferredUniformQueue#flush()} is called.
+     *
+     * @param deferredQueue the queue to use, or {@code null} to write values immediately
+     */
+    void setDeferredQueue(@Nullable DeferredUniformQueue deferredQueue) {
+        if (this.deferredQueue != null && this.queued) {
+            // do not lose the pending value
+            this.flushDeferred();
+        }
+        this.deferredQueue = deferredQueue;
+    }
+
+    /**
+     * @return {@code true} if the new value should not be written to the targets right away
+     */
+    boolean defer() {
+        DeferredUniformQueue queue = this.deferredQueue;
+        if (queue == null) {
+            return false;
+        }
+        if (!this.queued) {
+            queue.enqueue(this);
+            this.queued = true;
+        }
+        return true;
+    }
+
+    final void flushDeferred() {
+        this.queued = false;
+        this.writeDeferred();
+    }
+
+    /**
+     * Writes the values which got {@linkplain #defer() deferred} to this uniform's targets
+     */
+    void writeDeferred() {
+        // NO-OP
+    }
 }
@@ -0,0 +1,263 @@
+/*
+ * Satin
+ * Copyright (C) 2019-2024 Ladysnake
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; If not, see <https://www.gnu.org/licenses>.
+ */
+package org.ladysnake.satin.impl;
+
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import net.minecraft.client.gl.PostEffectPass;
+import net.minecraft.client.gl.ShaderProgram;
+import org.ladysnake.satin.Satin;
+import org.ladysnake.satin.api.managed.uniform.Uniform1f;
+import org.ladysnake.satin.api.managed.uniform.Uniform1i;
+import org.ladysnake.satin.api.managed.uniform.Uniform2f;
+import org.ladysnake.satin.api.managed.uniform.Uniform2i;
+import org.ladysnake.satin.api.managed.uniform.Uniform3f;
+import org.ladysnake.satin.api.managed.uniform.Uniform3i;
+import org.ladysnake.satin.api.managed.uniform.Uniform4f;
+import org.ladysnake.satin.api.managed.uniform.Uniform4i;
+import org.ladysnake.satin.api.managed.uniform.UniformBlock;
+import org.ladysnake.satin.api.managed.uniform.UniformMat4;
+import org.lwjgl.opengl.GL31;
+import org.lwjgl.system.MemoryStack;
+import org.lwjgl.system.MemoryUtil;
+
+import javax.annotation.Nullable;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@code std140} uniform block shared by every program that declares it.
+ *
+ * <p>The block's layout is queried from the first program found to declare it,
+ * as {@code std140} guarantees that it is the same in every other program.
+ * Field values are written to a CPU-side staging buffer, which is uploaded
+ * to a {@link UniformRingBuffer} when {@link #flush()} is called.
+ *
+ * @see ReloadableShaderEffectManager#getOrCreateUniformBlock(String)
+ */
+public final class ManagedUniformBlock extends ManagedUniformBase implements UniformBlock {
+    private final int bindingPoint;
+    private final Map<String, UniformBlockField> fields = new HashMap<>();
+    private final Object2IntMap<String> fieldOffsets = new Object2IntOpenHashMap<>();
+    private int dataSize = -1;
+    @Nullable
+    private ByteBuffer staging;
+    @Nullable
+    private UniformRingBuffer ring;
+    private boolean dirty;
+
+    public ManagedUniformBlock(String name, int bindingPoint) {
+        super(name);
+        this.bindingPoint = bindingPoint;
+        this.fieldOffsets.defaultReturnValue(-1);
+    }
+
+    @Override
+    public boolean findUniformTargets(List<PostEffectPass> shaders) {
+        boolean found = false;
+        for (PostEffectPass shader : shaders) {
+            found |= this.bindTo(shader.getProgram().getGlRef());
+        }
+        return found;
+    }
+
+    @Override
+    public boolean findUniformTarget(ShaderProgram shader) {
+        return this.bindTo(shader.getGlRef());
+    }
+
+    private boolean bindTo(int program) {
+        int blockIndex = GL31.glGetUniformBlockIndex(program, this.name);
+        if (blockIndex == GL31.GL_INVALID_INDEX) {
+            return false;
+        }
+
+        int size = GL31.glGetActiveUniformBlocki(program, blockIndex, GL31.GL_UNIFORM_BLOCK_DATA_SIZE);
+        if (this.dataSize < 0) {
+            this.defineLayout(program, blockIndex, size);
+        } else if (this.dataSize != size) {
+            throw new IllegalStateException("Mismatched uniform block size for " + this.name + ", expected " + this.dataSize + " bytes but program declares " + size);
+        }
+
+        GL31.glUniformBlockBinding(program, blockIndex, this.bindingPoint);
+        return true;
+    }
+
+    private void defineLayout(int program, int blockIndex, int size) {
+        int memberCount = GL31.glGetActiveUniformBlocki(program, blockIndex, GL31.GL_UNIFORM_BLOCK_ACTIVE_UNIFORMS);
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            IntBuffer memberIndices = stack.mallocInt(memberCount);
+            GL31.glGetActiveUniformBlockiv(program, blockIndex, GL31.GL_UNIFORM_BLOCK_ACTIVE_UNIFORM_INDICES, memberIndices);
+            for (int i = 0; i < memberCount; i++) {
+                int memberIndex = memberIndices.get(i);
+                String memberName = GL31.glGetActiveUniformName(program, memberIndex);
+                int offset = GL31.glGetActiveUniformsi(program, memberIndex, GL31.GL_UNIFORM_OFFSET);
+                this.fieldOffsets.put(memberName, offset);
+            }
+        }
+
+        this.dataSize = size;
+        if (this.staging != null) {
+            MemoryUtil.memFree(this.staging);
+        }
+        this.staging = MemoryUtil.memCalloc(size);
+        if (this.ring != null) {
+            this.ring.close();
+        }
+        this.ring = new UniformRingBuffer(size);
+
+        for (UniformBlockField field : this.fields.values()) {
+            field.setOffset(this.getFieldOffset(field.getName()));
+        }
+        this.dirty = true;
+    }
+
+    /**
+     * Forgets about this block's layout, which will be queried again from the next program found to declare it.
+     *
+     * <p>Field values are kept, and written again to the buffer once the new layout is known.
+     */
+    void invalidateLayout() {
+        this.dataSize = -1;
+        this.fieldOffsets.clear();
+    }
+
+    /**
+     * Frees this block's buffers, until a program declaring it gets found again.
+     *
+     * <p>Field values are kept, and written again to the buffer once the layout is known.
+     */
+    void release() {
+        this.invalidateLayout();
+        if (this.ring != null) {
+            this.ring.close();
+            this.ring = null;
+        }
+        if (this.staging != null) {
+            MemoryUtil.memFree(this.staging);
+            this.staging = null;
+        }
+        this.dirty = false;
+    }
+
+    /**
+     * @return {@code true} if at least one program declaring this block has been found since the last reload
+     */
+    boolean hasLayout() {
+        return this.dataSize >= 0;
+    }
+
+    private int getFieldOffset(String fieldName) {
+        int offset = this.fieldOffsets.getInt(fieldName);
+        if (offset < 0) {
+            // blocks with an instance name prefix their members with the block name
+            offset = this.fieldOffsets.getInt(this.name + "." + fieldName);
+        }
+        return offset;
+    }
+
+    void write(int offset, int[] words, int count) {
+        ByteBuffer staging = this.staging;
+        if (staging != null) {
+            for (int i = 0; i < count; i++) {
+                staging.putInt(offset + (i << 2), words[i]);
+            }
+            this.dirty = true;
+        }
+    }
+
+    /**
+     * Uploads this block's staging buffer if any field has been modified since the last call
+     */
+    public void flush() {
+        if (this.dirty && this.ring != null && this.staging != null) {
+            this.ring.upload(this.staging, this.bindingPoint);
+            this.dirty = false;
+        }
+    }
+
+    private UniformBlockField findField(String fieldName, int count) {
+        UniformBlockField existing = this.fields.get(fieldName);
+        if (existing != null) {
+            return existing;
+        }
+        UniformBlockField ret = new UniformBlockField(this, fieldName, count);
+        if (this.dataSize >= 0) {
+            int offset = this.getFieldOffset(fieldName);
+            if (offset < 0) {
+                Satin.LOGGER.warn("No field found with name {} in uniform block {}", fieldName, this.name);
+            }
+            ret.setOffset(offset);
+        }
+        this.fields.put(fieldName, ret);
+        return ret;
+    }
+
+    @Override
+    public Uniform1i findUniform1i(String fieldName) {
+        return this.findField(fieldName, 1);
+    }
+
+    @Override
+    public Uniform2i findUniform2i(String fieldName) {
+        return this.findField(fieldName, 2);
+    }
+
+    @Override
+    public Uniform3i findUniform3i(String fieldName) {
+        return this.findField(fieldName, 3);
+    }
+
+    @Override
+    public Uniform4i findUniform4i(String fieldName) {
+        return this.findField(fieldName, 4);
+    }
+
+    @Override
+    public Uniform1f findUniform1f(String fieldName) {
+        return this.findField(fieldName, 1);
+    }
+
+    @Override
+    public Uniform2f findUniform2f(String fieldName) {
+        return this.findField(fieldName, 2);
+    }
+
+    @Override
+    public Uniform3f findUniform3f(String fieldName) {
+        return this.findField(fieldName, 3);
+    }
+
+    @Override
+    public Uniform4f findUniform4f(String fieldName) {
+        return this.findField(fieldName, 4);
+    }
+
+    @Override
+    public UniformMat4 findUniformMat4(String fieldName) {
+        return this.findField(fieldName, 16);
+    }
+
+    @Override
+    public int getBindingPoint() {
+        return this.bindingPoint;
+    }
+}
@@ -0,0 +1,595 @@
+/*
+ * Satin
+ * Copyright (C) 2019-2024 Ladysnake
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; If not, see <https://www.gnu.org/licenses>.
+ */
+package org.ladysnake.satin.impl;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import net.minecraft.resource.Resource;
+import net.minecraft.resource.ResourceFactory;
+import net.minecraft.resource.ResourcePack;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.JsonHelper;
+import org.ladysnake.satin.Satin;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Merges consecutive per-pixel passes of a post effect into generated programs, saving a full-screen write and read
+ * for every pass merged into the previous one.
+ *
+ * <p>Fusion is opt-in, by setting {@value #FUSE_PASSES_KEY} to {@code true} in the post effect definition.
+ * It is deliberately conservative: a pass only gets merged into the previous one when
+ * <ul>
+ *     <li>the previous pass writes to an unsized target that is only ever read by this pass, and that is not
+ *     {@linkplain ResettableManagedShaderEffect#getTarget(String) used from code}</li>
+ *     <li>both passes use the same vertex shader, have no auxiliary targets, and only declare {@code DiffuseSampler}</li>
+ *     <li>this pass only ever samples its input as {@code texture(DiffuseSampler, texCoord)}, and does not depend on its input size</li>
+ *     <li>the previous pass does not blend nor {@code discard}</li>
+ *     <li>no uniform other than those set by passes themselves is declared by both programs</li>
+ * </ul>
+ *
+ * <p>Uniforms keep their name in generated programs, so that managed uniforms find them without any remapping.
+ * Every other top level declaration gets prefixed with the index of its stage in the generated program.
+ */
+final class PassFusion {
+    static final String FUSE_PASSES_KEY = "satin:fuse_passes";
+    private static final String PROGRAM_DIRECTORY = "shaders/program/";
+    private static final String MAIN_TARGET = "minecraft:main";
+    private static final Set<String> FUSIBLE_PASS_KEYS = Set.of("name", "intarget", "outtarget", "use_linear_filter", "uniforms");
+    /**Uniforms set by {@link net.minecraft.client.gl.PostEffectPass} itself, which may be declared by several stages*/
+    private static final Set<String> PASS_UNIFORMS = Set.of("DiffuseSampler", "ProjMat", "InSize", "OutSize", "Time", "ScreenSize");
+    private static final Pattern COMMENT = Pattern.compile("//[^\\n]*|/\\*.*?\\*/", Pattern.DOTALL);
+    private static final Pattern TOKEN = Pattern.compile("[A-Za-z_]\\w*|\\d+\\.?\\d*(?:[eE][+-]?\\d+)?[fFuU]?|\\.\\d+(?:[eE][+-]?\\d+)?[fF]?|\\S");
+    private static final Pattern TYPE = Pattern.compile("void|bool|u?int|float|double|[biud]?vec[234]|d?mat[234](?:x[234])?|[iu]?sampler\\w+");
+
+    private final ResourceFactory resourceFactory;
+    private final Map<String, ProgramInfo> programs = new HashMap<>();
+
+    private PassFusion(ResourceFactory resourceFactory) {
+        this.resourceFactory = resourceFactory;
+    }
+
+    /**
+     * Fuses the passes of a post effect, if its definition opts into it
+     *
+     * @param resourceFactory the factory from which the post effect and its programs are loaded
+     * @param location        the full location of the post effect json file
+     * @param keptTargets     names of targets that must not be fused away
+     * @return the fused post effect, or {@code null} if no pass got fused
+     */
+    @Nullable
+    static Result fuse(ResourceFactory resourceFactory, Identifier location, Set<String> keptTargets) {
+        Optional<Resource> resource = resourceFactory.getResource(location);
+        if (resource.isEmpty()) {
+            return null;
+        }
+        JsonObject effect;
+        try (Reader reader = resource.get().getReader()) {
+            effect = JsonHelper.deserialize(reader);
+        } catch (IOException | JsonParseException e) {
+            // reported when the post effect actually gets parsed
+            return null;
+        }
+        if (!JsonHelper.getBoolean(effect, FUSE_PASSES_KEY, false)) {
+            return null;
+        }
+        return new PassFusion(resourceFactory).fuse(effect, resource.get().getPack(), location, keptTargets);
+    }
+
+    @Nullable
+    private Result fuse(JsonObject effect, ResourcePack pack, Identifier location, Set<String> keptTargets) {
+        JsonArray passes = JsonHelper.getArray(effect, "passes", null);
+        if (passes == null) {
+            return null;
+        }
+        Map<String, JsonElement> targets = new LinkedHashMap<>();
+        JsonArray targetArray = JsonHelper.getArray(effect, "targets", new JsonArray());
+        for (JsonElement target : targetArray) {
+            targets.put(target.isJsonObject() ? JsonHelper.getString(target.getAsJsonObject(), "name", "") : target.getAsString(), target);
+        }
+        Map<String, Integer> references = new HashMap<>();
+        List<JsonObject> passList = new ArrayList<>();
+        for (JsonElement element : passes) {
+            if (!element.isJsonObject()) {
+                return null;
+            }
+            JsonObject pass = element.getAsJsonObject();
+            passList.add(pass);
+            references.merge(JsonHelper.getString(pass, "intarget", ""), 1, Integer::sum);
+            references.merge(JsonHelper.getString(pass, "outtarget", ""), 1, Integer::sum);
+            for (JsonElement auxTarget : JsonHelper.getArray(pass, "auxtargets", new JsonArray())) {
+                if (auxTarget.isJsonObject()) {
+                    references.merge(JsonHelper.getString(auxTarget.getAsJsonObject(), "id", ""), 1, Integer::sum);
+                }
+            }
+        }
+
+        Map<Identifier, byte[]> generated = new HashMap<>();
+        Set<String> fusedTargets = new HashSet<>();
+        JsonArray fusedPasses = new JsonArray();
+        int[] passMapping = new int[passList.size()];
+        int i = 0;
+        while (i < passList.size()) {
+            int end = i + 1;
+            @Nullable FusedProgram fused = null;
+            while (end < passList.size() && this.canChain(passList, i, end, targets, references, keptTargets)) {
+                FusedProgram candidate = this.generate(passList.subList(i, end + 1));
+                if (candidate == null) {
+                    break;
+                }
+                fused = candidate;
+                end++;
+            }
+            if (fused == null) {
+                fusedPasses.add(passList.get(i));
+            } else {
+                generated.put(PreloadedShaderResources.resolve(PROGRAM_DIRECTORY, fused.name(), ".json"), fused.definition().toString().getBytes(StandardCharsets.UTF_8));
+                generated.put(PreloadedShaderResources.resolve(PROGRAM_DIRECTORY, fused.name(), ".fsh"), fused.fragment().getBytes(StandardCharsets.UTF_8));
+                fusedPasses.add(fusePasses(passList.subList(i, end), fused.name()));
+                for (int j = i; j < end - 1; j++) {
+                    fusedTargets.add(JsonHelper.getString(passList.get(j), "outtarget"));
+                }
+                Satin.LOGGER.debug("[Satin] Fused passes {} to {} of {}", i, end - 1, location);
+            }
+            Arrays.fill(passMapping, i, end, fusedPasses.size() - 1);
+            i = end;
+        }
+        if (fusedTargets.isEmpty()) {
+            return null;
+        }
+
+        JsonObject fusedEffect = effect.deepCopy();
+        JsonArray remainingTargets = new JsonArray();
+        for (Map.Entry<String, JsonElement> target : targets.entrySet()) {
+            if (!fusedTargets.contains(target.getKey())) {
+                remainingTargets.add(target.getValue());
+            }
+        }
+        fusedEffect.add("targets", remainingTargets);
+        fusedEffect.add("passes", fusedPasses);
+        generated.put(location, fusedEffect.toString().getBytes(StandardCharsets.UTF_8));
+
+        ResourceFactory fallback = this.resourceFactory;
+        ResourceFactory factory = id -> {
+            byte[] content = generated.get(id);
+            return content != null ? Optional.of(new Resource(pack, () -> new ByteArrayInputStream(content))) : fallback.getResource(id);
+        };
+        return new Result(factory, passMapping, fusedTargets);
+    }
+
+    /**
+     * Checks whether the pass at index {@code next} can be merged into the passes from {@code start} (inclusive) to {@code next} (exclusive)
+     */
+    private boolean canChain(List<JsonObject> passes, int start, int next, Map<String, JsonElement> targets, Map<String, Integer> references, Set<String> keptTargets) {
+        JsonObject previous = passes.get(next - 1);
+        JsonObject pass = passes.get(next);
+        if (!FUSIBLE_PASS_KEYS.containsAll(previous.keySet()) || !FUSIBLE_PASS_KEYS.containsAll(pass.keySet())) {
+            return false;
+        }
+        String intermediate = JsonHelper.getString(previous, "outtarget", "");
+        String output = JsonHelper.getString(pass, "outtarget", "");
+        if (!intermediate.equals(JsonHelper.getString(pass, "intarget", ""))
+                || intermediate.equals(MAIN_TARGET)
+                || !isUnsized(targets.get(intermediate))
+                || !hasDefaultFormat(targets.get(intermediate))
+                || references.getOrDefault(intermediate, 0) != 2
+                || keptTargets.contains(intermediate)
+                || !(output.equals(MAIN_TARGET) || isUnsized(targets.get(output)))
+                || output.equals(JsonHelper.getString(passes.get(start), "intarget", ""))) {
+            return false;
+        }
+        Set<String> overriddenUniforms = new HashSet<>();
+        for (JsonObject chained : passes.subList(start, next + 1)) {
+            for (JsonElement uniform : JsonHelper.getArray(chained, "uniforms", new JsonArray())) {
+                if (!uniform.isJsonObject() || !overriddenUniforms.add(JsonHelper.getString(uniform.getAsJsonObject(), "name", ""))) {
+                    return false;
+                }
+            }
+        }
+        ProgramInfo previousProgram = this.getProgram(JsonHelper.getString(previous, "name", ""));
+        ProgramInfo program = this.getProgram(JsonHelper.getString(pass, "name", ""));
+        return previousProgram != null && program != null
+                && !previousProgram.definition().has("blend")
+                && previousProgram.vertex().equals(program.vertex())
+                && Objects.equals(previousProgram.definition().get("attributes"), program.definition().get("attributes"));
+    }
+
+    private static boolean isUnsized(@Nullable JsonElement target) {
+        if (target == null) {
+            return false;
+        }
+        return !target.isJsonObject() || !target.getAsJsonObject().has("width") && !target.getAsJsonObject().has("height");
+    }
+
+    private static JsonObject fusePasses(List<JsonObject> passes, String programName) {
+        JsonObject first = passes.get(0);
+        JsonObject ret = new JsonObject();
+        ret.addProperty("name", programName);
+        ret.add("intarget", first.get("intarget"));
+        ret.add("outtarget", passes.get(passes.size() - 1).get("outtarget"));
+        if (first.has("use_linear_filter")) {
+            ret.add("use_linear_filter", first.get("use_linear_filter"));
+        }
+        JsonArray uniforms = new JsonArray();
+        for (JsonObject pass : passes) {
+            uniforms.addAll(JsonHelper.getArray(pass, "uniforms", new JsonArray()));
+        }
+        if (!uniforms.isEmpty()) {
+            ret.add("uniforms", uniforms);
+        }
+        return ret;
+    }
+
+    @Nullable
+    private ProgramInfo getProgram(String name) {
+        return this.programs.computeIfAbsent(name, this::loadProgram);
+    }
+
+    @Nullable
+    private ProgramInfo loadProgram(String name) {
+        try {
+            JsonObject definition;
+            try (Reader reader = this.resourceFactory.openAsReader(PreloadedShaderResources.resolve(PROGRAM_DIRECTORY, name, ".json"))) {
+                definition = JsonHelper.deserialize(reader);
+            }
+            JsonArray samplers = JsonHelper.getArray(definition, "samplers", new JsonArray());
+            if (samplers.size() != 1 || !samplers.get(0).isJsonObject()
+                    || !"DiffuseSampler".equals(JsonHelper.getString(samplers.get(0).getAsJsonObject(), "name", null))) {
+                return null;
+            }
+            String fragmentSource;
+            try (InputStream in = this.resourceFactory.open(PreloadedShaderResources.resolve(PROGRAM_DIRECTORY, JsonHelper.getString(definition, "fragment"), ".fsh"))) {
+                fragmentSource = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+            return new ProgramInfo(definition, JsonHelper.getString(definition, "vertex"), fragmentSource);
+        } catch (IOException | JsonParseException e) {
+            // reported when the post effect actually gets parsed
+            return null;
+        }
+    }
+
+    /**
+     * Generates a program running the fragment shaders of the given passes one after the other
+     *
+     * @return the generated program, or {@code null} if the passes' programs cannot be fused
+     */
+    @Nullable
+    private FusedProgram generate(List<JsonObject> passes) {
+        StageWriter writer = new StageWriter();
+        List<ProgramInfo> stages = new ArrayList<>(passes.size());
+        for (int i = 0; i < passes.size(); i++) {
+            ProgramInfo program = this.getProgram(JsonHelper.getString(passes.get(i), "name", ""));
+            if (program == null || !writer.append(program.fragment(), i, i == passes.size() - 1)) {
+                return null;
+            }
+            stages.add(program);
+        }
+        String fragment = writer.finish(passes.size());
+
+        ProgramInfo first = stages.get(0);
+        JsonObject definition = new JsonObject();
+        JsonObject lastDefinition = stages.get(stages.size() - 1).definition();
+        if (lastDefinition.has("blend")) {
+            definition.add("blend", lastDefinition.get("blend"));
+        }
+        definition.addProperty("vertex", first.vertex());
+        if (first.definition().has("attributes")) {
+            definition.add("attributes", first.definition().get("attributes"));
+        }
+        definition.add("samplers", first.definition().get("samplers"));
+        JsonArray uniforms = new JsonArray();
+        Set<String> uniformNames = new HashSet<>();
+        for (ProgramInfo stage : stages) {
+            for (JsonElement uniform : JsonHelper.getArray(stage.definition(), "uniforms", new JsonArray())) {
+                if (uniform.isJsonObject() && uniformNames.add(JsonHelper.getString(uniform.getAsJsonObject(), "name", ""))) {
+                    uniforms.add(uniform);
+                }
+            }
+        }
+        definition.add("uniforms", uniforms);
+
+        String name = "satin:fused/" + hash(definition + "\n" + fragment);
+        definition.addProperty("fragment", name);
+        return new FusedProgram(name, definition, fragment);
+    }
+
+    private static String hash(String content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is required to be supported by every Java platform", e);
+        }
+    }
+
+    /**
+     * @param resourceFactory a factory serving the fused post effect definition and generated programs
+     * @param passMapping     the index of the pass in the fused post effect that runs each pass of the original definition
+     * @param fusedTargets    names of the intermediate targets that got removed from the fused post effect
+     */
+    record Result(ResourceFactory resourceFactory, int[] passMapping, Set<String> fusedTargets) { }
+
+    private record ProgramInfo(JsonObject definition, String vertex, String fragment) { }
+
+    private record FusedProgram(String name, JsonObject definition, String fragment) { }
+
+    private record Token(String text, int start, int end) { }
+
+    /**
+     * @return {@code true} if the target stores colors as clamped 8-bit values, which fused stages reproduce
+     */
+    private static boolean hasDefaultFormat(JsonElement target) {
+        if (!target.isJsonObject()) {
+            return true;
+        }
+        String format = JsonHelper.getString(target.getAsJsonObject(), CustomFormatFramebuffers.FORMAT_KEY, "RGBA8");
+        return format.equalsIgnoreCase("RGBA8");
+    }
+
+    /**
+     * Concatenates the fragment shaders of fused passes, renaming their declarations so that they do not clash
+     */
+    private static final class StageWriter {
+        private final StringBuilder out = new StringBuilder();
+        private final Map<String, String> uniforms = new HashMap<>();
+        private final Set<String> inputs = new HashSet<>();
+        @Nullable
+        private String version;
+        /**Name of the variable holding the color written by the previous stage*/
+        @Nullable
+        private String previousOutput;
+
+        /**
+         * Appends a stage to the generated fragment shader
+         *
+         * @return {@code false} if the stage cannot be fused with the previous ones
+         */
+        boolean append(String source, int index, boolean last) {
+            String prefix = "satin_s" + index + "_";
+            StringBuilder body = new StringBuilder(source.length());
+            for (String line : COMMENT.matcher(source).replaceAll(" ").split("\n", -1)) {
+                String trimmed = line.strip();
+                if (trimmed.startsWith("#")) {
+                    // imports and macros would need to be expanded and namespaced too
+                    if (!trimmed.substring(1).strip().startsWith("version") || this.version != null && !this.version.equals(trimmed)) {
+                        return false;
+                    }
+                    this.version = trimmed;
+                } else {
+                    body.append(line);
+                }
+                body.append('\n');
+            }
+
+            List<Token> tokens = new ArrayList<>();
+            Matcher matcher = TOKEN.matcher(body);
+            while (matcher.find()) {
+                tokens.add(new Token(matcher.group(), matcher.start(), matcher.end()));
+            }
+
+            Set<String> renamed = new HashSet<>();
+            BitSet removed = new BitSet(tokens.size());
+            String outputName = null;
+            int depth = 0;
+            int statementStart = 0;
+            for (int t = 0; t < tokens.size(); t++) {
+                String text = tokens.get(t).text();
+                if (depth > 0) {
+                    if (text.equals("{")) {
+                        depth++;
+                    } else if (text.equals("}") && --depth == 0) {
+                        statementStart = t + 1;
+                    }
+                } else if (text.equals("{")) {
+                    // only function definitions are supported, not structs nor interface blocks
+                    int paren = indexOf(tokens, "(", statementStart, t);
+                    if (paren <= statementStart || indexOf(tokens, "struct", statementStart, t) >= 0 || indexOf(tokens, "uniform", statementStart, t) >= 0) {
+                        return false;
+                    }
+                    renamed.add(tokens.get(paren - 1).text());
+                    depth = 1;
+                } else if (text.equals(";")) {
+                    String qualifier = tokens.get(statementStart).text();
+                    List<String> names = declaredNames(tokens, statementStart, t);
+                    switch (qualifier) {
+                        case ";", "precision" -> { }
+                        case "uniform" -> {
+                            String type = findType(tokens, statementStart, t);
+                            int redeclared = 0;
+                            for (String name : names) {
+                                if (type.contains("sampler") && !name.equals("DiffuseSampler")) {
+                                    return false;
+                                }
+                                String existing = this.uniforms.putIfAbsent(name, type);
+                                if (existing != null) {
+                                    if (!PASS_UNIFORMS.contains(name) || !existing.equals(type)) {
+                                        return false;
+                                    }
+                                    redeclared++;
+                                }
+                            }
+                            if (redeclared == names.size()) {
+                                removed.set(statementStart, t + 1);
+                            } else if (redeclared > 0) {
+                                return false;
+                            }
+                        }
+                        case "in" -> {
+                            int redeclared = 0;
+                            for (String name : names) {
+                                if (!this.inputs.add(name)) {
+                                    redeclared++;
+                                }
+                            }
+                            if (redeclared == names.size()) {
+                                removed.set(statementStart, t + 1);
+                            } else if (redeclared > 0) {
+                                return false;
+                            }
+                        }
+                        case "out" -> {
+                            if (names.size() != 1 || outputName != null) {
+                                return false;
+                            }
+                            outputName = names.get(0);
+                            if (!last) {
+                                // intermediate colors become plain globals read by the next stage
+                                removed.set(statementStart);
+                                renamed.add(outputName);
+                            }
+                        }
+                        case "const" -> renamed.addAll(names);
+                        default -> {
+                            if (!TYPE.matcher(qualifier).matches() || names.isEmpty() && indexOf(tokens, "(", statementStart, t) < 0) {
+                                return false;
+                            }
+                            int paren = indexOf(tokens, "(", statementStart, t);
+                            if (names.isEmpty()) {
+                                // function prototype
+                                renamed.add(tokens.get(paren - 1).text());
+                            } else {
+                                renamed.addAll(names);
+                            }
+                        }
+                    }
+                    statementStart = t + 1;
+                } else if (text.equals("}")) {
+                    return false;
+                }
+            }
+            if (outputName == null || !renamed.contains("main")) {
+                return false;
+            }
+
+            int cursor = 0;
+            for (int t = 0; t < tokens.size(); t++) {
+                Token token = tokens.get(t);
+                String text = token.text();
+                if (removed.get(t)) {
+                    this.out.append(body, cursor, token.start());
+                    cursor = token.end();
+                    continue;
+                }
+                if (index > 0 && text.equals("texture") && t + 5 < tokens.size()
+                        && tokens.get(t + 1).text().equals("(")
+                        && tokens.get(t + 2).text().equals("DiffuseSampler")
+                        && tokens.get(t + 3).text().equals(",")
+                        && tokens.get(t + 4).text().equals("texCoord")
+                        && tokens.get(t + 5).text().equals(")")) {
+                    // the intermediate target would have clamped the color, 8-bit quantization is not worth reproducing
+                    this.out.append(body, cursor, token.start()).append("clamp(").append(this.previousOutput).append(", 0.0, 1.0)");
+                    cursor = tokens.get(t + 5).end();
+                    t += 5;
+                    continue;
+                }
+                if (index > 0 && (text.equals("DiffuseSampler") || text.equals("InSize") || text.equals("oneTexel"))
+                        || !last && text.equals("discard")
+                        || text.startsWith("gl_") && !text.equals("gl_FragCoord")) {
+                    return false;
+                }
+                if (renamed.contains(text) && (t == 0 || !tokens.get(t - 1).text().equals("."))) {
+                    this.out.append(body, cursor, token.start()).append(prefix).append(text);
+                    cursor = token.end();
+                }
+            }
+            this.out.append(body, cursor, body.length());
+            this.previousOutput = last ? null : prefix + outputName;
+            return true;
+        }
+
+        String finish(int stageCount) {
+            StringBuilder ret = new StringBuilder();
+            if (this.version != null) {
+                ret.append(this.version).append('\n');
+            }
+            ret.append(this.out).append("\nvoid main() {\n");
+            for (int i = 0; i < stageCount; i++) {
+                ret.append("    satin_s").append(i).append("_main();\n");
+            }
+            return ret.append("}\n").toString();
+        }
+
+        private static int indexOf(List<Token> tokens, String text, int start, int end) {
+            for (int i = start; i < end; i++) {
+                if (tokens.get(i).text().equals(text)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private static String findType(List<Token> tokens, int start, int end) {
+            for (int i = start; i < end; i++) {
+                if (TYPE.matcher(tokens.get(i).text()).matches()) {
+                    return tokens.get(i).text();
+                }
+            }
+            return "";
+        }
+
+        /**
+         * Finds the names declared by a top level statement, skipping array sizes and initializers
+         */
+        private static List<String> declaredNames(List<Token> tokens, int start, int end) {
+            List<String> ret = new ArrayList<>();
+            int nesting = 0;
+            boolean initializer = false;
+            for (int i = start; i < end; i++) {
+                String text = tokens.get(i).text();
+                switch (text) {
+                    case "(", "[" -> nesting++;
+                    case ")", "]" -> nesting--;
+                    case "=" -> initializer |= nesting == 0;
+                    case "," -> initializer &= nesting != 0;
+                    default -> {
+                        String next = tokens.get(i + 1).text();
+                        if (nesting == 0 && !initializer && Character.isJavaIdentifierStart(text.charAt(0))
+                                && !TYPE.matcher(text).matches()
+                                && (next.equals(";") || next.equals(",") || next.equals("[") || next.equals("="))) {
+                            ret.add(text);
+                        }
+                    }
+                }
+            }
+            return ret;
+        }
+    }
+}
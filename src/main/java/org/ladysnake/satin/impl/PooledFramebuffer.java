@@ -0,0 +1,95 @@
+/*
+ * Satin
+ * Copyright (C) 2019-2024 Ladysnake
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; If not, see <https://www.gnu.org/licenses>.
+ */
+package org.ladysnake.satin.impl;
+
+import com.mojang.blaze3d.platform.GlConst;
+import com.mojang.blaze3d.systems.RenderSystem;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.gl.Framebuffer;
+
+import javax.annotation.Nullable;
+
+/**
+ * A post effect target which textures are borrowed from the {@link TargetPool}.
+ *
+ * <p>The pooled textures may be overwritten by other effects as soon as the effect owning this target is done rendering.
+ * A pooled target can be given its own textures at any time with {@link #makeDedicated()}.
+ */
+public final class PooledFramebuffer extends Framebuffer {
+    @Nullable
+    private final CustomFormatFramebuffers.TextureFormat format;
+    private final int slot;
+    /**Key of the pooled textures currently in use, or {@code null} if this target has its own textures*/
+    @Nullable
+    private TargetPool.Key key;
+    private boolean dedicated;
+
+    public PooledFramebuffer(int width, int height, boolean getError, @Nullable CustomFormatFramebuffers.TextureFormat format, int slot) {
+        super(true);
+        this.format = format;
+        this.slot = slot;
+        this.resize(width, height, getError);
+    }
+
+    @Override
+    public void initFbo(int width, int height, boolean getError) {
+        if (this.dedicated) {
+            super.initFbo(width, height, getError);
+            return;
+        }
+        RenderSystem.assertOnRenderThreadOrInit();
+        this.viewportWidth = width;
+        this.viewportHeight = height;
+        this.textureWidth = width;
+        this.textureHeight = height;
+        this.key = new TargetPool.Key(width, height, this.format, this.slot);
+        Framebuffer shared = TargetPool.acquire(this.key, getError);
+        this.fbo = shared.fbo;
+        this.colorAttachment = shared.getColorAttachment();
+        this.depthAttachment = shared.getDepthAttachment();
+        this.setTexFilter(GlConst.GL_NEAREST);
+    }
+
+    @Override
+    public void delete() {
+        if (this.key == null) {
+            super.delete();
+            return;
+        }
+        RenderSystem.assertOnRenderThreadOrInit();
+        this.endRead();
+        this.endWrite();
+        TargetPool.release(this.key);
+        this.key = null;
+        this.fbo = -1;
+        this.colorAttachment = -1;
+        this.depthAttachment = -1;
+    }
+
+    /**
+     * Gives this target its own textures, so that their content persists between renders
+     */
+    public void makeDedicated() {
+        if (!this.dedicated) {
+            this.dedicated = true;
+            if (this.key != null) {
+                this.resize(this.textureWidth, this.textureHeight, MinecraftClient.IS_SYSTEM_MAC);
+            }
+        }
+    }
+}
@@ -0,0 +1,288 @@
+/*
+ * Satin
+ * Copyright (C) 2019-2024 Ladysnake
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; If not, see <https://www.gnu.org/licenses>.
+ */
+package org.ladysnake.satin.impl;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import net.minecraft.resource.Resource;
+import net.minecraft.resource.ResourceFactory;
+import net.minecraft.resource.ResourceManager;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.JsonHelper;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Shader resources read ahead of time during a resource reload, so that the render thread does not have to touch the disk.
+ *
+ * <p>Every file a managed shader depends on (json definitions, GLSL stages and their imports, effect textures)
+ * is discovered and read in the preparation phase, and hashed so that shaders which dependencies did not change
+ * can be kept as is. Resources that failed to load are left out, and get looked up again
+ * on the render thread so that errors are reported along with the shader that needs them.
+ *
+ * <p>This class is safe to use from several threads at once.
+ */
+final class PreloadedShaderResources {
+    private static final Pattern IMPORT_PATTERN = Pattern.compile("^\\s*#\\s*moj_import\\s*([<\"])(.+)[>\"]", Pattern.MULTILINE);
+    /**Marks resources that have been looked up but could not be read*/
+    private static final byte[] MISSING = new byte[0];
+
+    private final ResourceManager resourceManager;
+    private final Map<Identifier, byte[]> contents = new ConcurrentHashMap<>();
+    private final Map<Identifier, Resource> resources = new ConcurrentHashMap<>();
+    private final Map<Identifier, List<Identifier>> imports = new ConcurrentHashMap<>();
+    private final Map<ResettableManagedShaderBase<?>, byte[]> dependencyHashes = new ConcurrentHashMap<>();
+
+    PreloadedShaderResources(ResourceManager resourceManager) {
+        this.resourceManager = resourceManager;
+    }
+
+    /**
+     * Creates a resource factory serving preloaded resources, and delegating to {@code fallback} for every other one
+     */
+    ResourceFactory asFactory(ResourceFactory fallback) {
+        return id -> {
+            Resource preloaded = this.resources.get(id);
+            return preloaded != null ? Optional.of(preloaded) : fallback.getResource(id);
+        };
+    }
+
+    /**
+     * Preloads every resource a shader depends on, and records their hash
+     */
+    void preload(ResettableManagedShaderBase<?> shader) {
+        Dependencies dependencies = new Dependencies();
+        shader.preloadResources(dependencies);
+        this.dependencyHashes.put(shader, dependencies.hash());
+    }
+
+    /**
+     * @return the hash of every resource the given shader depends on, or {@code null} if it was not preloaded
+     */
+    @Nullable
+    byte[] getDependencyHash(ResettableManagedShaderBase<?> shader) {
+        return this.dependencyHashes.get(shader);
+    }
+
+    @Nullable
+    private byte[] read(Identifier id) {
+        byte[] content = this.contents.computeIfAbsent(id, this::load);
+        return content == MISSING ? null : content;
+    }
+
+    private byte[] load(Identifier id) {
+        Optional<Resource> resource = this.resourceManager.getResource(id);
+        if (resource.isPresent()) {
+            try (InputStream in = resource.get().getInputStream()) {
+                byte[] bytes = in.readAllBytes();
+                this.resources.put(id, new Resource(resource.get().getPack(), () -> new ByteArrayInputStream(bytes)));
+                return bytes;
+            } catch (IOException ignored) {
+                // reported when the shader actually gets created
+            }
+        }
+        return MISSING;
+    }
+
+    /**
+     * Reads the imports of a GLSL source file, scanning it on first access
+     */
+    private List<Identifier> getImports(Identifier id, byte[] content) {
+        return this.imports.computeIfAbsent(id, file -> {
+            List<Identifier> ret = new ArrayList<>();
+            Matcher matcher = IMPORT_PATTERN.matcher(new String(content, StandardCharsets.UTF_8));
+            while (matcher.find()) {
+                String name = matcher.group(2);
+                Identifier imported;
+                if (matcher.group(1).equals("<")) {
+                    Identifier parsed = Identifier.tryParse(name);
+                    imported = parsed == null ? null : parsed.withPrefixedPath("shaders/include/");
+                } else {
+                    String path = file.getPath();
+                    imported = Identifier.tryParse(file.getNamespace(), path.substring(0, path.lastIndexOf('/') + 1) + name);
+                }
+                if (imported != null) {
+                    ret.add(imported);
+                }
+            }
+            return ret;
+        });
+    }
+
+    /**
+     * Resolves a resource name the same way as Satin's shader loading hooks,
+     * where a namespace in the name is moved in front of the directory
+     */
+    static Identifier resolve(String directory, String name, String extension) {
+        Identifier split = Identifier.of(name);
+        return Identifier.of(split.getNamespace(), directory + split.getPath() + extension);
+    }
+
+    /**
+     * The set of resources a single shader depends on, recorded while they get preloaded
+     */
+    final class Dependencies {
+        private final Set<Identifier> visited = new TreeSet<>();
+
+        @Nullable
+        private byte[] read(Identifier id) {
+            this.visited.add(id);
+            return PreloadedShaderResources.this.read(id);
+        }
+
+        /**
+         * Preloads and parses a json file
+         *
+         * @return the parsed json object, or {@code null} if it could not be read
+         */
+        @Nullable
+        JsonObject readJson(Identifier id) {
+            byte[] content = this.read(id);
+            if (content != null) {
+                try (InputStreamReader reader = new InputStreamReader(new ByteArrayInputStream(content), StandardCharsets.UTF_8)) {
+                    return JsonHelper.deserialize(reader);
+                } catch (IOException | JsonParseException ignored) {
+                    // reported when the shader actually gets created
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Preloads a GLSL source file, along with every file it imports
+         *
+         * @param id the full location of the source file
+         */
+        void preloadGlsl(Identifier id) {
+            if (this.visited.contains(id)) {
+                return;
+            }
+            byte[] content = this.read(id);
+            if (content != null) {
+                for (Identifier imported : getImports(id, content)) {
+                    this.preloadGlsl(imported);
+                }
+            }
+        }
+
+        /**
+         * Preloads the json definition and GLSL stages of a program
+         *
+         * @param directory the directory in which the program is defined, e.g. {@code shaders/program/}
+         * @param name      the name of the program, optionally prefixed with a namespace
+         */
+        void preloadProgram(String directory, String name) {
+            JsonObject program = this.readJson(resolve(directory, name, ".json"));
+            if (program != null) {
+                String vertex = JsonHelper.getString(program, "vertex", null);
+                if (vertex != null) {
+                    this.preloadGlsl(resolve(directory, vertex, ".vsh"));
+                }
+                String fragment = JsonHelper.getString(program, "fragment", null);
+                if (fragment != null) {
+                    this.preloadGlsl(resolve(directory, fragment, ".fsh"));
+                }
+            }
+        }
+
+        /**
+         * Preloads a post effect definition, along with every program and texture used by its passes
+         *
+         * @param id the full location of the post effect json file
+         */
+        void preloadPostEffect(Identifier id) {
+            JsonObject effect = this.readJson(id);
+            if (effect == null) {
+                return;
+            }
+            Set<String> targets = new HashSet<>();
+            targets.add("minecraft:main");
+            JsonArray targetArray = JsonHelper.getArray(effect, "targets", null);
+            if (targetArray != null) {
+                for (JsonElement target : targetArray) {
+                    targets.add(target.isJsonObject() ? JsonHelper.getString(target.getAsJsonObject(), "name", "") : target.getAsString());
+                }
+            }
+            JsonArray passes = JsonHelper.getArray(effect, "passes", null);
+            if (passes != null) {
+                for (JsonElement element : passes) {
+                    if (!element.isJsonObject()) {
+                        continue;
+                    }
+                    JsonObject pass = element.getAsJsonObject();
+                    if (JsonHelper.hasString(pass, "name")) {
+                        this.preloadProgram("shaders/program/", JsonHelper.getString(pass, "name"));
+                    }
+                    JsonArray auxTargets = JsonHelper.getArray(pass, "auxtargets", null);
+                    if (auxTargets != null) {
+                        for (JsonElement auxTarget : auxTargets) {
+                            String auxId = auxTarget.isJsonObject() ? JsonHelper.getString(auxTarget.getAsJsonObject(), "id", null) : null;
+                            // anything that is not a target gets loaded as a texture
+                            if (auxId != null && !targets.contains(auxId) && !auxId.endsWith(":depth")) {
+                                this.read(resolve("textures/effect/", auxId, ".png"));
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Hashes the identifier and content of every visited resource, missing ones included
+         */
+        byte[] hash() {
+            try {
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                for (Identifier id : this.visited) {
+                    digest.update(id.toString().getBytes(StandardCharsets.UTF_8));
+                    digest.update((byte) 0);
+                    byte[] content = PreloadedShaderResources.this.read(id);
+                    if (content != null) {
+                        digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(0, content.length));
+                        digest.update(content);
+                    } else {
+                        digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(0, -1));
+                    }
+                }
+                return digest.digest();
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 is required to be supported by every Java platform", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,276 @@
+/*
+ * Satin
+ * Copyright (C) 2019-2024 Ladysnake
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; If not, see <https://www.gnu.org/licenses>.
+ */
+package org.ladysnake.satin.impl;
+
+import com.mojang.blaze3d.platform.GlStateManager;
+import com.mojang.blaze3d.systems.RenderSystem;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import net.fabricmc.loader.api.FabricLoader;
+import net.minecraft.client.gl.ShaderProgramSetupView;
+import net.minecraft.client.gl.ShaderStage;
+import org.ladysnake.satin.Satin;
+import org.ladysnake.satin.api.util.ShaderLinkException;
+import org.ladysnake.satin.mixin.client.gl.ShaderStageAccessor;
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL20;
+import org.lwjgl.opengl.GL41;
+import org.lwjgl.system.MemoryStack;
+import org.lwjgl.system.MemoryUtil;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * An on-disk cache of linked program binaries, enabled with the {@value #ENABLED_PROPERTY} system property.
+ *
+ * <p>Binaries are keyed by a hash of the driver's identification strings, the preprocessed sources of every stage
+ * and the program's attribute bindings. A binary rejected by the driver is deleted, and the program gets compiled normally.
+ *
+ * <p>Only programs created by managed shaders or {@link ValidatingShaderLoader} go through the cache.
+ * While a managed shader gets loaded, compilation of its stages is deferred until link time,
+ * so that programs found in the cache never get compiled at all.
+ */
+public final class ProgramBinaryCache {
+    public static final String ENABLED_PROPERTY = "satin.programBinaryCache";
+    private static final String EXTENSION = ".bin";
+
+    private static final IntSet pendingCompilations = new IntOpenHashSet();
+    private static final Int2ObjectMap<StringBuilder> attributeBindings = new Int2ObjectOpenHashMap<>();
+    private static int deferringDepth;
+    /**0 if not checked yet, 1 if enabled, -1 if not*/
+    private static int enabled;
+    private static String driverKey;
+    private static Path directory;
+    @Nullable
+    private static String linkingKey;
+
+    private ProgramBinaryCache() { }
+
+    public static boolean isEnabled() {
+        if (enabled == 0) {
+            RenderSystem.assertOnRenderThread();
+            enabled = -1;
+            if (Boolean.getBoolean(ENABLED_PROPERTY)) {
+                if (GL.getCapabilities().glProgramBinary != 0L && GL11.glGetInteger(GL41.GL_NUM_PROGRAM_BINARY_FORMATS) > 0) {
+                    enabled = 1;
+                    driverKey = GL11.glGetString(GL11.GL_VENDOR) + '\n' + GL11.glGetString(GL11.GL_RENDERER) + '\n' + GL11.glGetString(GL11.GL_VERSION);
+                    directory = FabricLoader.getInstance().getGameDir().resolve(Satin.MOD_ID).resolve("program_cache");
+                } else {
+                    Satin.LOGGER.warn("[Satin] Program binaries are not supported by the current driver, the program cache will be disabled");
+                }
+            }
+        }
+        return enabled > 0;
+    }
+
+    /**
+     * Starts caching programs, and deferring shader stage compilation until the stages get linked into a program.
+     * Calls must be balanced with {@link #endDeferredCompilation()}.
+     */
+    public static void beginDeferredCompilation() {
+        if (isEnabled()) {
+            deferringDepth++;
+        }
+    }
+
+    public static void endDeferredCompilation() {
+        if (deferringDepth > 0) {
+            deferringDepth--;
+        }
+    }
+
+    /**
+     * @return {@code true} if the compilation of the given shader should be deferred to link time
+     */
+    public static boolean deferCompilation(int shader) {
+        if (deferringDepth > 0) {
+            pendingCompilations.add(shader);
+            return true;
+        }
+        return false;
+    }
+
+    public static boolean isCompilationPending(int shader) {
+        return pendingCompilations.contains(shader);
+    }
+
+    public static void recordAttributeBinding(int program, int index, CharSequence name) {
+        if (deferringDepth > 0) {
+            attributeBindings.computeIfAbsent(program, p -> new StringBuilder()).append(index).append('=').append(name).append('\n');
+        }
+    }
+
+    /**
+     * Called right before a vanilla program gets linked, once its stages are attached
+     *
+     * @return {@code true} if the program got loaded from the cache, in which case it must not be linked again
+     */
+    public static boolean beforeLink(ShaderProgramSetupView program) {
+        int glRef = program.getGlRef();
+        int vertexShader = ((ShaderStageAccessor) program.getVertexShader()).getGlRef();
+        int fragmentShader = ((ShaderStageAccessor) program.getFragmentShader()).getGlRef();
+        StringBuilder attributes = attributeBindings.remove(glRef);
+        linkingKey = null;
+        // only managed shaders go through the cache
+        if (deferringDepth > 0) {
+            String key = computeKey(GL20.glGetShaderSource(vertexShader), GL20.glGetShaderSource(fragmentShader), attributes);
+            if (load(glRef, key)) {
+                // stages shared with a program missing the cache get compiled when that one gets linked
+                pendingCompilations.remove(vertexShader);
+                pendingCompilations.remove(fragmentShader);
+                return true;
+            }
+            linkingKey = key;
+            GL41.glProgramParameteri(glRef, GL41.GL_PROGRAM_BINARY_RETRIEVABLE_HINT, GL11.GL_TRUE);
+        }
+        compilePending(program.getVertexShader(), vertexShader);
+        compilePending(program.getFragmentShader(), fragmentShader);
+        return false;
+    }
+
+    /**
+     * Called right after a vanilla program got linked
+     */
+    public static void afterLink(ShaderProgramSetupView program) {
+        String key = linkingKey;
+        if (key != null) {
+            linkingKey = null;
+            store(program.getGlRef(), key);
+        }
+    }
+
+    private static void compilePending(ShaderStage stage, int shader) {
+        // stages which deferred compilation was dropped by a cache hit are not compiled either
+        if (pendingCompilations.remove(shader) | GlStateManager.glGetShaderi(shader, GL20.GL_COMPILE_STATUS) == 0) {
+            GlStateManager.glCompileShader(shader);
+            if (GlStateManager.glGetShaderi(shader, GL20.GL_COMPILE_STATUS) == 0) {
+                String log = GlStateManager.glGetShaderInfoLog(shader, 32768).trim();
+                throw new ShaderLinkException("Couldn't compile " + stage.getType().getName() + " shader " + stage.getName() + ": " + log);
+            }
+        }
+    }
+
+    /**
+     * Computes the cache key of a program, or returns {@code null} if the cache is disabled
+     */
+    @Nullable
+    public static String computeKey(@Nullable CharSequence vertexSource, @Nullable CharSequence fragmentSource, @Nullable CharSequence attributes) {
+        if (!isEnabled()) {
+            return null;
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (CharSequence part : new CharSequence[] {driverKey, vertexSource, fragmentSource, attributes}) {
+                digest.update(String.valueOf(part).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is required to be supported by every Java platform", e);
+        }
+    }
+
+    /**
+     * Loads a cached binary into the given program
+     *
+     * @return {@code true} if a binary was found and accepted by the driver
+     */
+    public static boolean load(int program, @Nullable String key) {
+        if (key == null) {
+            return false;
+        }
+        Path file = directory.resolve(key + EXTENSION);
+        if (!Files.isRegularFile(file)) {
+            return false;
+        }
+        ByteBuffer binary = null;
+        try {
+            byte[] bytes = Files.readAllBytes(file);
+            if (bytes.length > Integer.BYTES) {
+                binary = MemoryUtil.memAlloc(bytes.length - Integer.BYTES);
+                binary.put(0, bytes, Integer.BYTES, binary.capacity());
+                int format = ByteBuffer.wrap(bytes).getInt();
+                GL41.glProgramBinary(program, format, binary);
+                if (GL20.glGetProgrami(program, GL20.GL_LINK_STATUS) != 0) {
+                    return true;
+                }
+            }
+            // usually caused by a driver update that kept the same version string
+            Satin.LOGGER.debug("[Satin] Discarding rejected program binary {}", file);
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            Satin.LOGGER.warn("[Satin] Failed to read program binary {}", file, e);
+        } finally {
+            if (binary != null) {
+                MemoryUtil.memFree(binary);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Writes the binary of a freshly linked program to the cache
+     */
+    public static void store(int program, @Nullable String key) {
+        if (key == null || GL20.glGetProgrami(program, GL20.GL_LINK_STATUS) == 0) {
+            return;
+        }
+        int length = GL20.glGetProgrami(program, GL41.GL_PROGRAM_BINARY_LENGTH);
+        if (length <= 0) {
+            return;
+        }
+        ByteBuffer binary = MemoryUtil.memAlloc(length);
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            IntBuffer format = stack.mallocInt(1);
+            GL41.glGetProgramBinary(program, null, format, binary);
+            byte[] bytes = new byte[Integer.BYTES + length];
+            ByteBuffer.wrap(bytes).putInt(format.get(0));
+            binary.get(0, bytes, Integer.BYTES, length);
+            Files.createDirectories(directory);
+            Path tmp = Files.createTempFile(directory, key, ".tmp");
+            Files.write(tmp, bytes);
+            Files.move(tmp, directory.resolve(key + EXTENSION), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Satin.LOGGER.warn("[Satin] Failed to write program binary {}", key, e);
+        } finally {
+            MemoryUtil.memFree(binary);
+        }
+    }
+
+    /**
+     * Hints the driver that the binary of the given program will be retrieved after linking
+     */
+    public static void prepareForStore(int program) {
+        if (isEnabled()) {
+            GL41.glProgramParameteri(program, GL41.GL_PROGRAM_BINARY_RETRIEVABLE_HINT, GL11.GL_TRUE);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Satin
+ * Copyright (C) 2019-2024 Ladysnake
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; If not, see <https://www.gnu.org/licenses>.
+ */
+package org.ladysnake.satin.impl;
+
+import net.minecraft.client.gl.GlUniform;
+import org.ladysnake.satin.mixin.client.gl.GlUniformAccessor;
+
+import javax.annotation.Nullable;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A pool of linked post effect programs, shared by every managed shader effect using the same program definition.
+ *
+ * <p>Each {@link net.minecraft.client.gl.JsonEffectShaderProgram} still has its own uniforms and samplers.
+ * Only the OpenGL program object is shared, and the uniform state of a program instance gets uploaded again
+ * whenever it starts using a program last used by another instance.
+ * Programs are never shared between two passes of the same effect, nor with effects writing raw uniform values
+ * through {@link org.ladysnake.satin.api.managed.ManagedShaderEffect#setupDynamicUniforms(int, Runnable)},
+ * as those values live in the program object itself.
+ */
+public final class ProgramPool {
+    private static final Map<String, Entry> entries = new HashMap<>();
+    private static int poolingDepth;
+    /**Whether the effect being created may share its programs*/
+    private static boolean sharing;
+    /**Names of the programs reserved by the effect being created*/
+    private static final Set<String> effectPrograms = new HashSet<>();
+
+    private ProgramPool() { }
+
+    /**
+     * Starts pooling the programs created on the render thread. Calls must be balanced with {@link #endPooling()}.
+     *
+     * @param shared {@code false} to give every program of the effect being created its own program object
+     */
+    public static void beginPooling(boolean shared) {
+        if (poolingDepth++ == 0) {
+            sharing = shared;
+            effectPrograms.clear();
+        }
+    }
+
+    public static void endPooling() {
+        if (--poolingDepth == 0) {
+            effectPrograms.clear();
+        }
+    }
+
+    /**
+     * @return {@code true} if programs created right now get pooled
+     */
+    public static boolean isPooling() {
+        return poolingDepth > 0;
+    }
+
+    /**
+     * Reserves a program for a pass of the effect being created
+     *
+     * @param name the name of the program definition
+     * @return {@code true} if the program may be shared, {@code false} if the pass needs its own program object
+     */
+    public static boolean reserve(String name) {
+        // a second pass using the same program in one effect may hold different values
+        return poolingDepth > 0 && sharing && effectPrograms.add(name);
+    }
+
+    /**
+     * Gets a reference to a pooled program
+     *
+     * @param name the name of the program definition
+     * @return the pooled program, or {@code null} if it must be created
+     */
+    @Nullable
+    public static Entry acquire(String name) {
+        if (poolingDepth <= 0) {
+            return null;
+        }
+        Entry entry = entries.get(name);
+        if (entry != null) {
+            entry.refCount++;
+        }
+        return entry;
+    }
+
+    /**
+     * Adds a freshly linked program to the pool
+     *
+     * @return the pool entry referencing the program, or {@code null} if the program is not pooled
+     */
+    @Nullable
+    public static Entry register(String name, int glRef) {
+        if (poolingDepth <= 0) {
+            return null;
+        }
+        Entry entry = new Entry(name, glRef);
+        entries.put(name, entry);
+        return entry;
+    }
+
+    /**
+     * Stops handing out the currently pooled programs, as their sources may have changed.
+     *
+     * <p>Programs still in use stay alive until their last user releases them.
+     */
+    public static void invalidate() {
+        entries.clear();
+    }
+
+    /**
+     * Marks every uniform of a program instance for upload, after the program got used by another instance
+     */
+    public static void invalidateUniformState(List<GlUniform> uniforms) {
+        for (GlUniform uniform : uniforms) {
+            if (uniform instanceof ArrayGlUniform array) {
+                array.markAllDirty();
+            } else {
+                ((GlUniformAccessor) uniform).setStateDirty(true);
+            }
+        }
+    }
+
+    public static final class Entry {
+        private final String name;
+        private final int glRef;
+        private int refCount = 1;
+        @Nullable
+        private Object owner;
+
+        private Entry(String name, int glRef) {
+            this.name = name;
+            this.glRef = glRef;
+        }
+
+        public int getGlRef() {
+            return this.glRef;
+        }
+
+        /**
+         * Records the program instance currently using this program
+         *
+         * @return {@code true} if the previous user was a different instance
+         */
+        public boolean claim(Object instance) {
+            if (this.owner != instance) {
+                this.owner = instance;
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Releases a reference to this program
+         *
+         * @param instance the program instance giving up its reference
+         * @return {@code true} if this was the last reference, meaning the program must be deleted
+         */
+        public boolean release(Object instance) {
+            if (this.owner == instance) {
+                this.owner = null;
+            }
+            if (--this.refCount > 0) {
+                return false;
+            }
+            entries.remove(this.name, this);
+            return true;
+        }
+    }
+}
@@ -17,21 +17,34 @@
  */
 package org.ladysnake.satin.impl;
 
+import com.google.common.base.Preconditions;
+import com.mojang.blaze3d.systems.RenderSystem;
 import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
 import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.render.Camera;
 import net.minecraft.client.render.VertexFormat;
 import net.minecraft.client.render.VertexFormats;
 import net.minecraft.client.render.WorldRenderer;
 import net.minecraft.client.util.Window;
 import net.minecraft.resource.ResourceFactory;
 import net.minecraft.util.Identifier;
+import org.joml.Matrix4f;
 import org.ladysnake.satin.Satin;
 import org.ladysnake.satin.api.event.ResolutionChangeCallback;
 import org.ladysnake.satin.api.event.WorldRendererReloadCallback;
+import org.ladysnake.satin.api.managed.EffectChain;
 import org.ladysnake.satin.api.managed.ManagedCoreShader;
+import org.ladysnake.satin.api.managed.GpuTimings;
 import org.ladysnake.satin.api.managed.ManagedShaderEffect;
+import org.ladysnake.satin.api.managed.RenderStatistics;
 import org.ladysnake.satin.api.managed.ShaderEffectManager;
+import org.ladysnake.satin.api.managed.uniform.UniformFinder;
 
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.function.Consumer;
 
@@ -43,8 +56,17 @@ import java.util.function.Consumer;
  */
 public final class ReloadableShaderEffectManager implements ShaderEffectManager, ResolutionChangeCallback, WorldRendererReloadCallback {
     public static final ReloadableShaderEffectManager INSTANCE = new ReloadableShaderEffectManager();
+    /**First uniform buffer binding point used by Satin, leaving lower ones for other mods*/
+    private static final int FIRST_UNIFORM_BLOCK_BINDING = 8;
 
     private final Set<ResettableManagedShaderBase<?>> managedShaders = new ReferenceOpenHashSet<>();
+    private final Map<String, ManagedUniformBlock> uniformBlocks = new LinkedHashMap<>();
+    private int nextUniformBlockBinding = FIRST_UNIFORM_BLOCK_BINDING;
+    private boolean statisticsOverlay;
+    private boolean gpuTiming;
+    private float gpuTimeBudget;
+    private final EffectScheduler scheduler = new EffectScheduler();
+    private final FrameGlobals frameGlobals = new FrameGlobals(this.getOrCreateUniformBlock(FrameGlobals.BLOCK_NAME));
 
     /**
      * Manages a post-processing shader loaded from a json definition file
@@ -101,17 +123,193 @@ public final class ReloadableShaderEffectManager implements ShaderEffectManager,
     public void dispose(ManagedShaderEffect shader) {
         shader.release();
         managedShaders.remove(shader);
+        this.releaseUnusedUniformBlocks();
     }
 
     @Override
     public void dispose(ManagedCoreShader shader) {
         shader.release();
         managedShaders.remove(shader);
+        this.releaseUnusedUniformBlocks();
     }
 
-    public void reload(ResourceFactory shaderResources) {
+    /**
+     * Frees the buffers of every uniform block no longer declared by any managed shader
+     */
+    private void releaseUnusedUniformBlocks() {
+        for (ManagedUniformBlock block : this.uniformBlocks.values()) {
+            if (this.managedShaders.stream().noneMatch(s -> s.usesUniformBlock(block))) {
+                block.release();
+            }
+        }
+    }
+
+    @Override
+    public EffectChain createEffectChain(ManagedShaderEffect... effects) {
+        return new ManagedEffectChain(List.of(effects));
+    }
+
+    @Override
+    public void renderBatched(Runnable renderer) {
+        RenderSystem.assertOnRenderThread();
+        RenderStateTracker.beginDeferral();
+        try {
+            renderer.run();
+        } finally {
+            RenderStateTracker.endDeferral();
+        }
+    }
+
+    @Override
+    public void restoreRenderState() {
+        RenderSystem.assertOnRenderThread();
+        RenderStateTracker.flush();
+    }
+
+    @Override
+    public <B> B createUniformBinder(UniformFinder shader, Class<B> binderType) {
+        return UniformBinderFactory.create(shader, binderType);
+    }
+
+    @Override
+    public RenderStatistics getLastFrameStatistics() {
+        return RenderStats.getLastFrame();
+    }
+
+    @Override
+    public void setStatisticsOverlayEnabled(boolean enabled) {
+        this.statisticsOverlay = enabled;
+    }
+
+    public boolean isStatisticsOverlayEnabled() {
+        return this.statisticsOverlay;
+    }
+
+    @Override
+    public void setGpuTimingEnabled(boolean enabled) {
+        this.gpuTiming = enabled;
+    }
+
+    public boolean isGpuTimingEnabled() {
+        return this.gpuTiming || this.statisticsOverlay || this.gpuTimeBudget > 0f;
+    }
+
+    @Override
+    public void setGpuTimeBudget(float milliseconds) {
+        Preconditions.checkArgument(milliseconds >= 0f, "GPU time budget must not be negative, got %s", milliseconds);
+        this.gpuTimeBudget = milliseconds;
+    }
+
+    @Override
+    public GpuTimings getGpuTimings(ManagedShaderEffect effect) {
+        return effect instanceof ResettableManagedShaderEffect managed ? managed.getGpuTimings() : GpuTimings.EMPTY;
+    }
+
+    @Override
+    public List<GpuTimings> getPassGpuTimings(ManagedShaderEffect effect) {
+        return effect instanceof ResettableManagedShaderEffect managed ? managed.getPassGpuTimings() : List.of();
+    }
+
+    /**
+     * Called at the very start of each frame, before anything gets rendered
+     */
+    public void onFrameStart() {
+        RenderStats.endFrame();
+        RenderStateTracker.reset();
+        for (ResettableManagedShaderBase<?> shader : this.managedShaders) {
+            if (shader instanceof ResettableManagedShaderEffect effect) {
+                effect.evaluateActivePredicate();
+            }
+        }
+        this.scheduler.update(this.managedShaders, this.gpuTimeBudget);
+    }
+
+    /**
+     * Gets the uniform block with the given name, creating it if it does not exist yet.
+     *
+     * <p>A newly created block gets bound to every initialized managed shader that declares it.
+     *
+     * @param name the name of the uniform block in shader source files
+     * @return the uniform block shared by every managed shader
+     */
+    public ManagedUniformBlock getOrCreateUniformBlock(String name) {
+        ManagedUniformBlock existing = this.uniformBlocks.get(name);
+        if (existing != null) {
+            return existing;
+        }
+        ManagedUniformBlock ret = new ManagedUniformBlock(name, this.nextUniformBlockBinding++);
+        this.uniformBlocks.put(name, ret);
         for (ResettableManagedShaderBase<?> ss : managedShaders) {
-            ss.initializeOrLog(shaderResources);
+            ss.setupUniformBlock(ret);
+        }
+        return ret;
+    }
+
+    public Collection<ManagedUniformBlock> getUniformBlocks() {
+        return this.uniformBlocks.values();
+    }
+
+    /**
+     * Uploads every uniform block that has been modified since the last flush
+     */
+    public void flushUniformBlocks() {
+        for (ManagedUniformBlock block : this.uniformBlocks.values()) {
+            block.flush();
+        }
+    }
+
+    /**
+     * Fills the {@value FrameGlobals#BLOCK_NAME} uniform block for the frame being rendered
+     */
+    public void updateFrameGlobals(Camera camera, Matrix4f view, Matrix4f projection, float tickDelta) {
+        this.frameGlobals.update(camera, view, projection, RenderSystem.getShaderGameTime(), tickDelta);
+    }
+
+    /**
+     * @return a snapshot of every shader currently managed
+     */
+    List<ResettableManagedShaderBase<?>> getManagedShaders() {
+        return List.copyOf(this.managedShaders);
+    }
+
+    /**
+     * Initializes again every managed shader which dependencies changed, on the render thread.
+     *
+     * <p>Shaders which dependencies are all identical keep their GPU objects and uniform state.
+     *
+     * @param resources resources preloaded by {@link ShaderReloadListener}
+     * @param fallback  the resource manager to look up resources that were not preloaded in
+     */
+    void reload(PreloadedShaderResources resources, ResourceFactory fallback) {
+        RenderSystem.assertOnRenderThread();
+        Set<ResettableManagedShaderBase<?>> stale = new ReferenceOpenHashSet<>();
+        for (ResettableManagedShaderBase<?> ss : managedShaders) {
+            byte[] hash = resources.getDependencyHash(ss);
+            if (!ss.isInitialized() || hash == null || !Arrays.equals(hash, ss.getDependencyHash())) {
+                stale.add(ss);
+            }
+        }
+        if (stale.isEmpty()) {
+            return;
+        }
+
+        // program sources may have changed too
+        ProgramPool.invalidate();
+        for (ManagedUniformBlock block : this.uniformBlocks.values()) {
+            // shader sources may have changed, along with block layouts
+            block.invalidateLayout();
+        }
+        ResourceFactory shaderResources = resources.asFactory(fallback);
+        for (ResettableManagedShaderBase<?> ss : managedShaders) {
+            if (stale.contains(ss) && ss instanceof ResettableManagedShaderEffect effect && !effect.isEnabled()) {
+                // initialized again when it next renders
+                ss.release();
+            } else if (stale.contains(ss)) {
+                ss.initializeOrLog(shaderResources);
+                ss.setDependencyHash(resources.getDependencyHash(ss));
+            } else {
+                ss.setupUniformBlocks();
+            }
         }
     }
 
@@ -130,7 +328,7 @@ public final class ReloadableShaderEffectManager implements ShaderEffectManager,
         if (!Satin.areShadersDisabled() && !managedShaders.isEmpty()) {
             for (ResettableManagedShaderBase<?> ss : managedShaders) {
                 if (ss.isInitialized()) {
-                    ss.setup(newWidth, newHeight);
+                    ss.resize(newWidth, newHeight);
                 }
             }
         }
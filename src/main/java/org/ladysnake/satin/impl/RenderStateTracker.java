@@ -0,0 +1,177 @@
+/*
+ * Satin
+ * Copyright (C) 2019-2024 Ladysnake
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; If not, see <https://www.gnu.org/licenses>.
+ */
+package org.ladysnake.satin.impl;
+
+import com.mojang.blaze3d.systems.RenderSystem;
+import net.minecraft.client.MinecraftClient;
+import org.apiguardian.api.API;
+
+import static org.apiguardian.api.API.Status.INTERNAL;
+import static org.lwjgl.opengl.GL11.GL_ONE_MINUS_SRC_ALPHA;
+import static org.lwjgl.opengl.GL11.GL_SRC_ALPHA;
+
+/**
+ * Keeps track of the graphic state touched by Satin's render paths, so that consecutive effects
+ * do not set it up and restore it again in between.
+ *
+ * <p>Values set through this class are remembered until control returns to vanilla rendering,
+ * at which point they are forgotten, as anything may have changed them since. State changes
+ * matching the remembered value are skipped.
+ *
+ * <p>The state vanilla rendering expects is restored after every effect, unless {@linkplain #beginDeferral() deferring},
+ * which only happens within effect chains and {@link org.ladysnake.satin.api.managed.ShaderEffectManager#renderBatched(Runnable) batches}.
+ * Like {@link RenderStats}, this class is only ever used from the render thread.
+ */
+@API(status = INTERNAL)
+public final class RenderStateTracker {
+    private static final byte UNKNOWN = -1;
+    private static final byte DISABLED = 0;
+    private static final byte ENABLED = 1;
+
+    private static byte blend = UNKNOWN;
+    private static byte depthTest = UNKNOWN;
+    private static int blendSrcFactor = UNKNOWN;
+    private static int blendDstFactor = UNKNOWN;
+    private static boolean textureMatrixReset;
+    /**Whether the main framebuffer and the state vanilla expects have yet to be restored*/
+    private static boolean restorePending;
+    private static int deferralDepth;
+
+    private RenderStateTracker() { }
+
+    /**
+     * Sets up the graphic state post effect passes expect, skipping whatever is already set up
+     */
+    static void beginPostProcessing() {
+        restorePending = false;
+        setBlend(false);
+        setDepthTest(false);
+        if (!textureMatrixReset) {
+            RenderSystem.resetTextureMatrix();
+            textureMatrixReset = true;
+        }
+    }
+
+    /**
+     * Called after post effect passes ran, as their programs may have set up their own blend state
+     */
+    static void onPassesRendered() {
+        blend = UNKNOWN;
+        blendSrcFactor = UNKNOWN;
+        blendDstFactor = UNKNOWN;
+    }
+
+    /**
+     * Restores the graphic state vanilla rendering expects, or schedules it if currently {@linkplain #beginDeferral() deferring}
+     */
+    static void endPostProcessing() {
+        if (deferralDepth > 0) {
+            restorePending = true;
+        } else {
+            restore();
+        }
+    }
+
+    /**
+     * Starts a section during which restoring the graphic state after rendering effects is deferred to the end of the section.
+     *
+     * <p>Sections may be nested, in which case the state is restored when the outermost one ends.
+     */
+    static void beginDeferral() {
+        deferralDepth++;
+    }
+
+    /**
+     * Ends a section started with {@link #beginDeferral()}
+     */
+    static void endDeferral() {
+        if (deferralDepth > 0 && --deferralDepth == 0) {
+            flush();
+        }
+    }
+
+    /**
+     * Immediately restores the graphic state if restoring it has been deferred, and forgets about every remembered value
+     */
+    static void flush() {
+        if (restorePending) {
+            restorePending = false;
+            restore();
+        } else {
+            invalidate();
+        }
+    }
+
+    /**
+     * Called when a new frame starts, in case a section got interrupted by an exception
+     */
+    static void reset() {
+        deferralDepth = 0;
+        flush();
+    }
+
+    private static void restore() {
+        MinecraftClient.getInstance().getFramebuffer().beginWrite(true);
+        RenderStats.framebufferBinds++;
+        setBlend(false);
+        blendFunc(GL_SRC_ALPHA, GL_ONE_MINUS_SRC_ALPHA);
+        setDepthTest(true);
+        // vanilla rendering takes over from here
+        invalidate();
+    }
+
+    private static void invalidate() {
+        blend = UNKNOWN;
+        depthTest = UNKNOWN;
+        blendSrcFactor = UNKNOWN;
+        blendDstFactor = UNKNOWN;
+        textureMatrixReset = false;
+    }
+
+    private static void setBlend(boolean enabled) {
+        byte value = enabled ? ENABLED : DISABLED;
+        if (blend != value) {
+            if (enabled) {
+                RenderSystem.enableBlend();
+            } else {
+                RenderSystem.disableBlend();
+            }
+            blend = value;
+        }
+    }
+
+    private static void setDepthTest(boolean enabled) {
+        byte value = enabled ? ENABLED : DISABLED;
+        if (depthTest != value) {
+            if (enabled) {
+                RenderSystem.enableDepthTest();
+            } else {
+                RenderSystem.disableDepthTest();
+            }
+            depthTest = value;
+        }
+    }
+
+    private static void blendFunc(int srcFactor, int dstFactor) {
+        if (blendSrcFactor != srcFactor || blendDstFactor != dstFactor) {
+            RenderSystem.blendFunc(srcFactor, dstFactor);
+            blendSrcFactor = srcFactor;
+            blendDstFactor = dstFactor;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Satin
+ * Copyright (C) 2019-2024 Ladysnake
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; If not, see <https://www.gnu.org/licenses>.
+ */
+package org.ladysnake.satin.impl;
+
+import org.apiguardian.api.API;
+import org.ladysnake.satin.api.managed.RenderStatistics;
+
+import static org.apiguardian.api.API.Status.INTERNAL;
+
+/**
+ * Per-frame counters of Satin's rendering work.
+ *
+ * <p>Counters are plain fields, only ever touched from the render thread.
+ * They are reset each time a new frame starts, after being saved in a {@link RenderStatistics} snapshot.
+ */
+@API(status = INTERNAL)
+public final class RenderStats {
+    public static int effectsRendered;
+    public static int passesExecuted;
+    public static int framebufferBinds;
+    public static int uniformSets;
+    public static int redundantUniformSets;
+    public static int samplerRebinds;
+    public static int depthCopies;
+
+    /**Whether the post effect being rendered is a managed one, which framebuffer binds are counted*/
+    static boolean renderingManagedEffect;
+
+    /**Index of the current frame, incremented each time a new frame starts*/
+    public static int frameIndex;
+    /**Exponential moving average of the time between two frame starts, in milliseconds*/
+    public static float smoothedFrameTime;
+
+    private static RenderStatistics lastFrame = RenderStatistics.EMPTY;
+    private static long lastFrameStart;
+
+    private RenderStats() { }
+
+    static void endFrame() {
+        lastFrame = new RenderStatistics(effectsRendered, passesExecuted, framebufferBinds, uniformSets, redundantUniformSets, samplerRebinds, depthCopies);
+        effectsRendered = 0;
+        passesExecuted = 0;
+        framebufferBinds = 0;
+        uniformSets = 0;
+        redundantUniformSets = 0;
+        samplerRebinds = 0;
+        depthCopies = 0;
+
+        long now = System.nanoTime();
+        if (lastFrameStart != 0L) {
+            float frameTime = (now - lastFrameStart) / 1_000_000f;
+            smoothedFrameTime = smoothedFrameTime == 0f ? frameTime : smoothedFrameTime + (frameTime - smoothedFrameTime) * 0.1f;
+        }
+        lastFrameStart = now;
+        frameIndex++;
+    }
+
+    /**
+     * Called each time a post effect pass binds a framebuffer
+     */
+    public static void onPassFramebufferBound() {
+        if (renderingManagedEffect) {
+            framebufferBinds++;
+        }
+    }
+
+    static RenderStatistics getLastFrame() {
+        return lastFrame;
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Satin
+ * Copyright (C) 2019-2024 Ladysnake
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; If not, see <https://www.gnu.org/licenses>.
+ */
+package org.ladysnake.satin.impl;
+
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.font.TextRenderer;
+import net.minecraft.client.gui.DrawContext;
+import net.minecraft.client.render.RenderTickCounter;
+import org.ladysnake.satin.api.managed.GpuTimings;
+import org.ladysnake.satin.api.managed.RenderStatistics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Draws the last frame's {@link RenderStatistics} in the bottom left corner of the screen, in the style of the debug HUD
+ */
+public final class RenderStatsOverlay {
+    private static final int TEXT_COLOR = 0xE0E0E0;
+    private static final int BACKGROUND_COLOR = 0x90505050;
+
+    private RenderStatsOverlay() { }
+
+    public static void render(DrawContext context, RenderTickCounter tickCounter) {
+        if (!ReloadableShaderEffectManager.INSTANCE.isStatisticsOverlayEnabled()) {
+            return;
+        }
+        MinecraftClient client = MinecraftClient.getInstance();
+        if (client.options.hudHidden) {
+            return;
+        }
+
+        RenderStatistics stats = ReloadableShaderEffectManager.INSTANCE.getLastFrameStatistics();
+        List<String> lines = new ArrayList<>(List.of(
+                "[Satin]",
+                "Effects: " + stats.effectsRendered() + ", passes: " + stats.passesExecuted(),
+                "Framebuffer binds: " + stats.framebufferBinds(),
+                "Uniform sets: " + stats.uniformSets() + " (" + stats.redundantUniformSets() + " redundant)",
+                "Sampler rebinds: " + stats.samplerRebinds(),
+                "Depth copies: " + stats.depthCopies()
+        ));
+        for (ResettableManagedShaderBase<?> shader : ReloadableShaderEffectManager.INSTANCE.getManagedShaders()) {
+            if (shader instanceof ResettableManagedShaderEffect effect) {
+                GpuTimings timings = effect.getGpuTimings();
+                if (timings.sampleCount() > 0) {
+                    lines.add(String.format(Locale.ROOT, "%s: %.2f ms avg, %.2f ms p95", effect.getLocation(), timings.average(), timings.p95()));
+                }
+            }
+        }
+
+        TextRenderer textRenderer = client.textRenderer;
+        int lineHeight = textRenderer.fontHeight + 1;
+        int y = context.getScaledWindowHeight() - lines.size() * lineHeight - 2;
+        for (String line : lines) {
+            int width = textRenderer.getWidth(line);
+            context.fill(1, y - 1, 2 + width + 1, y + lineHeight - 1, BACKGROUND_COLOR);
+            context.drawText(textRenderer, line, 2, y, TEXT_COLOR, false);
+            y += lineHeight;
+        }
+    }
+}
@@ -50,13 +50,24 @@ public final class ResettableManagedCoreShader extends ResettableManagedShaderBa
         this.renderLayerSupplier = RenderLayerSupplier.shader(
                 String.format("%s_%d", location, System.identityHashCode(this)),
                 vertexFormat,
-                this::getProgram);
+                () -> {
+                    // uniform blocks are shared, so they may have been modified by anything since the last draw
+                    ReloadableShaderEffectManager.INSTANCE.flushUniformBlocks();
+                    return this.getProgram();
+                });
     }
 
     @Override
     protected ShaderProgram parseShader(ResourceFactory resourceManager, MinecraftClient mc, Identifier location) throws IOException {
         // Easiest way of getting modded shader locations to work
-        return new FabricShaderProgram(resourceManager, this.getLocation(), this.vertexFormat);
+        ShaderProgram ret = new FabricShaderProgram(resourceManager, this.getLocation(), this.vertexFormat);
+        ((SamplerAccess) ret).satin$markManaged();
+        return ret;
+    }
+
+    @Override
+    protected void preloadResources(PreloadedShaderResources.Dependencies dependencies) {
+        dependencies.preloadProgram("shaders/core/", this.getLocation().toString());
     }
 
     @Override
@@ -65,6 +76,7 @@ public final class ResettableManagedCoreShader extends ResettableManagedShaderBa
         for (ManagedUniformBase uniform : this.getManagedUniforms()) {
             setupUniform(uniform, this.shader);
         }
+        this.setupUniformBlocks(this.shader);
         this.initCallback.accept(this);
     }
 
@@ -17,6 +17,7 @@
  */
 package org.ladysnake.satin.impl;
 
+import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.resource.ResourceFactory;
 import net.minecraft.util.Identifier;
@@ -30,16 +31,20 @@ import org.ladysnake.satin.api.managed.uniform.Uniform3f;
 import org.ladysnake.satin.api.managed.uniform.Uniform3i;
 import org.ladysnake.satin.api.managed.uniform.Uniform4f;
 import org.ladysnake.satin.api.managed.uniform.Uniform4i;
+import org.ladysnake.satin.api.managed.uniform.UniformArray;
+import org.ladysnake.satin.api.managed.uniform.UniformBlock;
 import org.ladysnake.satin.api.managed.uniform.UniformFinder;
 import org.ladysnake.satin.api.managed.uniform.UniformMat4;
 
 import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.function.Function;
 
 import static org.apiguardian.api.API.Status.INTERNAL;
@@ -48,8 +53,13 @@ public abstract class ResettableManagedShaderBase<S extends AutoCloseable> imple
     /**Location of the shader json definition file*/
     private final Identifier location;
     private final Map<String, ManagedUniform> managedUniforms = new HashMap<>();
+    private final Map<String, ManagedUniformArray> managedArrays = new HashMap<>();
     private final List<ManagedUniformBase> allUniforms = new ArrayList<>();
+    /**Uniform blocks declared by this shader's programs, since it was last initialized*/
+    private final Set<ManagedUniformBlock> uniformBlocks = new ReferenceOpenHashSet<>();
     private boolean errored;
+    @Nullable
+    private byte[] dependencyHash;
     @CheckForNull
     protected S shader;
 
@@ -72,12 +82,36 @@ public abstract class ResettableManagedShaderBase<S extends AutoCloseable> imple
     protected void initialize(ResourceFactory resourceManager) throws IOException {
         this.release();
         MinecraftClient mc = MinecraftClient.getInstance();
-        this.shader = parseShader(resourceManager, mc, this.location);
+        ProgramBinaryCache.beginDeferredCompilation();
+        try {
+            this.shader = parseShader(resourceManager, mc, this.location);
+        } finally {
+            ProgramBinaryCache.endDeferredCompilation();
+        }
         this.setup(mc.getWindow().getFramebufferWidth(), mc.getWindow().getFramebufferHeight());
     }
 
     protected abstract S parseShader(ResourceFactory resourceFactory, MinecraftClient mc, Identifier location) throws IOException;
 
+    /**
+     * Reads every resource this shader depends on ahead of its initialization.
+     *
+     * <p>This method is called off the render thread, and must not touch any OpenGL or shader state.
+     */
+    protected abstract void preloadResources(PreloadedShaderResources.Dependencies dependencies);
+
+    /**
+     * @return the hash of the resources this shader was last initialized from during a reload, or {@code null} if unknown
+     */
+    @Nullable
+    byte[] getDependencyHash() {
+        return this.dependencyHash;
+    }
+
+    void setDependencyHash(@Nullable byte[] dependencyHash) {
+        this.dependencyHash = dependencyHash;
+    }
+
     public void release() {
         if (this.isInitialized()) {
             try {
@@ -88,7 +122,13 @@ public abstract class ResettableManagedShaderBase<S extends AutoCloseable> imple
                 throw new RuntimeException("Failed to release shader " + this.location, e);
             }
         }
+        for (ManagedUniformBase uniform : this.getManagedUniforms()) {
+            // the released programs freed their uniforms, deferred values must not get written to them
+            uniform.clearTargets();
+        }
+        this.uniformBlocks.clear();
         this.errored = false;
+        this.dependencyHash = null;
     }
 
     protected Collection<ManagedUniformBase> getManagedUniforms() {
@@ -97,6 +137,37 @@ public abstract class ResettableManagedShaderBase<S extends AutoCloseable> imple
 
     protected abstract boolean setupUniform(ManagedUniformBase uniform, S shader);
 
+    /**
+     * Binds every known uniform block to the programs of the given shader that declare them
+     */
+    protected void setupUniformBlocks(S shader) {
+        for (ManagedUniformBlock block : ReloadableShaderEffectManager.INSTANCE.getUniformBlocks()) {
+            this.setupUniformBlock(block, shader);
+        }
+    }
+
+    private void setupUniformBlock(ManagedUniformBlock block, S shader) {
+        if (setupUniform(block, shader)) {
+            this.uniformBlocks.add(block);
+        }
+    }
+
+    boolean usesUniformBlock(ManagedUniformBlock block) {
+        return this.uniformBlocks.contains(block);
+    }
+
+    void setupUniformBlocks() {
+        if (this.shader != null) {
+            setupUniformBlocks(this.shader);
+        }
+    }
+
+    void setupUniformBlock(ManagedUniformBlock block) {
+        if (this.shader != null) {
+            this.setupUniformBlock(block, this.shader);
+        }
+    }
+
     public boolean isInitialized() {
         return this.shader != null;
     }
@@ -115,6 +186,7 @@ public abstract class ResettableManagedShaderBase<S extends AutoCloseable> imple
             return existing;
         }
         U ret = factory.apply(uniformName);
+        this.onUniformCreated(ret);
         if (this.shader != null) {
             boolean found = setupUniform(ret, shader);
             if (!found) {
@@ -126,54 +198,97 @@ public abstract class ResettableManagedShaderBase<S extends AutoCloseable> imple
         return ret;
     }
 
+    /**
+     * Called when a uniform gets created through {@link #manageUniform(Map, Function, String, String)}, before its targets are looked up
+     */
+    protected void onUniformCreated(ManagedUniformBase uniform) {
+        // NO-OP
+    }
+
+    protected ManagedUniform createUniform(String name, int count) {
+        return new ManagedUniform(name, count);
+    }
+
+    /**
+     * Gets the uniform targeting every program of this shader, creating it on first lookup
+     */
+    protected ManagedUniform findUniform(String uniformName, int count) {
+        return manageUniform(this.managedUniforms, name -> this.createUniform(name, count), uniformName, "uniform");
+    }
+
     @Override
     public Uniform1i findUniform1i(String uniformName) {
-        return manageUniform(this.managedUniforms, name -> new ManagedUniform(name, 1), uniformName, "uniform");
+        return this.findUniform(uniformName, 1);
     }
 
     @Override
     public Uniform2i findUniform2i(String uniformName) {
-        return manageUniform(this.managedUniforms, name -> new ManagedUniform(name, 2), uniformName, "uniform");
+        return this.findUniform(uniformName, 2);
     }
 
     @Override
     public Uniform3i findUniform3i(String uniformName) {
-        return manageUniform(this.managedUniforms, name -> new ManagedUniform(name, 3), uniformName, "uniform");
+        return this.findUniform(uniformName, 3);
     }
 
     @Override
     public Uniform4i findUniform4i(String uniformName) {
-        return manageUniform(this.managedUniforms, name -> new ManagedUniform(name, 4), uniformName, "uniform");
+        return this.findUniform(uniformName, 4);
     }
 
     @Override
     public Uniform1f findUniform1f(String uniformName) {
-        return manageUniform(this.managedUniforms, name -> new ManagedUniform(name, 1), uniformName, "uniform");
+        return this.findUniform(uniformName, 1);
     }
 
     @Override
     public Uniform2f findUniform2f(String uniformName) {
-        return manageUniform(this.managedUniforms, name -> new ManagedUniform(name, 2), uniformName, "uniform");
+        return this.findUniform(uniformName, 2);
     }
 
     @Override
     public Uniform3f findUniform3f(String uniformName) {
-        return manageUniform(this.managedUniforms, name -> new ManagedUniform(name, 3), uniformName, "uniform");
+        return this.findUniform(uniformName, 3);
     }
 
     @Override
     public Uniform4f findUniform4f(String uniformName) {
-        return manageUniform(this.managedUniforms, name -> new ManagedUniform(name, 4), uniformName, "uniform");
+        return this.findUniform(uniformName, 4);
     }
 
     @Override
     public UniformMat4 findUniformMat4(String uniformName) {
-        return manageUniform(this.managedUniforms, name -> new ManagedUniform(name, 16), uniformName, "uniform");
+        return this.findUniform(uniformName, 16);
+    }
+
+    @Override
+    public UniformArray findUniformArray(String uniformName, UniformArray.ElementType elementType, int length) {
+        ManagedUniformArray ret = manageUniform(this.managedArrays, name -> new ManagedUniformArray(name, elementType, length), uniformName, "uniform array");
+        if (ret.getElementType() != elementType || ret.getLength() != length) {
+            throw new IllegalStateException("Uniform array " + uniformName + " was already found with " + ret.getLength() + " " + ret.getElementType() + " elements");
+        }
+        return ret;
+    }
+
+    @Override
+    public UniformBlock findUniformBlock(String blockName) {
+        ManagedUniformBlock ret = ReloadableShaderEffectManager.INSTANCE.getOrCreateUniformBlock(blockName);
+        if (this.shader != null && !setupUniform(ret, this.shader)) {
+            Satin.LOGGER.warn("No uniform block found with name {} in shader {}", blockName, this.location);
+        }
+        return ret;
     }
 
     @API(status = INTERNAL)
     public abstract void setup(int newWidth, int newHeight);
 
+    /**
+     * Called when the game's framebuffer gets resized, or when the world renderer gets reloaded
+     */
+    void resize(int newWidth, int newHeight) {
+        this.setup(newWidth, newHeight);
+    }
+
     @Override
     public String toString() {
         return "%s[%s]".formatted(this.getClass().getSimpleName(), this.location);
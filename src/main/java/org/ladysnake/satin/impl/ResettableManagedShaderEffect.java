@@ -18,33 +18,54 @@
 package org.ladysnake.satin.impl;
 
 import com.google.common.base.Preconditions;
-import com.mojang.blaze3d.systems.RenderSystem;
+import com.mojang.blaze3d.platform.GlStateManager;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.gl.Framebuffer;
+import net.minecraft.client.gl.GlUniform;
 import net.minecraft.client.gl.JsonEffectShaderProgram;
+import net.minecraft.client.gl.PostEffectPass;
 import net.minecraft.client.gl.PostEffectProcessor;
+import net.minecraft.client.gl.SimpleFramebuffer;
 import net.minecraft.client.texture.AbstractTexture;
 import net.minecraft.resource.ResourceFactory;
 import net.minecraft.util.Identifier;
 import org.apiguardian.api.API;
 import org.joml.Matrix4f;
 import org.ladysnake.satin.Satin;
+import org.ladysnake.satin.api.managed.EffectDegradation;
+import org.ladysnake.satin.api.managed.GpuTimings;
 import org.ladysnake.satin.api.managed.ManagedFramebuffer;
 import org.ladysnake.satin.api.managed.ManagedShaderEffect;
 import org.ladysnake.satin.api.managed.ShaderEffectManager;
 import org.ladysnake.satin.api.managed.uniform.SamplerUniformV2;
+import org.ladysnake.satin.api.managed.uniform.Uniform1f;
+import org.ladysnake.satin.api.managed.uniform.Uniform1i;
+import org.ladysnake.satin.api.managed.uniform.Uniform2f;
+import org.ladysnake.satin.api.managed.uniform.Uniform2i;
+import org.ladysnake.satin.api.managed.uniform.Uniform3f;
+import org.ladysnake.satin.api.managed.uniform.Uniform3i;
+import org.ladysnake.satin.api.managed.uniform.Uniform4f;
+import org.ladysnake.satin.api.managed.uniform.Uniform4i;
+import org.ladysnake.satin.api.managed.uniform.UniformMat4;
 import org.ladysnake.satin.api.util.ShaderPrograms;
 import org.ladysnake.satin.mixin.client.AccessiblePassesShaderEffect;
+import org.ladysnake.satin.mixin.client.gl.PostEffectPassAccessor;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL30;
 
 import javax.annotation.Nullable;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
 import java.util.function.Consumer;
 
 import static org.apiguardian.api.API.Status.INTERNAL;
-import static org.lwjgl.opengl.GL11.GL_ONE_MINUS_SRC_ALPHA;
-import static org.lwjgl.opengl.GL11.GL_SRC_ALPHA;
 
 /**
  * A {@link ManagedShaderEffect} that can be {@link #setup} several times in its lifetime,
@@ -55,11 +76,62 @@ import static org.lwjgl.opengl.GL11.GL_SRC_ALPHA;
  * @since 1.0.0
  */
 public final class ResettableManagedShaderEffect extends ResettableManagedShaderBase<PostEffectProcessor> implements ManagedShaderEffect {
+    private static final float RENDER_SCALE_STEP = 0.125f;
+    /**Number of frames to wait between two dynamic render scale changes*/
+    private static final int RENDER_SCALE_COOLDOWN = 30;
 
     /**Callback to run once each time the shader effect is initialized*/
     private final Consumer<ManagedShaderEffect> initCallback;
     private final Map<String, FramebufferWrapper> managedTargets;
     private final Map<String, ManagedSamplerUniformV2> managedSamplers = new HashMap<>();
+    private final Int2ObjectMap<Map<String, ManagedUniform>> passUniforms = new Int2ObjectOpenHashMap<>();
+    private final DeferredUniformQueue deferredUniforms = new DeferredUniformQueue();
+    private boolean deferUniformUploads;
+    /**Framebuffer size to resize targets to before the next use, or -1 if targets are up to date*/
+    private int pendingWidth = -1;
+    private int pendingHeight = -1;
+    /**Size of the game's framebuffer when this effect was last set up*/
+    private int windowWidth;
+    private int windowHeight;
+    private float renderScale = 1f;
+    /**Lowest scale allowed by the dynamic render scale, or 0 if the scale is fixed*/
+    private float minRenderScale;
+    private float targetFrameTime;
+    private int lastRenderScaleChange;
+    @Nullable
+    private EffectGpuTimer gpuTimer;
+    private int priority;
+    private EffectDegradation degradation = EffectDegradation.NONE;
+    private boolean degraded;
+    private float estimatedCost;
+    /**Average GPU time measured while this effect was last rendered at full quality, or 0 if unknown*/
+    private float measuredCost;
+    private int lastRenderFrame = -1;
+    /**Copy of what this effect last wrote to the main framebuffer while rendering at half rate*/
+    @Nullable
+    private Framebuffer halfRateOutput;
+    private boolean halfRateOutputValid;
+    /**Whether this effect skips the current frame, and shows its last half rate output instead*/
+    private boolean repeatingOutput;
+    /**Index of the pass running each pass of the json definition, or {@code null} if no pass got fused*/
+    @Nullable
+    private int[] passMapping;
+    /**Whether an auxiliary target of this effect samples the main framebuffer's color*/
+    private boolean readsMainColor;
+    /**Whether raw uniform values got written through {@link #setupDynamicUniforms(int, Runnable)}, which rules out shared programs*/
+    private boolean usesDynamicUniforms;
+    /**Names of the targets that got fused away in the current initialization*/
+    private Set<String> fusedTargets = Set.of();
+    private boolean enabled = true;
+    @Nullable
+    private BooleanSupplier activePredicate;
+    /**Value of the active predicate at the start of the current frame*/
+    private boolean activeThisFrame = true;
+    @Nullable
+    private SkipCondition skipCondition;
+    /**Uniform checked by the skip condition, or {@code null} if there is nothing to check*/
+    @Nullable
+    private GlUniform skipConditionTarget;
 
     /**
      * Creates a new shader effect. <br>
@@ -90,18 +162,58 @@ public final class ResettableManagedShaderEffect extends ResettableManagedShader
 
     @Override
     protected PostEffectProcessor parseShader(ResourceFactory resourceFactory, MinecraftClient mc, Identifier location) throws IOException {
-        return new PostEffectProcessor(mc.getTextureManager(), mc.getResourceManager(), mc.getFramebuffer(), location);
+        ProgramPool.beginPooling(!this.usesDynamicUniforms);
+        try {
+            // targets used from code must stay around
+            PassFusion.Result fusion = PassFusion.fuse(resourceFactory, location, this.managedTargets.keySet());
+            this.passMapping = fusion == null ? null : fusion.passMapping();
+            this.fusedTargets = fusion == null ? Set.of() : fusion.fusedTargets();
+            ResourceFactory effectResources = fusion == null ? resourceFactory : fusion.resourceFactory();
+            this.skipCondition = SkipCondition.read(effectResources, location);
+            this.readsMainColor = ManagedEffectChain.readsMainColor(effectResources, location);
+            TargetPool.beginEffect(TargetPool.assignSlots(effectResources, location, this.managedTargets.keySet()));
+            return new PostEffectProcessor(mc.getTextureManager(), effectResources, mc.getFramebuffer(), location);
+        } finally {
+            TargetPool.endEffect();
+            ProgramPool.endPooling();
+        }
+    }
+
+    @Override
+    protected void preloadResources(PreloadedShaderResources.Dependencies dependencies) {
+        dependencies.preloadPostEffect(this.getLocation());
     }
 
     @Override
     public void setup(int windowWidth, int windowHeight) {
         Preconditions.checkNotNull(shader);
-        this.shader.setupDimensions(windowWidth, windowHeight);
+        this.pendingWidth = -1;
+        this.pendingHeight = -1;
+        this.windowWidth = windowWidth;
+        this.windowHeight = windowHeight;
+        float scale = this.getEffectiveRenderScale();
+        this.shader.setupDimensions(Math.max(1, Math.round(windowWidth * scale)), Math.max(1, Math.round(windowHeight * scale)));
+        if (scale != 1f) {
+            // vanilla projects every pass onto the main target, which is not the size of scaled outputs
+            for (PostEffectPass pass : ((AccessiblePassesShaderEffect) this.shader).getPasses()) {
+                pass.setProjectionMatrix(new Matrix4f().setOrtho(0f, pass.output.textureWidth, 0f, pass.output.textureHeight, 0.1f, 1000f));
+            }
+        }
 
         for (ManagedUniformBase uniform : this.getManagedUniforms()) {
             setupUniform(uniform, shader);
         }
 
+        this.setupUniformBlocks(this.shader);
+
+        this.skipConditionTarget = null;
+        if (this.skipCondition != null) {
+            this.skipConditionTarget = this.skipCondition.findTarget(((AccessiblePassesShaderEffect) this.shader).getPasses());
+            if (this.skipConditionTarget == null) {
+                Satin.LOGGER.warn("No uniform found with name {} for {} in shader {}", this.skipCondition.uniform(), SkipCondition.SKIP_IF_KEY, this.getLocation());
+            }
+        }
+
         for (FramebufferWrapper buf : this.managedTargets.values()) {
             buf.findTarget(this.shader);
         }
@@ -109,33 +221,471 @@ public final class ResettableManagedShaderEffect extends ResettableManagedShader
         this.initCallback.accept(this);
     }
 
+    /**
+     * Defers the resizing of this effect's targets until it actually gets used,
+     * so that consecutive resolution changes only reallocate them once
+     */
+    @Override
+    void resize(int newWidth, int newHeight) {
+        this.pendingWidth = newWidth;
+        this.pendingHeight = newHeight;
+    }
+
+    /**
+     * Resizes this effect's targets if the game's framebuffer got resized since they were last set up
+     */
+    void applyPendingResize() {
+        if (this.pendingWidth >= 0 && this.shader != null) {
+            this.setup(this.pendingWidth, this.pendingHeight);
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public void render(float tickDelta) {
-        PostEffectProcessor sg = this.getShaderEffect();
+        PostEffectProcessor sg = this.prepareRender();
         if (sg != null) {
-            RenderSystem.disableBlend();
-            RenderSystem.disableDepthTest();
-            RenderSystem.resetTextureMatrix();
-            sg.render(tickDelta);
-            MinecraftClient.getInstance().getFramebuffer().beginWrite(true);
-            RenderSystem.disableBlend();
-            RenderSystem.blendFunc(GL_SRC_ALPHA, GL_ONE_MINUS_SRC_ALPHA); // restore blending
-            RenderSystem.enableDepthTest();
+            beginRender();
+            Framebuffer halfRateOutput = this.getHalfRateOutput();
+            if (halfRateOutput == null) {
+                this.renderPasses(sg, tickDelta, null, null);
+            } else if (this.renderHalfRate(sg, tickDelta, null, halfRateOutput)) {
+                blit(halfRateOutput, MinecraftClient.getInstance().getFramebuffer());
+            }
+            endRender();
+        } else if (this.repeatingOutput) {
+            assert this.halfRateOutput != null;
+            blit(this.halfRateOutput, MinecraftClient.getInstance().getFramebuffer());
+            endRender();
+        }
+    }
+
+    /**
+     * Decides whether this effect renders in the current frame, and gets it ready to
+     *
+     * @return the effect to render, or {@code null} if it should be skipped this time
+     */
+    @Nullable
+    PostEffectProcessor prepareRender() {
+        this.repeatingOutput = false;
+        if (!this.enabled || !this.activeThisFrame) {
+            return null;
+        }
+        this.initializeIfNeeded();
+        // the skip condition must see the latest uniform values
+        this.deferredUniforms.flush();
+        if (this.skipConditionTarget != null && this.skipCondition.test(this.skipConditionTarget)) {
+            // skipped before any resize or framebuffer binding
+            return null;
+        }
+        this.lastRenderFrame = RenderStats.frameIndex;
+        if (this.degraded && (this.degradation == EffectDegradation.SKIP || this.degradation == EffectDegradation.HALF_RATE && (RenderStats.frameIndex & 1) != 0)) {
+            // showing nothing at all on skipped frames would make the effect flicker
+            this.repeatingOutput = this.halfRateOutputValid && this.isHalfRate();
+            return null;
+        }
+        this.updateDynamicRenderScale();
+        return this.getShaderEffect();
+    }
+
+    private boolean isHalfRate() {
+        return this.degraded && this.degradation == EffectDegradation.HALF_RATE;
+    }
+
+    /**
+     * Gets the framebuffer in which this effect writes instead of the main framebuffer while rendering at half rate
+     *
+     * @return the half rate output, or {@code null} if this effect renders at full rate
+     */
+    @Nullable
+    Framebuffer getHalfRateOutput() {
+        if (!this.isHalfRate()) {
+            return null;
+        }
+        Framebuffer main = MinecraftClient.getInstance().getFramebuffer();
+        if (this.halfRateOutput == null) {
+            this.halfRateOutput = new SimpleFramebuffer(main.textureWidth, main.textureHeight, false, MinecraftClient.IS_SYSTEM_MAC);
+            this.halfRateOutput.setClearColor(0.0F, 0.0F, 0.0F, 0.0F);
+        } else if (this.halfRateOutput.textureWidth != main.textureWidth || this.halfRateOutput.textureHeight != main.textureHeight) {
+            this.halfRateOutput.resize(main.textureWidth, main.textureHeight, MinecraftClient.IS_SYSTEM_MAC);
+            this.halfRateOutputValid = false;
+        }
+        return this.halfRateOutput;
+    }
+
+    /**
+     * @return {@code true} if this effect samples the main framebuffer's color outside of its passes' inputs
+     */
+    boolean readsMainColor() {
+        return this.readsMainColor;
+    }
+
+    /**
+     * Gets the output to show again when this effect skips the current frame
+     *
+     * @return the last half rate output, or {@code null} if this effect does not skip the current frame for that reason
+     */
+    @Nullable
+    Framebuffer getRepeatedOutput() {
+        return this.repeatingOutput ? this.halfRateOutput : null;
+    }
+
+    /**
+     * Renders this effect's passes, writing to its half rate output instead of the main framebuffer
+     *
+     * @return {@code true} if the half rate output got written to
+     */
+    boolean renderHalfRate(PostEffectProcessor sg, float tickDelta, @Nullable Framebuffer source, Framebuffer halfRateOutput) {
+        this.halfRateOutputValid = this.renderPasses(sg, tickDelta, source, halfRateOutput);
+        return this.halfRateOutputValid;
+    }
+
+    private void releaseHalfRateOutput() {
+        if (this.halfRateOutput != null) {
+            this.halfRateOutput.delete();
+            this.halfRateOutput = null;
+        }
+        this.halfRateOutputValid = false;
+    }
+
+    /**
+     * Copies the color of a framebuffer into another, leaving no framebuffer bound
+     */
+    static void blit(Framebuffer source, Framebuffer destination) {
+        GlStateManager._glBindFramebuffer(GL30.GL_READ_FRAMEBUFFER, source.fbo);
+        GlStateManager._glBindFramebuffer(GL30.GL_DRAW_FRAMEBUFFER, destination.fbo);
+        GlStateManager._glBlitFrameBuffer(
+                0, 0, source.textureWidth, source.textureHeight,
+                0, 0, destination.textureWidth, destination.textureHeight,
+                GL11.GL_COLOR_BUFFER_BIT, GL11.GL_NEAREST
+        );
+        GlStateManager._glBindFramebuffer(GL30.GL_FRAMEBUFFER, 0);
+        // read and draw framebuffers
+        RenderStats.framebufferBinds += 2;
+    }
+
+    /**
+     * Sets up the graphic state shared by every managed effect render
+     *
+     * @see RenderStateTracker#beginPostProcessing()
+     */
+    static void beginRender() {
+        RenderStateTracker.beginPostProcessing();
+        ReloadableShaderEffectManager.INSTANCE.flushUniformBlocks();
+    }
+
+    /**
+     * Binds the main framebuffer again, and restores the graphic state changed by {@link #beginRender()},
+     * possibly once the next effects are done rendering
+     *
+     * @see RenderStateTracker#endPostProcessing()
+     */
+    static void endRender() {
+        RenderStateTracker.endPostProcessing();
+    }
+
+    /**
+     * Runs every pass of this effect, optionally redirecting its uses of the main framebuffer.
+     *
+     * <p>When redirected, passes read {@code source} instead of the main framebuffer until one of them
+     * writes to {@code destination}, after which they read {@code destination}.
+     *
+     * @param source      the framebuffer to read instead of the main framebuffer, or {@code null} to read the main framebuffer
+     * @param destination the framebuffer to write instead of the main framebuffer, or {@code null} to write the main framebuffer
+     * @return {@code true} if any pass wrote to the main framebuffer or its replacement
+     */
+    boolean renderPasses(PostEffectProcessor sg, float tickDelta, @Nullable Framebuffer source, @Nullable Framebuffer destination) {
+        List<PostEffectPass> passes = ((AccessiblePassesShaderEffect) sg).getPasses();
+        Framebuffer main = MinecraftClient.getInstance().getFramebuffer();
+        boolean redirected = source != null || destination != null;
+        boolean written = false;
+        for (PostEffectPass pass : passes) {
+            if (redirected && pass.input == main) {
+                Framebuffer input = written ? destination : source;
+                ((PostEffectPassAccessor) pass).setInput(input == null ? main : input);
+            }
+            if (pass.output == main) {
+                if (redirected && destination != null) {
+                    ((PostEffectPassAccessor) pass).setOutput(destination);
+                }
+                written = true;
+            }
+        }
+
+        int passCount = passes.size();
+        EffectGpuTimer timer = this.getGpuTimer();
+        RenderStats.renderingManagedEffect = true;
+        try {
+            if (timer != null) {
+                timer.begin(passCount);
+                sg.render(tickDelta);
+                timer.end();
+            } else {
+                sg.render(tickDelta);
+            }
+        } finally {
+            RenderStats.renderingManagedEffect = false;
+            RenderStateTracker.onPassesRendered();
+            if (redirected) {
+                // chain buffers are never used by the json definition itself
+                for (PostEffectPass pass : passes) {
+                    if (pass.input == source || pass.input == destination) {
+                        ((PostEffectPassAccessor) pass).setInput(main);
+                    }
+                    if (pass.output == destination) {
+                        ((PostEffectPassAccessor) pass).setOutput(main);
+                    }
+                }
+            }
+        }
+        RenderStats.effectsRendered++;
+        RenderStats.passesExecuted += passCount;
+        return written;
+    }
+
+    @Nullable
+    private EffectGpuTimer getGpuTimer() {
+        if (this.gpuTimer == null && ReloadableShaderEffectManager.INSTANCE.isGpuTimingEnabled() && EffectGpuTimer.isSupported()) {
+            this.gpuTimer = new EffectGpuTimer();
+        }
+        return ReloadableShaderEffectManager.INSTANCE.isGpuTimingEnabled() ? this.gpuTimer : null;
+    }
+
+    GpuTimings getGpuTimings() {
+        return this.gpuTimer == null ? GpuTimings.EMPTY : this.gpuTimer.getEffectTimings();
+    }
+
+    List<GpuTimings> getPassGpuTimings() {
+        return this.gpuTimer == null ? List.of() : this.gpuTimer.getPassTimings();
+    }
+
+    @Override
+    public void release() {
+        super.release();
+        this.skipConditionTarget = null;
+        this.fusedTargets = Set.of();
+        this.releaseHalfRateOutput();
+        if (this.gpuTimer != null) {
+            this.gpuTimer.close();
+            this.gpuTimer = null;
+        }
+    }
+
+    @Override
+    public void setDeferredUniformUploads(boolean deferred) {
+        if (this.deferUniformUploads != deferred) {
+            this.deferUniformUploads = deferred;
+            this.updateDeferredQueue();
+        }
+    }
+
+    /**
+     * @return {@code true} if uniform values should only be written when this effect renders
+     */
+    private boolean shouldDeferUniforms() {
+        // disabled effects may not render for a long time
+        return this.deferUniformUploads || !this.enabled;
+    }
+
+    private void updateDeferredQueue() {
+        DeferredUniformQueue queue = this.shouldDeferUniforms() ? this.deferredUniforms : null;
+        for (ManagedUniformBase uniform : this.getManagedUniforms()) {
+            uniform.setDeferredQueue(queue);
+        }
+        this.deferredUniforms.flush();
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        if (this.enabled != enabled) {
+            this.enabled = enabled;
+            this.updateDeferredQueue();
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    @Override
+    public void setActivePredicate(@Nullable BooleanSupplier predicate) {
+        this.activePredicate = predicate;
+        this.evaluateActivePredicate();
+    }
+
+    /**
+     * Evaluates the active predicate for the frame about to be rendered
+     */
+    void evaluateActivePredicate() {
+        this.activeThisFrame = this.activePredicate == null || this.activePredicate.getAsBoolean();
+    }
+
+    @Override
+    public void setRenderScale(float scale) {
+        Preconditions.checkArgument(scale > 0f && scale <= 1f, "Render scale must be in ]0, 1], got %s", scale);
+        this.minRenderScale = 0f;
+        this.applyRenderScale(scale);
+    }
+
+    @Override
+    public void setDynamicRenderScale(float minScale, float targetFrameTime) {
+        Preconditions.checkArgument(minScale > 0f && minScale <= 1f, "Minimum render scale must be in ]0, 1], got %s", minScale);
+        Preconditions.checkArgument(targetFrameTime > 0f, "Target frame time must be positive, got %s", targetFrameTime);
+        this.minRenderScale = minScale;
+        this.targetFrameTime = targetFrameTime;
+        this.applyRenderScale(Math.max(minScale, this.renderScale));
+    }
+
+    @Override
+    public float getRenderScale() {
+        return this.renderScale;
+    }
+
+    private float getEffectiveRenderScale() {
+        return this.degraded && this.degradation == EffectDegradation.REDUCE_RESOLUTION ? this.renderScale * 0.5f : this.renderScale;
+    }
+
+    private void applyRenderScale(float scale) {
+        if (this.renderScale != scale) {
+            this.renderScale = scale;
+            if (this.isInitialized()) {
+                this.resize(this.windowWidth, this.windowHeight);
+            }
+        }
+    }
+
+    @Override
+    public void setPriority(int priority) {
+        this.priority = priority;
+    }
+
+    int getPriority() {
+        return this.priority;
+    }
+
+    @Override
+    public void setDegradation(EffectDegradation degradation) {
+        Preconditions.checkNotNull(degradation);
+        if (this.degradation != degradation) {
+            this.setDegraded(false);
+            this.degradation = degradation;
+        }
+    }
+
+    EffectDegradation getDegradation() {
+        return this.degradation;
+    }
+
+    @Override
+    public void setEstimatedCost(float milliseconds) {
+        Preconditions.checkArgument(milliseconds >= 0f, "Estimated cost must not be negative, got %s", milliseconds);
+        this.estimatedCost = milliseconds;
+    }
+
+    @Override
+    public boolean isDegraded() {
+        return this.degraded;
+    }
+
+    void setDegraded(boolean degraded) {
+        if (this.degraded != degraded) {
+            float previousScale = this.getEffectiveRenderScale();
+            this.degraded = degraded;
+            if (this.gpuTimer != null) {
+                // samples measured at another quality level would skew the cost of this one
+                this.gpuTimer.reset();
+            }
+            if (!this.isHalfRate()) {
+                this.releaseHalfRateOutput();
+            }
+            if (this.getEffectiveRenderScale() != previousScale && this.isInitialized()) {
+                this.resize(this.windowWidth, this.windowHeight);
+            }
+        }
+    }
+
+    /**
+     * @return the frame in which this effect was last asked to render, degraded or not
+     */
+    int getLastRenderFrame() {
+        return this.lastRenderFrame;
+    }
+
+    /**
+     * Gets the GPU time this effect takes when rendered at full quality.
+     *
+     * <p>Timings measured while degraded would underestimate that cost, so the last full quality measurement
+     * is kept around until the effect gets restored.
+     *
+     * @return the measured or estimated cost of this effect, in milliseconds
+     */
+    float getFullCost() {
+        if (!this.degraded) {
+            GpuTimings timings = this.getGpuTimings();
+            if (timings.sampleCount() > 0) {
+                this.measuredCost = (float) timings.average();
+            }
+        }
+        return this.measuredCost > 0f ? this.measuredCost : this.estimatedCost;
+    }
+
+    /**
+     * Steps the dynamic render scale towards the target frame time.
+     *
+     * <p>The scale moves by {@value #RENDER_SCALE_STEP} at a time, and stays put for a while after each change,
+     * so that targets do not get reallocated every frame.
+     */
+    private void updateDynamicRenderScale() {
+        if (this.minRenderScale <= 0f || RenderStats.frameIndex - this.lastRenderScaleChange < RENDER_SCALE_COOLDOWN) {
+            return;
+        }
+        float frameTime = RenderStats.smoothedFrameTime;
+        float scale = this.renderScale;
+        if (frameTime > this.targetFrameTime * 1.1f) {
+            scale = Math.max(this.minRenderScale, scale - RENDER_SCALE_STEP);
+        } else if (frameTime < this.targetFrameTime * 0.8f) {
+            scale = Math.min(1f, scale + RENDER_SCALE_STEP);
+        }
+        if (scale != this.renderScale) {
+            this.lastRenderScaleChange = RenderStats.frameIndex;
+            this.applyRenderScale(scale);
+        }
+    }
+
+    @Override
+    protected ManagedUniform createUniform(String name, int count) {
+        return this.createUniform(name, count, -1);
+    }
+
+    private ManagedUniform createUniform(String name, int count, int passIndex) {
+        return new ManagedUniform(name, count, passIndex);
+    }
+
+    @Override
+    protected void onUniformCreated(ManagedUniformBase uniform) {
+        if (this.shouldDeferUniforms()) {
+            uniform.setDeferredQueue(this.deferredUniforms);
         }
     }
 
     @Override
     public ManagedFramebuffer getTarget(String name) {
-        return this.managedTargets.computeIfAbsent(name, n -> {
-            FramebufferWrapper ret = new FramebufferWrapper(n);
-            if (this.shader != null) {
+        FramebufferWrapper ret = this.managedTargets.get(name);
+        if (ret == null) {
+            ret = new FramebufferWrapper(name, this::applyPendingResize);
+            this.managedTargets.put(name, ret);
+            if (this.fusedTargets.contains(name)) {
+                // the target only exists if it is kept out of fusion, which requires parsing the effect again
+                Satin.LOGGER.debug("[Satin] Reinitializing shader effect {} to keep fused target {}", this.getLocation(), name);
+                this.initializeOrLog(MinecraftClient.getInstance().getResourceManager());
+            } else if (this.shader != null) {
                 ret.findTarget(this.shader);
             }
-            return ret;
-        });
+        }
+        return ret;
     }
 
     /**
@@ -234,6 +784,61 @@ public final class ResettableManagedShaderEffect extends ResettableManagedShader
         this.findSampler(samplerName).set(textureName);
     }
 
+    @Override
+    public Uniform1i findUniform1i(String uniformName, int passIndex) {
+        return this.findPassUniform(uniformName, passIndex, 1);
+    }
+
+    @Override
+    public Uniform2i findUniform2i(String uniformName, int passIndex) {
+        return this.findPassUniform(uniformName, passIndex, 2);
+    }
+
+    @Override
+    public Uniform3i findUniform3i(String uniformName, int passIndex) {
+        return this.findPassUniform(uniformName, passIndex, 3);
+    }
+
+    @Override
+    public Uniform4i findUniform4i(String uniformName, int passIndex) {
+        return this.findPassUniform(uniformName, passIndex, 4);
+    }
+
+    @Override
+    public Uniform1f findUniform1f(String uniformName, int passIndex) {
+        return this.findPassUniform(uniformName, passIndex, 1);
+    }
+
+    @Override
+    public Uniform2f findUniform2f(String uniformName, int passIndex) {
+        return this.findPassUniform(uniformName, passIndex, 2);
+    }
+
+    @Override
+    public Uniform3f findUniform3f(String uniformName, int passIndex) {
+        return this.findPassUniform(uniformName, passIndex, 3);
+    }
+
+    @Override
+    public Uniform4f findUniform4f(String uniformName, int passIndex) {
+        return this.findPassUniform(uniformName, passIndex, 4);
+    }
+
+    @Override
+    public UniformMat4 findUniformMat4(String uniformName, int passIndex) {
+        return this.findPassUniform(uniformName, passIndex, 16);
+    }
+
+    private ManagedUniform findPassUniform(String uniformName, int passIndex, int count) {
+        Preconditions.checkArgument(passIndex >= -1, "Pass index must be -1 or a valid pass index, got %s", passIndex);
+        if (passIndex == -1) {
+            // same instance as the lookup without a pass index, so that both keep the same value
+            return this.findUniform(uniformName, count);
+        }
+        Map<String, ManagedUniform> uniforms = this.passUniforms.computeIfAbsent(passIndex, i -> new HashMap<>());
+        return manageUniform(uniforms, name -> this.createUniform(name, count, passIndex), uniformName, "uniform (pass " + passIndex + ")");
+    }
+
     @Override
     public SamplerUniformV2 findSampler(String samplerName) {
         return manageUniform(this.managedSamplers, ManagedSamplerUniformV2::new, samplerName, "sampler");
@@ -244,18 +849,49 @@ public final class ResettableManagedShaderEffect extends ResettableManagedShader
     }
 
     public void setupDynamicUniforms(int index, Runnable dynamicSetBlock) {
-        AccessiblePassesShaderEffect sg = (AccessiblePassesShaderEffect) this.getShaderEffect();
+        if (!this.usesDynamicUniforms) {
+            this.usesDynamicUniforms = true;
+            if (this.shader != null) {
+                // raw values would leak into every other user of a shared program, so get programs of our own
+                Satin.LOGGER.debug("[Satin] Reinitializing shader effect {} without shared programs", this.getLocation());
+                this.initializeOrLog(MinecraftClient.getInstance().getResourceManager());
+            }
+        }
+        PostEffectProcessor sg = this.getShaderEffect();
         if (sg != null) {
-            JsonEffectShaderProgram sm = sg.getPasses().get(index).getProgram();
+            JsonEffectShaderProgram sm = this.getDefinedPasses(sg).get(index).getProgram();
             ShaderPrograms.useShader(sm.getGlRef());
             dynamicSetBlock.run();
             ShaderPrograms.useShader(0);
+            // the block may have assigned sampler units
+            SamplerUnitCaches.invalidate();
         }
     }
 
     @Override
     protected boolean setupUniform(ManagedUniformBase uniform, PostEffectProcessor shader) {
-        return uniform.findUniformTargets(((AccessiblePassesShaderEffect) shader).getPasses());
+        List<PostEffectPass> passes = this.getDefinedPasses(shader);
+        if (uniform instanceof ManagedUniform managed && managed.getPassIndex() >= passes.size()) {
+            Satin.LOGGER.warn("Uniform {} targets pass {}, but shader effect {} only defines {} passes", uniform.getName(), managed.getPassIndex(), this.getLocation(), passes.size());
+        }
+        return uniform.findUniformTargets(passes);
+    }
+
+    /**
+     * Gets the pass running each pass of the json definition, so that pass indices stay meaningful after fusion.
+     *
+     * <p>Fused passes appear once for every pass they run.
+     */
+    private List<PostEffectPass> getDefinedPasses(PostEffectProcessor shader) {
+        List<PostEffectPass> passes = ((AccessiblePassesShaderEffect) shader).getPasses();
+        if (this.passMapping == null) {
+            return passes;
+        }
+        List<PostEffectPass> ret = new ArrayList<>(this.passMapping.length);
+        for (int pass : this.passMapping) {
+            ret.add(passes.get(pass));
+        }
+        return ret;
     }
 
     @Override
@@ -263,10 +899,15 @@ public final class ResettableManagedShaderEffect extends ResettableManagedShader
         Satin.LOGGER.error("Could not create screen shader {}", this.getLocation(), e);
     }
 
-    private @Nullable PostEffectProcessor getShaderOrLog() {
+    private void initializeIfNeeded() {
         if (!this.isInitialized() && !this.isErrored()) {
             this.initializeOrLog(MinecraftClient.getInstance().getResourceManager());
         }
+    }
+
+    private @Nullable PostEffectProcessor getShaderOrLog() {
+        this.initializeIfNeeded();
+        this.applyPendingResize();
         return this.shader;
     }
 }
\ No newline at end of file
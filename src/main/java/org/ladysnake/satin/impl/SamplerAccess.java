@@ -17,6 +17,9 @@
  */
 package org.ladysnake.satin.impl;
 
+import org.ladysnake.satin.api.managed.uniform.SamplerSettings;
+
+import javax.annotation.Nullable;
 import java.util.List;
 
 public interface SamplerAccess {
@@ -24,4 +27,22 @@ public interface SamplerAccess {
     boolean satin$hasSampler(String name);
     List<String> satin$getSamplerNames();
     List<Integer> satin$getSamplerShaderLocs();
+
+    /**
+     * Marks this program as owned by a managed shader, which opts it into Satin's sampler binding shortcuts
+     */
+    void satin$markManaged();
+
+    /**
+     * Records the texture unit last assigned to a sampler location of this program,
+     * so that the program does not assign it again when it gets bound
+     */
+    void satin$cacheSamplerUnit(int location, int unit);
+
+    /**
+     * Sets the sampler object settings used by a sampler of this program whenever the program gets bound
+     *
+     * @param settings the settings to use, or {@code null} to restore the ones from the program's definition
+     */
+    void satin$setSamplerSettings(String name, @Nullable SamplerSettings settings);
 }
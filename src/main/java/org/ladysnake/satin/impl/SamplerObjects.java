@@ -0,0 +1,163 @@
+/*
+ * Satin
+ * Copyright (C) 2019-2024 Ladysnake
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; If not, see <https://www.gnu.org/licenses>.
+ */
+package org.ladysnake.satin.impl;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonSyntaxException;
+import com.mojang.blaze3d.systems.RenderSystem;
+import net.minecraft.util.JsonHelper;
+import org.ladysnake.satin.Satin;
+import org.ladysnake.satin.api.managed.uniform.SamplerSettings;
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL12;
+import org.lwjgl.opengl.GL13;
+import org.lwjgl.opengl.GL14;
+import org.lwjgl.opengl.GL30;
+import org.lwjgl.opengl.GL33;
+
+import javax.annotation.Nullable;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A registry of OpenGL sampler objects, shared by every program using the same {@link SamplerSettings}.
+ */
+public final class SamplerObjects {
+    private static final Map<SamplerSettings, Integer> SAMPLERS = new HashMap<>();
+    /**0 if not checked yet, 1 if supported, -1 if not*/
+    private static int supported;
+
+    private SamplerObjects() { }
+
+    public static boolean isSupported() {
+        if (supported == 0) {
+            RenderSystem.assertOnRenderThread();
+            supported = GL.getCapabilities().glGenSamplers != 0L ? 1 : -1;
+            if (supported < 0) {
+                Satin.LOGGER.warn("[Satin] Sampler objects are not supported by the current driver, sampler settings will be ignored");
+            }
+        }
+        return supported > 0;
+    }
+
+    /**
+     * Binds the sampler object matching the given settings to a texture unit
+     *
+     * @param unit     the index of the texture unit, starting at 0
+     * @param settings the settings with which to sample the texture bound to the unit
+     * @return {@code true} if a sampler object got bound
+     */
+    public static boolean bind(int unit, SamplerSettings settings) {
+        if (!isSupported()) {
+            return false;
+        }
+        GL33.glBindSampler(unit, SAMPLERS.computeIfAbsent(settings, SamplerObjects::create));
+        return true;
+    }
+
+    /**
+     * Unbinds sampler objects from several texture units, letting textures use their own parameters again
+     *
+     * @param unitMask a bitmask of the units from which to unbind sampler objects
+     */
+    public static void unbind(int unitMask) {
+        while (unitMask != 0) {
+            GL33.glBindSampler(Integer.numberOfTrailingZeros(unitMask), 0);
+            unitMask &= unitMask - 1;
+        }
+    }
+
+    private static int create(SamplerSettings settings) {
+        int sampler = GL33.glGenSamplers();
+        GL33.glSamplerParameteri(sampler, GL11.GL_TEXTURE_MIN_FILTER, settings.minFilter());
+        GL33.glSamplerParameteri(sampler, GL11.GL_TEXTURE_MAG_FILTER, settings.magFilter());
+        GL33.glSamplerParameteri(sampler, GL11.GL_TEXTURE_WRAP_S, settings.wrap());
+        GL33.glSamplerParameteri(sampler, GL11.GL_TEXTURE_WRAP_T, settings.wrap());
+        GL33.glSamplerParameteri(sampler, GL12.GL_TEXTURE_WRAP_R, settings.wrap());
+        if (settings.compareFunc() != GL11.GL_NONE) {
+            GL33.glSamplerParameteri(sampler, GL14.GL_TEXTURE_COMPARE_MODE, GL30.GL_COMPARE_REF_TO_TEXTURE);
+            GL33.glSamplerParameteri(sampler, GL14.GL_TEXTURE_COMPARE_FUNC, settings.compareFunc());
+        } else {
+            GL33.glSamplerParameteri(sampler, GL14.GL_TEXTURE_COMPARE_MODE, GL11.GL_NONE);
+        }
+        return sampler;
+    }
+
+    /**
+     * Reads the {@code satin:} sampler settings from a sampler's JSON definition
+     *
+     * @return the sampler settings, or {@code null} if the definition does not specify any
+     * @throws JsonSyntaxException if a setting has an invalid value
+     */
+    @Nullable
+    public static SamplerSettings parse(JsonObject sampler) {
+        String filter = JsonHelper.getString(sampler, "satin:filter", null);
+        String minFilter = JsonHelper.getString(sampler, "satin:min_filter", filter);
+        String magFilter = JsonHelper.getString(sampler, "satin:mag_filter", filter);
+        String wrap = JsonHelper.getString(sampler, "satin:wrap", null);
+        String compare = JsonHelper.getString(sampler, "satin:compare", null);
+        if (minFilter == null && magFilter == null && wrap == null && compare == null) {
+            return null;
+        }
+        return new SamplerSettings(
+                minFilter == null ? GL11.GL_LINEAR : parseFilter(minFilter),
+                magFilter == null ? GL11.GL_LINEAR : parseFilter(magFilter),
+                wrap == null ? GL12.GL_CLAMP_TO_EDGE : parseWrap(wrap),
+                compare == null ? GL11.GL_NONE : parseCompareFunc(compare)
+        );
+    }
+
+    private static int parseFilter(String filter) {
+        return switch (filter.toLowerCase(Locale.ROOT)) {
+            case "linear" -> GL11.GL_LINEAR;
+            case "nearest" -> GL11.GL_NEAREST;
+            case "linear_mipmap_linear" -> GL11.GL_LINEAR_MIPMAP_LINEAR;
+            case "linear_mipmap_nearest" -> GL11.GL_LINEAR_MIPMAP_NEAREST;
+            case "nearest_mipmap_linear" -> GL11.GL_NEAREST_MIPMAP_LINEAR;
+            case "nearest_mipmap_nearest" -> GL11.GL_NEAREST_MIPMAP_NEAREST;
+            default -> throw new JsonSyntaxException("Unknown sampler filter " + filter);
+        };
+    }
+
+    private static int parseWrap(String wrap) {
+        return switch (wrap.toLowerCase(Locale.ROOT)) {
+            case "clamp", "clamp_to_edge" -> GL12.GL_CLAMP_TO_EDGE;
+            case "clamp_to_border" -> GL13.GL_CLAMP_TO_BORDER;
+            case "repeat" -> GL11.GL_REPEAT;
+            case "mirrored_repeat" -> GL14.GL_MIRRORED_REPEAT;
+            default -> throw new JsonSyntaxException("Unknown sampler wrap mode " + wrap);
+        };
+    }
+
+    private static int parseCompareFunc(String func) {
+        return switch (func.toLowerCase(Locale.ROOT)) {
+            case "none" -> GL11.GL_NONE;
+            case "never" -> GL11.GL_NEVER;
+            case "less" -> GL11.GL_LESS;
+            case "equal" -> GL11.GL_EQUAL;
+            case "lequal" -> GL11.GL_LEQUAL;
+            case "greater" -> GL11.GL_GREATER;
+            case "notequal" -> GL11.GL_NOTEQUAL;
+            case "gequal" -> GL11.GL_GEQUAL;
+            case "always" -> GL11.GL_ALWAYS;
+            default -> throw new JsonSyntaxException("Unknown sampler compare function " + func);
+        };
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Satin
+ * Copyright (C) 2019-2024 Ladysnake
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; If not, see <https://www.gnu.org/licenses>.
+ */
+package org.ladysnake.satin.impl;
+
+import org.apiguardian.api.API;
+
+import static org.apiguardian.api.API.Status.INTERNAL;
+
+/**
+ * Keeps the sampler unit caches of shader programs honest.
+ *
+ * <p>Programs remember which texture unit each of their sampler uniforms was last assigned, to skip redundant assignments
+ * when they get bound. Raw {@code glUniform1i} calls made outside of that path may reassign units behind their back,
+ * so each such call bumps a generation counter. Programs seeing a new generation assign every cached unit again.
+ */
+@API(status = INTERNAL)
+public final class SamplerUnitCaches {
+    private static int generation;
+
+    private SamplerUnitCaches() { }
+
+    /**
+     * Called after integer uniforms may have been written without going through a program's sampler unit cache
+     */
+    public static void invalidate() {
+        generation++;
+    }
+
+    public static int getGeneration() {
+        return generation;
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Satin
+ * Copyright (C) 2019-2024 Ladysnake
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; If not, see <https://www.gnu.org/licenses>.
+ */
+package org.ladysnake.satin.impl;
+
+import net.fabricmc.fabric.api.resource.SimpleResourceReloadListener;
+import net.minecraft.resource.ResourceManager;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.profiler.Profiler;
+import org.ladysnake.satin.Satin;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Reloads managed shaders along with client resources.
+ *
+ * <p>The preparation phase reads every resource used by managed shaders in parallel, on the reload executor.
+ * The application phase then only has to create OpenGL objects on the render thread.
+ */
+public final class ShaderReloadListener implements SimpleResourceReloadListener<PreloadedShaderResources> {
+    public static final Identifier ID = Identifier.of(Satin.MOD_ID, "shaders");
+
+    @Override
+    public Identifier getFabricId() {
+        return ID;
+    }
+
+    @Override
+    public CompletableFuture<PreloadedShaderResources> load(ResourceManager manager, Profiler profiler, Executor executor) {
+        // snapshot on the calling thread, managed shaders are only ever modified on the render thread
+        List<ResettableManagedShaderBase<?>> shaders = ReloadableShaderEffectManager.INSTANCE.getManagedShaders();
+        PreloadedShaderResources resources = new PreloadedShaderResources(manager);
+        CompletableFuture<?>[] tasks = new CompletableFuture<?>[shaders.size()];
+        for (int i = 0; i < tasks.length; i++) {
+            ResettableManagedShaderBase<?> shader = shaders.get(i);
+            tasks[i] = CompletableFuture.runAsync(() -> {
+                try {
+                    resources.preload(shader);
+                } catch (RuntimeException e) {
+                    // the shader will fail to load again on the render thread, with a proper error message
+                    Satin.LOGGER.debug("Failed to preload resources for {}", shader, e);
+                }
+            }, executor);
+        }
+        return CompletableFuture.allOf(tasks).thenApply(v -> resources);
+    }
+
+    @Override
+    public CompletableFuture<Void> apply(PreloadedShaderResources data, ResourceManager manager, Profiler profiler, Executor executor) {
+        return CompletableFuture.runAsync(() -> ReloadableShaderEffectManager.INSTANCE.reload(data, manager), executor);
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Satin
+ * Copyright (C) 2019-2024 Ladysnake
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; If not, see <https://www.gnu.org/licenses>.
+ */
+package org.ladysnake.satin.impl;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import net.minecraft.client.gl.GlUniform;
+import net.minecraft.client.gl.PostEffectPass;
+import net.minecraft.resource.ResourceFactory;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.JsonHelper;
+import org.ladysnake.satin.Satin;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.List;
+
+/**
+ * A condition on the value of a uniform under which a post effect has no visible result, declared in its json definition
+ *
+ * @param uniform the name of the uniform to check
+ * @param value   the value of the uniform's first component for which the effect gets skipped
+ */
+record SkipCondition(String uniform, float value) {
+    static final String SKIP_IF_KEY = "satin:skip_if";
+
+    /**
+     * Reads the skip condition of a post effect
+     *
+     * @return the effect's skip condition, or {@code null} if it does not declare any
+     */
+    @Nullable
+    static SkipCondition read(ResourceFactory resourceFactory, Identifier location) {
+        try (Reader reader = resourceFactory.openAsReader(location)) {
+            JsonObject condition = JsonHelper.getObject(JsonHelper.deserialize(reader), SKIP_IF_KEY, null);
+            return condition == null ? null : new SkipCondition(JsonHelper.getString(condition, "uniform"), JsonHelper.getFloat(condition, "equals"));
+        } catch (JsonParseException e) {
+            Satin.LOGGER.warn("Invalid {} in post effect {}", SKIP_IF_KEY, location, e);
+            return null;
+        } catch (IOException e) {
+            // reported when the post effect actually gets parsed
+            return null;
+        }
+    }
+
+    /**
+     * @return the first uniform checked by this condition in the given passes, or {@code null} if none declares it
+     */
+    @Nullable
+    GlUniform findTarget(List<PostEffectPass> passes) {
+        for (PostEffectPass pass : passes) {
+            GlUniform uniform = pass.getProgram().getUniformByName(this.uniform);
+            if (uniform != null) {
+                return uniform;
+            }
+        }
+        return null;
+    }
+
+    boolean test(GlUniform target) {
+        if (target.getDataType() <= GlUniform.INT4) {
+            return target.getIntData().get(0) == this.value;
+        }
+        return target.getFloatData().get(0) == this.value;
+    }
+}
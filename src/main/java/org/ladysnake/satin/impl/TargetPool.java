@@ -0,0 +1,217 @@
+/*
+ * Satin
+ * Copyright (C) 2019-2024 Ladysnake
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; If not, see <https://www.gnu.org/licenses>.
+ */
+package org.ladysnake.satin.impl;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import net.minecraft.client.gl.Framebuffer;
+import net.minecraft.client.gl.SimpleFramebuffer;
+import net.minecraft.resource.ResourceFactory;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.JsonHelper;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A pool of render targets shared by the transient targets of every managed shader effect.
+ *
+ * <p>A target is transient when every render of its effect writes it before reading it,
+ * meaning its content never outlives a single render. As effects never render at the same time,
+ * transient targets of different effects can use the same textures, and transient targets of a single effect
+ * can too as long as their lifetimes within the pass list do not overlap.
+ *
+ * <p>Targets used from code through {@link ResettableManagedShaderEffect#getTarget(String)} always get dedicated textures.
+ * Effects can opt out of pooling entirely by setting {@value #POOL_TARGETS_KEY} to {@code false} in their json definition.
+ *
+ * @see PooledFramebuffer
+ */
+public final class TargetPool {
+    static final String POOL_TARGETS_KEY = "satin:pool_targets";
+    private static final String MAIN_TARGET = "minecraft:main";
+    private static final Map<Key, Entry> entries = new HashMap<>();
+    @Nullable
+    private static Object2IntMap<String> pendingSlots;
+
+    private TargetPool() { }
+
+    /**
+     * Starts pooling the transient targets of the post effect being parsed. Calls must be balanced with {@link #endEffect()}.
+     *
+     * @param slots the pool slot of each transient target, as computed by {@link #assignSlots(ResourceFactory, Identifier, Set)}
+     */
+    static void beginEffect(Object2IntMap<String> slots) {
+        pendingSlots = slots;
+    }
+
+    static void endEffect() {
+        pendingSlots = null;
+    }
+
+    /**
+     * @return the pool slot assigned to a target of the post effect being parsed, or -1 if it gets dedicated textures
+     */
+    public static int getPendingSlot(String target) {
+        return pendingSlots == null ? -1 : pendingSlots.getInt(target);
+    }
+
+    static Framebuffer acquire(Key key, boolean getError) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            Framebuffer framebuffer = key.format() == null
+                    ? new SimpleFramebuffer(key.width(), key.height(), true, getError)
+                    : CustomFormatFramebuffers.create(key.width(), key.height(), true, getError, key.format());
+            entry = new Entry(framebuffer);
+            entries.put(key, entry);
+        }
+        entry.refCount++;
+        return entry.framebuffer;
+    }
+
+    static void release(Key key) {
+        Entry entry = entries.get(key);
+        if (entry != null && --entry.refCount <= 0) {
+            entries.remove(key);
+            entry.framebuffer.delete();
+        }
+    }
+
+    /**
+     * Finds the transient targets of a post effect, and assigns them pool slots.
+     *
+     * <p>Targets with the same format get the same slot if they are never used by the same pass range.
+     *
+     * @param resourceFactory the factory from which the post effect is loaded
+     * @param location        the full location of the post effect json file
+     * @param keptTargets     names of targets that must get dedicated textures
+     * @return the pool slot of each transient target, defaulting to -1
+     */
+    static Object2IntMap<String> assignSlots(ResourceFactory resourceFactory, Identifier location, Set<String> keptTargets) {
+        Object2IntMap<String> ret = new Object2IntOpenHashMap<>();
+        ret.defaultReturnValue(-1);
+        JsonObject effect;
+        try (Reader reader = resourceFactory.openAsReader(location)) {
+            effect = JsonHelper.deserialize(reader);
+        } catch (IOException | JsonParseException e) {
+            // reported when the post effect actually gets parsed
+            return ret;
+        }
+        if (!JsonHelper.getBoolean(effect, POOL_TARGETS_KEY, true)) {
+            return ret;
+        }
+
+        Map<String, String> formats = new LinkedHashMap<>();
+        for (JsonElement target : JsonHelper.getArray(effect, "targets", new JsonArray())) {
+            if (target.isJsonObject()) {
+                JsonObject object = target.getAsJsonObject();
+                formats.put(JsonHelper.getString(object, "name", ""), JsonHelper.getString(object, CustomFormatFramebuffers.FORMAT_KEY, ""));
+            } else {
+                formats.put(target.getAsString(), "");
+            }
+        }
+
+        // first and last pass using each target, if it gets written before being read
+        Map<String, int[]> lifetimes = new HashMap<>();
+        Set<String> persistent = new HashSet<>();
+        JsonArray passes = JsonHelper.getArray(effect, "passes", new JsonArray());
+        for (int i = 0; i < passes.size(); i++) {
+            if (!passes.get(i).isJsonObject()) {
+                return ret;
+            }
+            JsonObject pass = passes.get(i).getAsJsonObject();
+            List<String> reads = new ArrayList<>();
+            reads.add(JsonHelper.getString(pass, "intarget", ""));
+            for (JsonElement auxTarget : JsonHelper.getArray(pass, "auxtargets", new JsonArray())) {
+                if (auxTarget.isJsonObject()) {
+                    String id = JsonHelper.getString(auxTarget.getAsJsonObject(), "id", "");
+                    if (id.endsWith(":depth")) {
+                        // depth buffers are never written by passes, only by code
+                        persistent.add(id.substring(0, id.length() - ":depth".length()));
+                    } else {
+                        reads.add(id);
+                    }
+                }
+            }
+            for (String read : reads) {
+                int[] lifetime = lifetimes.get(read);
+                if (lifetime == null) {
+                    persistent.add(read);
+                } else {
+                    lifetime[1] = i;
+                }
+            }
+            int index = i;
+            lifetimes.computeIfAbsent(JsonHelper.getString(pass, "outtarget", ""), t -> new int[] {index, index})[1] = i;
+        }
+
+        List<String> transientTargets = new ArrayList<>();
+        for (String target : formats.keySet()) {
+            if (lifetimes.containsKey(target) && !persistent.contains(target) && !keptTargets.contains(target) && !target.equals(MAIN_TARGET)) {
+                transientTargets.add(target);
+            }
+        }
+        transientTargets.sort(Comparator.comparingInt(t -> lifetimes.get(t)[0]));
+        // last pass using each slot, per format
+        Map<String, IntList> slotEnds = new HashMap<>();
+        for (String target : transientTargets) {
+            int[] lifetime = lifetimes.get(target);
+            IntList ends = slotEnds.computeIfAbsent(formats.get(target), f -> new IntArrayList());
+            int slot = 0;
+            while (slot < ends.size() && ends.getInt(slot) >= lifetime[0]) {
+                slot++;
+            }
+            if (slot == ends.size()) {
+                ends.add(lifetime[1]);
+            } else {
+                ends.set(slot, lifetime[1]);
+            }
+            ret.put(target, slot);
+        }
+        return ret;
+    }
+
+    /**
+     * @param format the custom format of the target, or {@code null} for the default format
+     * @param slot   the slot of the target within its effect, so that targets used at the same time get different textures
+     */
+    record Key(int width, int height, @Nullable CustomFormatFramebuffers.TextureFormat format, int slot) { }
+
+    private static final class Entry {
+        private final Framebuffer framebuffer;
+        private int refCount;
+
+        private Entry(Framebuffer framebuffer) {
+            this.framebuffer = framebuffer;
+        }
+    }
+}
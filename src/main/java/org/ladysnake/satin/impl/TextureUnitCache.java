@@ -0,0 +1,77 @@
+/*
+ * Satin
+ * Copyright (C) 2019-2024 Ladysnake
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; If not, see <https://www.gnu.org/licenses>.
+ */
+package org.ladysnake.satin.impl;
+
+import org.apiguardian.api.API;
+import org.lwjgl.opengl.GL13;
+
+import java.util.Arrays;
+
+import static org.apiguardian.api.API.Status.INTERNAL;
+
+/**
+ * Mirrors the texture bound to each texture unit, as seen by {@link com.mojang.blaze3d.platform.GlStateManager}.
+ *
+ * <p>{@code GlStateManager} only skips binding a texture that is already bound on the active unit,
+ * and passes always switch the active unit before binding their samplers. Knowing what every unit holds
+ * lets managed post passes skip both calls when their sampler's texture is still bound from a previous pass.
+ * Like {@link RenderStats}, this class is only ever used from the render thread.
+ */
+@API(status = INTERNAL)
+public final class TextureUnitCache {
+    private static final int UNIT_COUNT = 32;
+    private static final int[] boundTextures = createBoundTextures();
+    private static int activeUnit;
+
+    private TextureUnitCache() { }
+
+    public static void onActiveTexture(int glUnit) {
+        activeUnit = glUnit - GL13.GL_TEXTURE0;
+    }
+
+    public static void onBindTexture(int texture) {
+        if (activeUnit >= 0 && activeUnit < UNIT_COUNT) {
+            boundTextures[activeUnit] = texture;
+        }
+    }
+
+    /**
+     * Forgets about a deleted texture, which name may get reused by another texture
+     */
+    public static void onDeleteTexture(int texture) {
+        for (int unit = 0; unit < UNIT_COUNT; unit++) {
+            if (boundTextures[unit] == texture) {
+                boundTextures[unit] = -1;
+            }
+        }
+    }
+
+    /**
+     * @param unit the index of the texture unit, starting at 0
+     * @return {@code true} if the given texture is known to be bound to the given unit
+     */
+    public static boolean isBound(int unit, int texture) {
+        return unit >= 0 && unit < UNIT_COUNT && boundTextures[unit] == texture;
+    }
+
+    private static int[] createBoundTextures() {
+        int[] ret = new int[UNIT_COUNT];
+        Arrays.fill(ret, -1);
+        return ret;
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Satin
+ * Copyright (C) 2019-2024 Ladysnake
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; If not, see <https://www.gnu.org/licenses>.
+ */
+package org.ladysnake.satin.impl;
+
+import org.joml.Matrix4f;
+import org.joml.Vector2f;
+import org.joml.Vector3f;
+import org.joml.Vector4f;
+import org.ladysnake.satin.api.managed.uniform.UniformFinder;
+import org.ladysnake.satin.api.managed.uniform.UniformName;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generates implementations of uniform binder interfaces, as hidden classes holding one {@link ManagedUniform} field per setter.
+ *
+ * <p>Binders do not need to be rebound after a reload, as {@link ManagedUniform}s
+ * find their new targets whenever their shader gets {@link ResettableManagedShaderBase#setup(int, int) setup}.
+ *
+ * @see org.ladysnake.satin.api.managed.ShaderEffectManager#createUniformBinder(UniformFinder, Class)
+ */
+final class UniformBinderFactory {
+    private static final String BINDER_NAME = "org/ladysnake/satin/impl/GeneratedUniformBinder";
+    private static final String MANAGED_UNIFORM = Type.getInternalName(ManagedUniform.class);
+    private static final String MANAGED_UNIFORM_DESC = Type.getDescriptor(ManagedUniform.class);
+
+    private static final ClassValue<BinderTemplate> TEMPLATES = new ClassValue<>() {
+        @Override
+        protected BinderTemplate computeValue(Class<?> type) {
+            return generate(type);
+        }
+    };
+
+    static <B> B create(UniformFinder shader, Class<B> binderType) {
+        BinderTemplate template = TEMPLATES.get(binderType);
+        ManagedUniform[] uniforms = new ManagedUniform[template.setters().length];
+        for (int i = 0; i < uniforms.length; i++) {
+            uniforms[i] = template.setters()[i].find(shader);
+        }
+        try {
+            return binderType.cast(template.constructor().invoke(uniforms));
+        } catch (Throwable t) {
+            throw new IllegalStateException("Failed to instantiate uniform binder for " + binderType.getName(), t);
+        }
+    }
+
+    private static BinderTemplate generate(Class<?> binderType) {
+        if (!binderType.isInterface() || !Modifier.isPublic(binderType.getModifiers())) {
+            throw new IllegalArgumentException(binderType.getName() + " is not a public interface");
+        }
+
+        List<Method> methods = new ArrayList<>();
+        List<Setter> setters = new ArrayList<>();
+        for (Method method : binderType.getMethods()) {
+            if (Modifier.isAbstract(method.getModifiers())) {
+                methods.add(method);
+                setters.add(Setter.of(method));
+            }
+        }
+
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(Opcodes.V17, Opcodes.ACC_FINAL | Opcodes.ACC_SUPER, BINDER_NAME, null, "java/lang/Object", new String[] {Type.getInternalName(binderType)});
+
+        for (int i = 0; i < methods.size(); i++) {
+            cw.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_FINAL, "u" + i, MANAGED_UNIFORM_DESC, null, null).visitEnd();
+        }
+
+        MethodVisitor init = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "([" + MANAGED_UNIFORM_DESC + ")V", null, null);
+        init.visitCode();
+        init.visitVarInsn(Opcodes.ALOAD, 0);
+        init.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        for (int i = 0; i < methods.size(); i++) {
+            init.visitVarInsn(Opcodes.ALOAD, 0);
+            init.visitVarInsn(Opcodes.ALOAD, 1);
+            init.visitLdcInsn(i);
+            init.visitInsn(Opcodes.AALOAD);
+            init.visitFieldInsn(Opcodes.PUTFIELD, BINDER_NAME, "u" + i, MANAGED_UNIFORM_DESC);
+        }
+        init.visitInsn(Opcodes.RETURN);
+        init.visitMaxs(0, 0);
+        init.visitEnd();
+
+        for (int i = 0; i < methods.size(); i++) {
+            Method method = methods.get(i);
+            String desc = Type.getMethodDescriptor(method);
+            MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL, method.getName(), desc, null, null);
+            mv.visitCode();
+            mv.visitVarInsn(Opcodes.ALOAD, 0);
+            mv.visitFieldInsn(Opcodes.GETFIELD, BINDER_NAME, "u" + i, MANAGED_UNIFORM_DESC);
+            int slot = 1;
+            for (Type param : Type.getArgumentTypes(method)) {
+                mv.visitVarInsn(param.getOpcode(Opcodes.ILOAD), slot);
+                slot += param.getSize();
+            }
+            // every supported signature matches one of ManagedUniform's setters
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, MANAGED_UNIFORM, "set", desc, false);
+            mv.visitInsn(Opcodes.RETURN);
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+        }
+        cw.visitEnd();
+
+        try {
+            MethodHandles.Lookup binderLookup = MethodHandles.lookup().defineHiddenClass(cw.toByteArray(), true);
+            MethodHandle constructor = binderLookup.findConstructor(binderLookup.lookupClass(), MethodType.methodType(void.class, ManagedUniform[].class))
+                    .asType(MethodType.methodType(Object.class, ManagedUniform[].class));
+            return new BinderTemplate(constructor, setters.toArray(new Setter[0]));
+        } catch (IllegalAccessException | NoSuchMethodException e) {
+            throw new IllegalStateException("Failed to generate uniform binder for " + binderType.getName(), e);
+        }
+    }
+
+    private record BinderTemplate(MethodHandle constructor, Setter[] setters) { }
+
+    private record Setter(String uniformName, boolean integer, int count) {
+        static Setter of(Method method) {
+            UniformName name = method.getAnnotation(UniformName.class);
+            if (name == null) {
+                throw new IllegalArgumentException("Uniform binder method " + method + " is not annotated with @UniformName");
+            }
+            if (method.getReturnType() != void.class) {
+                throw new IllegalArgumentException("Uniform binder method " + method + " must return void");
+            }
+            Class<?>[] params = method.getParameterTypes();
+            if (params.length == 1) {
+                int count = getComponentCount(params[0]);
+                if (count > 0) {
+                    return new Setter(name.value(), false, count);
+                }
+            }
+            if (params.length >= 1 && params.length <= 4) {
+                Class<?> first = params[0];
+                if (first == int.class || first == float.class) {
+                    boolean homogeneous = true;
+                    for (Class<?> param : params) {
+                        homogeneous &= param == first;
+                    }
+                    if (homogeneous) {
+                        return new Setter(name.value(), first == int.class, params.length);
+                    }
+                }
+            }
+            throw new IllegalArgumentException("Unsupported parameters for uniform binder method " + method);
+        }
+
+        private static int getComponentCount(Class<?> vectorType) {
+            if (vectorType == Vector2f.class) {
+                return 2;
+            } else if (vectorType == Vector3f.class) {
+                return 3;
+            } else if (vectorType == Vector4f.class) {
+                return 4;
+            } else if (vectorType == Matrix4f.class) {
+                return 16;
+            }
+            return -1;
+        }
+
+        ManagedUniform find(UniformFinder shader) {
+            Object uniform = this.integer ? switch (this.count) {
+                case 1 -> shader.findUniform1i(this.uniformName);
+                case 2 -> shader.findUniform2i(this.uniformName);
+                case 3 -> shader.findUniform3i(this.uniformName);
+                default -> shader.findUniform4i(this.uniformName);
+            } : switch (this.count) {
+                case 1 -> shader.findUniform1f(this.uniformName);
+                case 2 -> shader.findUniform2f(this.uniformName);
+                case 3 -> shader.findUniform3f(this.uniformName);
+                case 4 -> shader.findUniform4f(this.uniformName);
+                default -> shader.findUniformMat4(this.uniformName);
+            };
+            if (!(uniform instanceof ManagedUniform managedUniform)) {
+                throw new IllegalArgumentException("Uniform binders are only supported on shaders obtained from ShaderEffectManager");
+            }
+            return managedUniform;
+        }
+    }
+}
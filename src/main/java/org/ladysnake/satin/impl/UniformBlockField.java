@@ -0,0 +1,208 @@
+/*
+ * Satin
+ * Copyright (C) 2019-2024 Ladysnake
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; If not, see <https://www.gnu.org/licenses>.
+ */
+package org.ladysnake.satin.impl;
+
+import org.joml.Matrix4f;
+import org.joml.Vector2f;
+import org.joml.Vector3f;
+import org.joml.Vector4f;
+import org.ladysnake.satin.api.managed.uniform.Uniform1f;
+import org.ladysnake.satin.api.managed.uniform.Uniform1i;
+import org.ladysnake.satin.api.managed.uniform.Uniform2f;
+import org.ladysnake.satin.api.managed.uniform.Uniform2i;
+import org.ladysnake.satin.api.managed.uniform.Uniform3f;
+import org.ladysnake.satin.api.managed.uniform.Uniform3i;
+import org.ladysnake.satin.api.managed.uniform.Uniform4f;
+import org.ladysnake.satin.api.managed.uniform.Uniform4i;
+import org.ladysnake.satin.api.managed.uniform.UniformMat4;
+
+/**
+ * A typed handle on a single field of a {@link ManagedUniformBlock}.
+ *
+ * <p>Values are kept as raw 32 bits words, so that they can be written again
+ * to the block's staging buffer if its layout ever changes.
+ */
+final class UniformBlockField implements
+        Uniform1i, Uniform2i, Uniform3i, Uniform4i,
+        Uniform1f, Uniform2f, Uniform3f, Uniform4f,
+        UniformMat4 {
+
+    private final ManagedUniformBlock block;
+    private final String name;
+    private final int count;
+    private final int[] words;
+    private final float[] matrixScratch;
+    private int offset = -1;
+    private boolean firstUpload = true;
+
+    UniformBlockField(ManagedUniformBlock block, String name, int count) {
+        this.block = block;
+        this.name = name;
+        this.count = count;
+        this.words = new int[count];
+        this.matrixScratch = count == 16 ? new float[16] : null;
+    }
+
+    String getName() {
+        return this.name;
+    }
+
+    /**
+     * Sets the byte offset of this field within its block, and writes the last known value at that offset.
+     *
+     * @param offset the new offset, or -1 if the field does not exist in the block
+     */
+    void setOffset(int offset) {
+        this.offset = offset;
+        if (!this.firstUpload) {
+            this.writeWords();
+        }
+    }
+
+    private void writeWords() {
+        if (this.offset >= 0) {
+            this.block.write(this.offset, this.words, this.count);
+        }
+    }
+
+    private void update(int w0) {
+        if (this.firstUpload || this.words[0] != w0) {
+            this.words[0] = w0;
+            this.firstUpload = false;
+            this.writeWords();
+        }
+    }
+
+    private void update(int w0, int w1) {
+        int[] words = this.words;
+        if (this.firstUpload || words[0] != w0 || words[1] != w1) {
+            words[0] = w0;
+            words[1] = w1;
+            this.firstUpload = false;
+            this.writeWords();
+        }
+    }
+
+    private void update(int w0, int w1, int w2) {
+        int[] words = this.words;
+        if (this.firstUpload || words[0] != w0 || words[1] != w1 || words[2] != w2) {
+            words[0] = w0;
+            words[1] = w1;
+            words[2] = w2;
+            this.firstUpload = false;
+            this.writeWords();
+        }
+    }
+
+    private void update(int w0, int w1, int w2, int w3) {
+        int[] words = this.words;
+        if (this.firstUpload || words[0] != w0 || words[1] != w1 || words[2] != w2 || words[3] != w3) {
+            words[0] = w0;
+            words[1] = w1;
+            words[2] = w2;
+            words[3] = w3;
+            this.firstUpload = false;
+            this.writeWords();
+        }
+    }
+
+    @Override
+    public void set(int value) {
+        this.update(value);
+    }
+
+    @Override
+    public void set(int value0, int value1) {
+        this.update(value0, value1);
+    }
+
+    @Override
+    public void set(int value0, int value1, int value2) {
+        this.update(value0, value1, value2);
+    }
+
+    @Override
+    public void set(int value0, int value1, int value2, int value3) {
+        this.update(value0, value1, value2, value3);
+    }
+
+    @Override
+    public void set(float value) {
+        this.update(Float.floatToRawIntBits(value));
+    }
+
+    @Override
+    public void set(float value0, float value1) {
+        this.update(Float.floatToRawIntBits(value0), Float.floatToRawIntBits(value1));
+    }
+
+    @Override
+    public void set(Vector2f value) {
+        set(value.x(), value.y());
+    }
+
+    @Override
+    public void set(float value0, float value1, float value2) {
+        this.update(Float.floatToRawIntBits(value0), Float.floatToRawIntBits(value1), Float.floatToRawIntBits(value2));
+    }
+
+    @Override
+    public void set(Vector3f value) {
+        set(value.x(), value.y(), value.z());
+    }
+
+    @Override
+    public void set(float value0, float value1, float value2, float value3) {
+        this.update(Float.floatToRawIntBits(value0), Float.floatToRawIntBits(value1), Float.floatToRawIntBits(value2), Float.floatToRawIntBits(value3));
+    }
+
+    @Override
+    public void set(Vector4f value) {
+        set(value.x(), value.y(), value.z(), value.w());
+    }
+
+    @Override
+    public void set(Matrix4f value) {
+        if (this.matrixScratch == null) {
+            throw new IllegalStateException("Field " + this.name + " is not a 4x4 matrix");
+        }
+        this.setFromArray(value.get(this.matrixScratch));
+    }
+
+    @Override
+    public void setFromArray(float[] values) {
+        if (this.count != values.length) {
+            throw new IllegalArgumentException("Mismatched values size, expected " + count + " but got " + values.length);
+        }
+
+        int[] words = this.words;
+        boolean changed = this.firstUpload;
+        for (int i = 0; i < values.length; i++) {
+            int word = Float.floatToRawIntBits(values[i]);
+            if (words[i] != word) {
+                words[i] = word;
+                changed = true;
+            }
+        }
+
+        if (changed) {
+            this.firstUpload = false;
+            this.writeWords();
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Satin
+ * Copyright (C) 2019-2024 Ladysnake
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; If not, see <https://www.gnu.org/licenses>.
+ */
+package org.ladysnake.satin.impl;
+
+import com.mojang.blaze3d.systems.RenderSystem;
+import org.lwjgl.opengl.ARBBufferStorage;
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL30;
+import org.lwjgl.opengl.GL31;
+import org.lwjgl.opengl.GL32;
+import org.lwjgl.system.MemoryUtil;
+
+import javax.annotation.Nullable;
+import java.nio.ByteBuffer;
+
+/**
+ * A uniform buffer object split into several slots, cycled through on each upload.
+ *
+ * <p>When {@code ARB_buffer_storage} is available, the buffer is persistently mapped and written to directly,
+ * with a fence guarding each slot against being overwritten while the GPU may still be reading it.
+ * Rather than waiting on a fence, the buffer gets replaced with a larger one when every slot is still in use,
+ * up to {@value #MAX_SLOT_COUNT} slots. Once the buffer has been cycled through a few times without stalling,
+ * it shrinks back down.
+ * Otherwise, slots are written with {@code glBufferSubData}, which still lets the driver avoid
+ * synchronizing on the previous frame's data.
+ */
+final class UniformRingBuffer implements AutoCloseable {
+    private static final int INITIAL_SLOT_COUNT = 3;
+    private static final int MAX_SLOT_COUNT = INITIAL_SLOT_COUNT << 6;
+    /**How many times the whole buffer must be cycled through without stalling before it shrinks*/
+    private static final int SHRINK_AFTER_CYCLES = 16;
+    /**How long to wait on a fence at once when the buffer cannot grow anymore, in nanoseconds*/
+    private static final long FENCE_WAIT_TIMEOUT = 1_000_000L;
+
+    private final int slotSize;
+    private final boolean persistent;
+    private int buffer;
+    private int slotCount;
+    private long[] fences;
+    @Nullable
+    private ByteBuffer mapped;
+    private int currentSlot = -1;
+    private int uploadsSinceStall;
+
+    UniformRingBuffer(int dataSize) {
+        RenderSystem.assertOnRenderThread();
+        int alignment = Math.max(1, GL11.glGetInteger(GL31.GL_UNIFORM_BUFFER_OFFSET_ALIGNMENT));
+        this.slotSize = (dataSize + alignment - 1) / alignment * alignment;
+        this.persistent = GL.getCapabilities().GL_ARB_buffer_storage;
+        this.allocate(INITIAL_SLOT_COUNT);
+    }
+
+    private void allocate(int slotCount) {
+        long totalSize = (long) this.slotSize * slotCount;
+        this.buffer = GL15.glGenBuffers();
+        this.slotCount = slotCount;
+        this.fences = new long[slotCount];
+        this.currentSlot = -1;
+        GL15.glBindBuffer(GL31.GL_UNIFORM_BUFFER, this.buffer);
+        if (this.persistent) {
+            int flags = GL30.GL_MAP_WRITE_BIT | ARBBufferStorage.GL_MAP_PERSISTENT_BIT | ARBBufferStorage.GL_MAP_COHERENT_BIT;
+            ARBBufferStorage.glBufferStorage(GL31.GL_UNIFORM_BUFFER, totalSize, flags);
+            this.mapped = GL30.glMapBufferRange(GL31.GL_UNIFORM_BUFFER, 0, totalSize, flags);
+        } else {
+            GL15.glBufferData(GL31.GL_UNIFORM_BUFFER, totalSize, GL15.GL_DYNAMIC_DRAW);
+            this.mapped = null;
+        }
+        GL15.glBindBuffer(GL31.GL_UNIFORM_BUFFER, 0);
+    }
+
+    /**
+     * Writes {@code data} to the next slot of this buffer, then binds that slot to the given binding point.
+     *
+     * @param data         the data to upload, from its position to its limit
+     * @param bindingPoint the indexed uniform buffer binding point
+     */
+    void upload(ByteBuffer data, int bindingPoint) {
+        int slot = (this.currentSlot + 1) % this.slotCount;
+        int size = data.remaining();
+
+        if (this.mapped != null) {
+            if (this.slotCount > INITIAL_SLOT_COUNT && this.uploadsSinceStall >= this.slotCount * SHRINK_AFTER_CYCLES) {
+                this.resize(this.slotCount / 2);
+                slot = 0;
+            } else if (this.currentSlot >= 0) {
+                // every draw call reading the current slot has been submitted by now
+                this.fences[this.currentSlot] = GL32.glFenceSync(GL32.GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+            }
+            long fence = this.fences[slot];
+            if (fence != 0L) {
+                if (GL32.glClientWaitSync(fence, GL32.GL_SYNC_FLUSH_COMMANDS_BIT, 0L) == GL32.GL_TIMEOUT_EXPIRED) {
+                    this.uploadsSinceStall = 0;
+                    if (this.slotCount < MAX_SLOT_COUNT) {
+                        // the GPU may still be reading every slot, which happens when a block changes many times in a frame
+                        this.resize(this.slotCount * 2);
+                        slot = 0;
+                    } else {
+                        awaitFence(fence);
+                        GL32.glDeleteSync(fence);
+                        this.fences[slot] = 0L;
+                    }
+                } else {
+                    GL32.glDeleteSync(fence);
+                    this.fences[slot] = 0L;
+                }
+            }
+            this.uploadsSinceStall++;
+            long offset = (long) slot * this.slotSize;
+            MemoryUtil.memCopy(MemoryUtil.memAddress(data), MemoryUtil.memAddress(this.mapped) + offset, size);
+        } else {
+            GL15.glBindBuffer(GL31.GL_UNIFORM_BUFFER, this.buffer);
+            GL15.glBufferSubData(GL31.GL_UNIFORM_BUFFER, (long) slot * this.slotSize, data);
+            GL15.glBindBuffer(GL31.GL_UNIFORM_BUFFER, 0);
+        }
+
+        GL30.glBindBufferRange(GL31.GL_UNIFORM_BUFFER, bindingPoint, this.buffer, (long) slot * this.slotSize, size);
+        this.currentSlot = slot;
+    }
+
+    /**
+     * Replaces this buffer with one having the given number of slots.
+     *
+     * <p>The old buffer is orphaned: OpenGL keeps its storage alive until pending draw calls are done reading it.
+     */
+    private void resize(int slotCount) {
+        this.deleteBuffer();
+        this.allocate(slotCount);
+        this.uploadsSinceStall = 0;
+    }
+
+    private static void awaitFence(long fence) {
+        int result;
+        do {
+            result = GL32.glClientWaitSync(fence, GL32.GL_SYNC_FLUSH_COMMANDS_BIT, FENCE_WAIT_TIMEOUT);
+        } while (result == GL32.GL_TIMEOUT_EXPIRED);
+    }
+
+    private void deleteBuffer() {
+        for (int i = 0; i < this.fences.length; i++) {
+            if (this.fences[i] != 0L) {
+                GL32.glDeleteSync(this.fences[i]);
+                this.fences[i] = 0L;
+            }
+        }
+        // deleting a buffer also unmaps it
+        GL15.glDeleteBuffers(this.buffer);
+        this.mapped = null;
+    }
+
+    @Override
+    public void close() {
+        RenderSystem.assertOnRenderThread();
+        this.deleteBuffer();
+    }
+}
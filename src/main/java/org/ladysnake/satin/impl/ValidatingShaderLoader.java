@@ -51,16 +51,25 @@ public final class ValidatingShaderLoader implements ShaderLoader {
      */
     public int loadShader(ResourceManager resourceManager, @Nullable Identifier vertexLocation, @Nullable Identifier fragmentLocation) throws IOException {
 
+        String vertexSource = vertexLocation == null ? null : fromFile(resourceManager, vertexLocation);
+        String fragmentSource = fragmentLocation == null ? null : fromFile(resourceManager, fragmentLocation);
+
         // program creation
         int programId = GlStateManager.glCreateProgram();
 
+        String cacheKey = ProgramBinaryCache.computeKey(vertexSource, fragmentSource, null);
+        if (ProgramBinaryCache.load(programId, cacheKey)) {
+            return programId;
+        }
+        ProgramBinaryCache.prepareForStore(programId);
+
         int vertexShaderId = 0;
         int fragmentShaderId = 0;
 
         // vertex shader creation
         if (vertexLocation != null) {
             vertexShaderId = GlStateManager.glCreateShader(GL30.GL_VERTEX_SHADER);
-            ARBShaderObjects.glShaderSourceARB(vertexShaderId, fromFile(resourceManager, vertexLocation));
+            ARBShaderObjects.glShaderSourceARB(vertexShaderId, vertexSource);
             ARBShaderObjects.glCompileShaderARB(vertexShaderId);
             ARBShaderObjects.glAttachObjectARB(programId, vertexShaderId);
             String log = glGetShaderInfoLog(vertexShaderId, 1024);
@@ -72,7 +81,7 @@ public final class ValidatingShaderLoader implements ShaderLoader {
         // fragment shader creation
         if (fragmentLocation != null) {
             fragmentShaderId = GlStateManager.glCreateShader(GL30.GL_FRAGMENT_SHADER);
-            ARBShaderObjects.glShaderSourceARB(fragmentShaderId, fromFile(resourceManager, fragmentLocation));
+            ARBShaderObjects.glShaderSourceARB(fragmentShaderId, fragmentSource);
             ARBShaderObjects.glCompileShaderARB(fragmentShaderId);
             ARBShaderObjects.glAttachObjectARB(programId, fragmentShaderId);
             String log = glGetShaderInfoLog(fragmentShaderId, 1024);
@@ -86,6 +95,7 @@ public final class ValidatingShaderLoader implements ShaderLoader {
         if (glGetProgrami(programId, GL_LINK_STATUS) == 0) {
             throw new ShaderLinkException("Error linking Shader code: " + glGetProgramInfoLog(programId, 1024));
         }
+        ProgramBinaryCache.store(programId, cacheKey);
 
         // free up the vertex and fragment shaders
         if (vertexShaderId != 0) {
@@ -21,7 +21,6 @@ import net.minecraft.client.gl.PostEffectProcessor;
 import net.minecraft.client.render.GameRenderer;
 import net.minecraft.client.render.RenderTickCounter;
 import net.minecraft.entity.Entity;
-import net.minecraft.resource.ResourceFactory;
 import net.minecraft.util.Identifier;
 import org.ladysnake.satin.api.event.PickEntityShaderCallback;
 import org.ladysnake.satin.api.event.ShaderEffectRenderCallback;
@@ -45,6 +44,11 @@ public abstract class GameRendererMixin {
     @Shadow
     protected abstract void loadPostProcessor(Identifier id);
 
+    @Inject(at = @At("HEAD"), method = "render")
+    private void startFrame(RenderTickCounter tickCounter, boolean tick, CallbackInfo ci) {
+        ReloadableShaderEffectManager.INSTANCE.onFrameStart();
+    }
+
     /**
      * Fires {@link ShaderEffectRenderCallback#EVENT}
      */
@@ -68,9 +72,4 @@ public abstract class GameRendererMixin {
             PickEntityShaderCallback.EVENT.invoker().pickEntityShader(entity, loc -> this.loadPostProcessor(loc), () -> this.postProcessor);
         }
     }
-
-    @Inject(method = "loadPrograms", at = @At(value = "RETURN"))
-    private void loadSatinPrograms(ResourceFactory factory, CallbackInfo ci) {
-        ReloadableShaderEffectManager.INSTANCE.reload(factory);
-    }
 }
@@ -31,6 +31,7 @@ import org.ladysnake.satin.api.event.EntitiesPostRenderCallback;
 import org.ladysnake.satin.api.event.EntitiesPreRenderCallback;
 import org.ladysnake.satin.api.event.PostWorldRenderCallbackV3;
 import org.ladysnake.satin.api.experimental.ReadableDepthFramebuffer;
+import org.ladysnake.satin.impl.ReloadableShaderEffectManager;
 import org.objectweb.asm.Opcodes;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Unique;
@@ -45,6 +46,11 @@ public abstract class WorldRendererMixin {
     @Unique
     private Frustum frustum;
 
+    @Inject(method = "render", at = @At("HEAD"))
+    private void updateFrameGlobals(RenderTickCounter tickCounter, boolean renderBlockOutline, Camera camera, GameRenderer gameRenderer, LightmapTextureManager lightmapTextureManager, Matrix4f matrix4f, Matrix4f matrix4f2, CallbackInfo ci) {
+        ReloadableShaderEffectManager.INSTANCE.updateFrameGlobals(camera, matrix4f, matrix4f2, tickCounter.getTickDelta(true));
+    }
+
     //TODO
     @ModifyVariable(
             method = "render",
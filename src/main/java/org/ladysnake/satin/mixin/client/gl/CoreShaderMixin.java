@@ -17,19 +17,144 @@
  */
 package org.ladysnake.satin.mixin.client.gl;
 
+import com.llamalad7.mixinextras.injector.wrapoperation.Operation;
+import com.llamalad7.mixinextras.injector.wrapoperation.WrapOperation;
+import it.unimi.dsi.fastutil.ints.Int2IntMap;
+import it.unimi.dsi.fastutil.ints.Int2IntMaps;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import net.minecraft.client.gl.GlUniform;
 import net.minecraft.client.gl.ShaderProgram;
+import org.ladysnake.satin.api.managed.uniform.SamplerSettings;
 import org.ladysnake.satin.impl.SamplerAccess;
+import org.ladysnake.satin.impl.SamplerObjects;
+import org.ladysnake.satin.impl.SamplerUnitCaches;
+import org.ladysnake.satin.impl.UniformListAccess;
 import org.spongepowered.asm.mixin.Final;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.Unique;
 import org.spongepowered.asm.mixin.gen.Accessor;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 
+import javax.annotation.Nullable;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 @Mixin(ShaderProgram.class)
-public abstract class CoreShaderMixin implements SamplerAccess {
+public abstract class CoreShaderMixin implements SamplerAccess, UniformListAccess {
     @Shadow @Final private Map<String, Object> samplers;
+    @Shadow @Final private List<GlUniform> uniforms;
+    @Shadow @Final private Map<String, GlUniform> loadedUniforms;
+    @Shadow @Final private List<String> samplerNames;
+    @Unique
+    private final Int2IntMap satin$samplerUnits = satin$createSamplerUnitCache();
+    @Unique
+    private final Map<String, SamplerSettings> satin$samplerSettings = new HashMap<>();
+    /**Texture units on which a sampler object is currently bound*/
+    @Unique
+    private int satin$boundSamplerObjects;
+    /**Generation of {@link SamplerUnitCaches} in which {@link #satin$samplerUnits} was last known to be accurate*/
+    @Unique
+    private int satin$samplerUnitGeneration = SamplerUnitCaches.getGeneration();
+    @Unique
+    private boolean satin$samplerUnitsStale;
+    /**Whether this program belongs to a managed core shader*/
+    @Unique
+    private boolean satin$managed;
+
+    @Override
+    public void satin$putUniform(GlUniform uniform) {
+        GlUniform previous = this.loadedUniforms.put(uniform.getName(), uniform);
+        if (previous != null) {
+            this.uniforms.remove(previous);
+            previous.close();
+        }
+        this.uniforms.add(uniform);
+    }
+
+    @Override
+    public void satin$markManaged() {
+        this.satin$managed = true;
+    }
+
+    @Override
+    public void satin$cacheSamplerUnit(int location, int unit) {
+        this.satin$samplerUnits.put(location, unit);
+    }
+
+    @Override
+    public void satin$setSamplerSettings(String name, @Nullable SamplerSettings settings) {
+        if (settings == null) {
+            this.satin$samplerSettings.remove(name);
+        } else {
+            this.satin$samplerSettings.put(name, settings);
+        }
+    }
+
+    @Inject(method = "bind", at = @At("HEAD"))
+    private void checkSamplerUnits(CallbackInfo ci) {
+        int generation = SamplerUnitCaches.getGeneration();
+        if (this.satin$samplerUnitGeneration != generation) {
+            this.satin$samplerUnitGeneration = generation;
+            this.satin$samplerUnitsStale = true;
+        }
+    }
+
+    @Inject(method = "bind", at = @At("RETURN"))
+    private void restoreSamplerUnits(CallbackInfo ci) {
+        if (this.satin$samplerUnitsStale) {
+            this.satin$samplerUnitsStale = false;
+            // includes units assigned through setDirect, which bind does not know about
+            Int2IntMaps.fastForEach(this.satin$samplerUnits, e -> GlUniform.uniform1(e.getIntKey(), e.getIntValue()));
+        }
+    }
+
+    @Inject(method = "bind", at = @At("RETURN"))
+    private void bindSamplerObjects(CallbackInfo ci) {
+        if (this.satin$samplerSettings.isEmpty()) {
+            return;
+        }
+        int bound = 0;
+        // sampler units are the indices of sampler names, same as in bind
+        for (int unit = 0; unit < this.samplerNames.size() && unit < Integer.SIZE; unit++) {
+            String name = this.samplerNames.get(unit);
+            SamplerSettings settings = this.satin$samplerSettings.get(name);
+            if (settings != null && this.samplers.get(name) != null && SamplerObjects.bind(unit, settings)) {
+                bound |= 1 << unit;
+            }
+        }
+        this.satin$boundSamplerObjects = bound;
+    }
+
+    @Inject(method = "unbind", at = @At("HEAD"))
+    private void unbindSamplerObjects(CallbackInfo ci) {
+        if (this.satin$boundSamplerObjects != 0) {
+            SamplerObjects.unbind(this.satin$boundSamplerObjects);
+            this.satin$boundSamplerObjects = 0;
+        }
+    }
+
+    /**
+     * Sampler uniforms keep their value as long as the program lives, so there is no need to assign them on every bind.
+     * Only programs of managed shaders skip assignments, as other mods may write sampler units of vanilla programs
+     * without Satin knowing.
+     */
+    @WrapOperation(method = "bind", at = @At(value = "INVOKE", target = "Lnet/minecraft/client/gl/GlUniform;uniform1(II)V"))
+    private void skipRedundantSamplerUnit(int location, int unit, Operation<Void> original) {
+        if (!this.satin$managed || this.satin$samplerUnits.put(location, unit) != unit || this.satin$samplerUnitsStale) {
+            original.call(location, unit);
+        }
+    }
+
+    @Unique
+    private static Int2IntMap satin$createSamplerUnitCache() {
+        Int2IntMap ret = new Int2IntOpenHashMap();
+        ret.defaultReturnValue(-1);
+        return ret;
+    }
 
     @Override
     public void satin$removeSampler(String name) {
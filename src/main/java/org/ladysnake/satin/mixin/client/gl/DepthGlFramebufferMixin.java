@@ -22,6 +22,7 @@ import com.mojang.blaze3d.platform.TextureUtil;
 import com.mojang.blaze3d.systems.RenderSystem;
 import net.minecraft.client.gl.Framebuffer;
 import org.ladysnake.satin.api.experimental.ReadableDepthFramebuffer;
+import org.ladysnake.satin.impl.RenderStats;
 import org.lwjgl.opengl.GL11;
 import org.objectweb.asm.Opcodes;
 import org.spongepowered.asm.mixin.Final;
@@ -90,6 +91,8 @@ public abstract class DepthGlFramebufferMixin implements ReadableDepthFramebuffe
             this.beginWrite(false);
             RenderSystem.bindTexture(this.satin$stillDepthTexture);
             glCopyTexSubImage2D(GL_TEXTURE_2D, 0, 0, 0, 0, 0, this.textureWidth, this.textureHeight);
+            RenderStats.depthCopies++;
+            RenderStats.framebufferBinds++;
         }
     }
 }
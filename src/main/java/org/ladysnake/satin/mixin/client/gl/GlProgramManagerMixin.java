@@ -0,0 +1,48 @@
+/*
+ * Satin
+ * Copyright (C) 2019-2024 Ladysnake
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; If not, see <https://www.gnu.org/licenses>.
+ */
+package org.ladysnake.satin.mixin.client.gl;
+
+import com.llamalad7.mixinextras.injector.wrapoperation.Operation;
+import com.llamalad7.mixinextras.injector.wrapoperation.WrapOperation;
+import net.minecraft.client.gl.GlProgramManager;
+import net.minecraft.client.gl.ShaderProgramSetupView;
+import org.ladysnake.satin.impl.ProgramBinaryCache;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+@Mixin(GlProgramManager.class)
+public abstract class GlProgramManagerMixin {
+    /**
+     * Loads managed programs from the binary cache instead of linking them, and compiles deferred stages otherwise.
+     *
+     * <p>Only the link call gets skipped, as attaching stages keeps track of their users.
+     */
+    @WrapOperation(method = "linkProgram", at = @At(value = "INVOKE", target = "Lcom/mojang/blaze3d/platform/GlStateManager;glLinkProgram(I)V"))
+    private static void loadCachedProgram(int glRef, Operation<Void> original, ShaderProgramSetupView program) {
+        if (!ProgramBinaryCache.beforeLink(program)) {
+            original.call(glRef);
+        }
+    }
+
+    @Inject(method = "linkProgram", at = @At("RETURN"))
+    private static void storeLinkedProgram(ShaderProgramSetupView program, CallbackInfo ci) {
+        ProgramBinaryCache.afterLink(program);
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Satin
+ * Copyright (C) 2019-2024 Ladysnake
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; If not, see <https://www.gnu.org/licenses>.
+ */
+package org.ladysnake.satin.mixin.client.gl;
+
+import com.mojang.blaze3d.platform.GlStateManager;
+import org.ladysnake.satin.impl.TextureUnitCache;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+@Mixin(GlStateManager.class)
+public abstract class GlStateManagerMixin {
+    @Inject(method = "_activeTexture", at = @At("HEAD"))
+    private static void trackActiveTexture(int texture, CallbackInfo ci) {
+        TextureUnitCache.onActiveTexture(texture);
+    }
+
+    @Inject(method = "_bindTexture", at = @At("HEAD"))
+    private static void trackBoundTexture(int texture, CallbackInfo ci) {
+        TextureUnitCache.onBindTexture(texture);
+    }
+
+    @Inject(method = "_deleteTexture", at = @At("HEAD"))
+    private static void trackDeletedTexture(int texture, CallbackInfo ci) {
+        TextureUnitCache.onDeleteTexture(texture);
+    }
+
+    @Inject(method = "_deleteTextures", at = @At("HEAD"), require = 0)
+    private static void trackDeletedTextures(int[] textures, CallbackInfo ci) {
+        for (int texture : textures) {
+            TextureUnitCache.onDeleteTexture(texture);
+        }
+    }
+}
@@ -18,6 +18,7 @@
 package org.ladysnake.satin.mixin.client.gl;
 
 import net.minecraft.client.gl.GlUniform;
+import org.ladysnake.satin.impl.ProgramBinaryCache;
 import org.objectweb.asm.Opcodes;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.injection.At;
@@ -32,4 +33,12 @@ public abstract class GlUniformMixin {
     private void fixUploadEarlyReturn(CallbackInfo ci) {
         ci.cancel();
     }
+
+    /**
+     * Attribute locations are part of a linked program, so they must be part of its cache key
+     */
+    @Inject(method = "bindAttribLocation", at = @At("HEAD"))
+    private static void recordAttributeBinding(int program, int index, CharSequence name, CallbackInfo ci) {
+        ProgramBinaryCache.recordAttributeBinding(program, index, name);
+    }
 }
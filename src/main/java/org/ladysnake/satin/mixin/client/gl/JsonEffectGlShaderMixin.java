@@ -17,19 +17,40 @@
  */
 package org.ladysnake.satin.mixin.client.gl;
 
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
 import com.llamalad7.mixinextras.injector.wrapoperation.Operation;
 import com.llamalad7.mixinextras.injector.wrapoperation.WrapOperation;
+import com.mojang.blaze3d.systems.RenderSystem;
+import it.unimi.dsi.fastutil.ints.Int2IntMap;
+import it.unimi.dsi.fastutil.ints.Int2IntMaps;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import net.minecraft.client.gl.GlUniform;
 import net.minecraft.client.gl.JsonEffectShaderProgram;
+import net.minecraft.client.gl.ShaderProgramSetupView;
 import net.minecraft.client.gl.ShaderStage;
 import net.minecraft.resource.ResourceFactory;
 import net.minecraft.util.Identifier;
-import org.ladysnake.satin.impl.SamplerAccess;
+import net.minecraft.util.JsonHelper;
+import org.ladysnake.satin.api.managed.uniform.SamplerSettings;
+import org.ladysnake.satin.impl.EffectSamplerAccess;
+import org.ladysnake.satin.impl.ProgramPool;
+import org.ladysnake.satin.impl.SamplerObjects;
+import org.ladysnake.satin.impl.SamplerUnitCaches;
+import org.ladysnake.satin.impl.TextureUnitCache;
+import org.ladysnake.satin.impl.UniformListAccess;
+import org.lwjgl.opengl.GL13;
 import org.spongepowered.asm.mixin.Final;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.Unique;
 import org.spongepowered.asm.mixin.gen.Accessor;
 import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 
+import javax.annotation.Nullable;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.function.IntSupplier;
@@ -39,8 +60,251 @@ import java.util.function.IntSupplier;
  * These hooks redirect identifier instantiations to allow specifying a domain for shader files.
  */
 @Mixin(JsonEffectShaderProgram.class)
-public abstract class JsonEffectGlShaderMixin implements SamplerAccess {
+public abstract class JsonEffectGlShaderMixin implements EffectSamplerAccess, UniformListAccess {
     @Shadow @Final private Map<String, IntSupplier> samplerBinds;
+    @Shadow @Final private List<GlUniform> uniforms;
+    @Shadow @Final private Map<String, GlUniform> uniformByName;
+    @Shadow @Final private List<String> samplerNames;
+    @Unique
+    private final Int2IntMap satin$samplerUnits = satin$createSamplerUnitCache();
+    /**Sampler settings read from the program's JSON definition*/
+    @Unique
+    private final Map<String, SamplerSettings> satin$definedSamplerSettings = new HashMap<>();
+    @Unique
+    private final Map<String, SamplerSettings> satin$samplerSettings = new HashMap<>();
+    /**Texture units on which a sampler object is currently bound*/
+    @Unique
+    private int satin$boundSamplerObjects;
+    @Unique
+    @Nullable
+    private ProgramPool.Entry satin$pooledProgram;
+    /**Whether this instance has just started using a program last used by another instance*/
+    @Unique
+    private boolean satin$programClaimed;
+    /**Generation of {@link SamplerUnitCaches} in which {@link #satin$samplerUnits} was last known to be accurate*/
+    @Unique
+    private int satin$samplerUnitGeneration = SamplerUnitCaches.getGeneration();
+    @Unique
+    private boolean satin$samplerUnitsStale;
+    /**Whether this program belongs to a managed shader effect*/
+    @Unique
+    private boolean satin$managed;
+    /**Texture unit selected by the sampler loop of enable, only switched to once a texture actually needs binding*/
+    @Unique
+    private int satin$pendingTextureUnit = -1;
+    /**Whether this instance may use a program object shared with other instances*/
+    @Unique
+    private boolean satin$shareable;
+
+    @Shadow
+    public abstract void bindSampler(String samplerName, IntSupplier completer);
+
+    @Override
+    public void satin$bindSampler(String name, IntSupplier value) {
+        this.bindSampler(name, value);
+    }
+
+    @Override
+    public void satin$putUniform(GlUniform uniform) {
+        GlUniform previous = this.uniformByName.put(uniform.getName(), uniform);
+        if (previous != null) {
+            this.uniforms.remove(previous);
+            previous.close();
+        }
+        this.uniforms.add(uniform);
+    }
+
+    @Override
+    public void satin$markManaged() {
+        this.satin$managed = true;
+    }
+
+    @Override
+    public void satin$cacheSamplerUnit(int location, int unit) {
+        this.satin$samplerUnits.put(location, unit);
+    }
+
+    @Override
+    public void satin$setSamplerSettings(String name, @Nullable SamplerSettings settings) {
+        if (settings == null) {
+            settings = this.satin$definedSamplerSettings.get(name);
+        }
+        if (settings == null) {
+            this.satin$samplerSettings.remove(name);
+        } else {
+            this.satin$samplerSettings.put(name, settings);
+        }
+    }
+
+    @Inject(method = "addSampler", at = @At("HEAD"))
+    private void readSamplerSettings(JsonElement json, CallbackInfo ci) {
+        JsonObject sampler = JsonHelper.asObject(json, "sampler");
+        SamplerSettings settings = SamplerObjects.parse(sampler);
+        if (settings != null) {
+            String name = JsonHelper.getString(sampler, "name");
+            this.satin$definedSamplerSettings.put(name, settings);
+            this.satin$samplerSettings.put(name, settings);
+        }
+    }
+
+    @WrapOperation(method = "<init>", at = @At(value = "INVOKE", target = "Lnet/minecraft/client/gl/GlProgramManager;createProgram()I"))
+    private int reusePooledProgram(Operation<Integer> original, ResourceFactory factory, String name) {
+        // programs get pooled exactly while a managed effect is being created
+        this.satin$managed = ProgramPool.isPooling();
+        this.satin$shareable = ProgramPool.reserve(name);
+        ProgramPool.Entry pooled = this.satin$shareable ? ProgramPool.acquire(name) : null;
+        if (pooled != null) {
+            this.satin$pooledProgram = pooled;
+            return pooled.getGlRef();
+        }
+        return original.call();
+    }
+
+    @WrapOperation(method = "<init>", at = @At(value = "INVOKE", target = "Lnet/minecraft/client/gl/GlProgramManager;linkProgram(Lnet/minecraft/client/gl/ShaderProgramSetupView;)V"))
+    private void skipPooledProgramLink(ShaderProgramSetupView program, Operation<Void> original, ResourceFactory factory, String name) {
+        // a pooled program is already linked
+        if (this.satin$pooledProgram == null) {
+            original.call(program);
+            if (this.satin$shareable) {
+                this.satin$pooledProgram = ProgramPool.register(name, program.getGlRef());
+            }
+        }
+    }
+
+    @WrapOperation(method = "close", at = @At(value = "INVOKE", target = "Lnet/minecraft/client/gl/GlProgramManager;deleteProgram(Lnet/minecraft/client/gl/ShaderProgramSetupView;)V"))
+    private void releasePooledProgram(ShaderProgramSetupView program, Operation<Void> original) {
+        if (this.satin$pooledProgram == null || this.satin$pooledProgram.release(this)) {
+            original.call(program);
+        }
+    }
+
+    /**
+     * Another instance may have overwritten the uniform values of a pooled program since this one last used it
+     */
+    @Inject(method = "enable", at = @At("HEAD"))
+    private void claimPooledProgram(CallbackInfo ci) {
+        int generation = SamplerUnitCaches.getGeneration();
+        if (this.satin$samplerUnitGeneration != generation) {
+            this.satin$samplerUnitGeneration = generation;
+            this.satin$samplerUnitsStale = true;
+        }
+        if (this.satin$pooledProgram != null && this.satin$pooledProgram.claim(this)) {
+            ProgramPool.invalidateUniformState(this.uniforms);
+            this.satin$programClaimed = true;
+        }
+    }
+
+    @Inject(method = "enable", at = @At("RETURN"))
+    private void restoreSamplerUnits(CallbackInfo ci) {
+        if (this.satin$programClaimed || this.satin$samplerUnitsStale) {
+            this.satin$programClaimed = false;
+            this.satin$samplerUnitsStale = false;
+            // includes units assigned through setDirect, which enable does not know about
+            Int2IntMaps.fastForEach(this.satin$samplerUnits, e -> GlUniform.uniform1(e.getIntKey(), e.getIntValue()));
+        }
+    }
+
+    @Inject(method = "enable", at = @At("RETURN"))
+    private void bindSamplerObjects(CallbackInfo ci) {
+        if (this.satin$samplerSettings.isEmpty()) {
+            return;
+        }
+        int bound = 0;
+        // sampler units are the indices of sampler names, same as in enable
+        for (int unit = 0; unit < this.samplerNames.size() && unit < Integer.SIZE; unit++) {
+            String name = this.samplerNames.get(unit);
+            SamplerSettings settings = this.satin$samplerSettings.get(name);
+            if (settings != null && this.samplerBinds.get(name) != null && SamplerObjects.bind(unit, settings)) {
+                bound |= 1 << unit;
+            }
+        }
+        this.satin$boundSamplerObjects = bound;
+    }
+
+    @Inject(method = "disable", at = @At("HEAD"))
+    private void unbindSamplerObjects(CallbackInfo ci) {
+        if (this.satin$boundSamplerObjects != 0) {
+            SamplerObjects.unbind(this.satin$boundSamplerObjects);
+            this.satin$boundSamplerObjects = 0;
+        }
+    }
+
+    /**
+     * Sampler uniforms keep their value as long as the program lives, so there is no need to assign them on every bind
+     */
+    @WrapOperation(method = "enable", at = @At(value = "INVOKE", target = "Lnet/minecraft/client/gl/GlUniform;uniform1(II)V"))
+    private void skipRedundantSamplerUnit(int location, int unit, Operation<Void> original) {
+        if (this.satin$samplerUnits.put(location, unit) != unit || this.satin$samplerUnitsStale) {
+            original.call(location, unit);
+        }
+    }
+
+    /**
+     * Delays switching the active texture unit until {@link #skipBoundTexture} knows whether a texture needs binding
+     */
+    @WrapOperation(
+            method = "enable",
+            at = {
+                    @At(value = "INVOKE", target = "Lcom/mojang/blaze3d/platform/GlStateManager;_activeTexture(I)V"),
+                    @At(value = "INVOKE", target = "Lcom/mojang/blaze3d/systems/RenderSystem;activeTexture(I)V")
+            }
+    )
+    private void deferActiveTexture(int texture, Operation<Void> original) {
+        if (this.satin$managed) {
+            this.satin$pendingTextureUnit = texture;
+        } else {
+            original.call(texture);
+        }
+    }
+
+    /**
+     * Skips both the unit switch and the bind when a pass samples a texture still bound on the same unit,
+     * typically the output of the previous pass kept bound by {@link #keepSamplerBound}
+     */
+    @WrapOperation(
+            method = "enable",
+            at = {
+                    @At(value = "INVOKE", target = "Lcom/mojang/blaze3d/platform/GlStateManager;_bindTexture(I)V"),
+                    @At(value = "INVOKE", target = "Lcom/mojang/blaze3d/systems/RenderSystem;bindTexture(I)V")
+            }
+    )
+    private void skipBoundTexture(int texture, Operation<Void> original) {
+        int unit = this.satin$pendingTextureUnit;
+        if (unit < 0) {
+            original.call(texture);
+            return;
+        }
+        this.satin$pendingTextureUnit = -1;
+        if (!TextureUnitCache.isBound(unit - GL13.GL_TEXTURE0, texture)) {
+            RenderSystem.activeTexture(unit);
+            original.call(texture);
+        }
+    }
+
+    /**
+     * Keeps pass inputs bound after a pass of a managed effect is done, so that the next pass sampling the same texture
+     * on the same unit does not need to bind it again, see {@link TextureUnitCache}.
+     * Other programs unbind their textures as usual.
+     */
+    @WrapOperation(
+            method = "disable",
+            at = {
+                    @At(value = "INVOKE", target = "Lcom/mojang/blaze3d/platform/GlStateManager;_bindTexture(I)V"),
+                    @At(value = "INVOKE", target = "Lcom/mojang/blaze3d/systems/RenderSystem;bindTexture(I)V")
+            }
+    )
+    private void keepSamplerBound(int texture, Operation<Void> original) {
+        if (texture != 0 || !this.satin$managed) {
+            original.call(texture);
+        }
+    }
+
+    @Unique
+    private static Int2IntMap satin$createSamplerUnitCache() {
+        Int2IntMap ret = new Int2IntOpenHashMap();
+        ret.defaultReturnValue(-1);
+        return ret;
+    }
 
     @Override
     public void satin$removeSampler(String name) {
@@ -0,0 +1,39 @@
+/*
+ * Satin
+ * Copyright (C) 2019-2024 Ladysnake
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; If not, see <https://www.gnu.org/licenses>.
+ */
+package org.ladysnake.satin.mixin.client.gl;
+
+import net.minecraft.client.gl.PostEffectPass;
+import org.ladysnake.satin.impl.RenderStats;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+@Mixin(PostEffectPass.class)
+public abstract class PostEffectPassMixin {
+    /**
+     * Counts the binds of each pass' output, which happen both when clearing it and when drawing to it
+     */
+    @Inject(method = "render", at = {
+            @At(value = "INVOKE", target = "Lnet/minecraft/client/gl/Framebuffer;clear(Z)V"),
+            @At(value = "INVOKE", target = "Lnet/minecraft/client/gl/Framebuffer;beginWrite(Z)V")
+    })
+    private void countOutputBind(float time, CallbackInfo ci) {
+        RenderStats.onPassFramebufferBound();
+    }
+}
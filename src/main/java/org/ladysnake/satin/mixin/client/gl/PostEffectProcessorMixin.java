@@ -0,0 +1,70 @@
+/*
+ * Satin
+ * Copyright (C) 2019-2024 Ladysnake
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; If not, see <https://www.gnu.org/licenses>.
+ */
+package org.ladysnake.satin.mixin.client.gl;
+
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.gl.Framebuffer;
+import net.minecraft.client.gl.PostEffectProcessor;
+import org.ladysnake.satin.impl.CustomFormatFramebuffers;
+import org.ladysnake.satin.impl.EffectGpuTimer;
+import org.ladysnake.satin.impl.PooledFramebuffer;
+import org.ladysnake.satin.impl.TargetPool;
+import org.spongepowered.asm.mixin.Final;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.spongepowered.asm.mixin.injection.At.Shift.AFTER;
+
+@Mixin(PostEffectProcessor.class)
+public abstract class PostEffectProcessorMixin {
+    @Shadow @Final private Map<String, Framebuffer> targetsByName;
+    @Shadow @Final private List<Framebuffer> defaultSizedTargets;
+    @Shadow private int width;
+    @Shadow private int height;
+
+    /**
+     * Lets managed effects time each of their passes
+     */
+    @Inject(method = "render", at = @At(value = "INVOKE", target = "Lnet/minecraft/client/gl/PostEffectPass;render(F)V", shift = AFTER))
+    private void timePass(float tickDelta, CallbackInfo ci) {
+        EffectGpuTimer.onPassRendered();
+    }
+
+    /**
+     * Lets transient targets of managed effects share their textures
+     */
+    @Inject(method = "addTarget", at = @At("HEAD"), cancellable = true)
+    private void addPooledTarget(String name, int width, int height, CallbackInfo ci) {
+        int slot = TargetPool.getPendingSlot(name);
+        if (slot >= 0) {
+            Framebuffer framebuffer = new PooledFramebuffer(width, height, MinecraftClient.IS_SYSTEM_MAC, CustomFormatFramebuffers.getCustomFormat(), slot);
+            framebuffer.setClearColor(0.0F, 0.0F, 0.0F, 0.0F);
+            this.targetsByName.put(name, framebuffer);
+            if (width == this.width && height == this.height) {
+                this.defaultSizedTargets.add(framebuffer);
+            }
+            ci.cancel();
+        }
+    }
+}
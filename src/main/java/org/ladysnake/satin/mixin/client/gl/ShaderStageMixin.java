@@ -0,0 +1,50 @@
+/*
+ * Satin
+ * Copyright (C) 2019-2024 Ladysnake
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; If not, see <https://www.gnu.org/licenses>.
+ */
+package org.ladysnake.satin.mixin.client.gl;
+
+import com.llamalad7.mixinextras.injector.wrapoperation.Operation;
+import com.llamalad7.mixinextras.injector.wrapoperation.WrapOperation;
+import net.minecraft.client.gl.ShaderStage;
+import org.ladysnake.satin.impl.ProgramBinaryCache;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL20;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+
+/**
+ * Defers the compilation of managed shader stages until they get linked,
+ * so that it can be skipped entirely when the program is found in the {@link ProgramBinaryCache}.
+ */
+@Mixin(ShaderStage.class)
+public abstract class ShaderStageMixin {
+    @WrapOperation(method = "load", at = @At(value = "INVOKE", target = "Lcom/mojang/blaze3d/platform/GlStateManager;glCompileShader(I)V"))
+    private static void deferCompilation(int shader, Operation<Void> original) {
+        if (!ProgramBinaryCache.deferCompilation(shader)) {
+            original.call(shader);
+        }
+    }
+
+    @WrapOperation(method = "load", at = @At(value = "INVOKE", target = "Lcom/mojang/blaze3d/platform/GlStateManager;glGetShaderi(II)I"))
+    private static int assumeDeferredCompilationSuccess(int shader, int pname, Operation<Integer> original) {
+        if (pname == GL20.GL_COMPILE_STATUS && ProgramBinaryCache.isCompilationPending(shader)) {
+            // errors get reported at link time instead
+            return GL11.GL_TRUE;
+        }
+        return original.call(shader, pname);
+    }
+}
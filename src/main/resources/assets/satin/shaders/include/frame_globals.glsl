@@ -0,0 +1,18 @@
+// Values shared by every Satin-managed shader, updated once per frame.
+// Import with #moj_import <satin:frame_globals.glsl>
+// View matrices only hold the camera's rotation: world positions are relative to CameraPosition.
+layout(std140) uniform SatinFrameGlobals {
+    mat4 ViewMatrix;
+    mat4 ProjectionMatrix;
+    mat4 InverseViewMatrix;
+    mat4 InverseProjectionMatrix;
+    // inverse(ProjectionMatrix * ViewMatrix)
+    mat4 InverseTransformMatrix;
+    mat4 PreviousViewMatrix;
+    mat4 PreviousProjectionMatrix;
+    vec3 CameraPosition;
+    float GameTime;
+    vec3 PreviousCameraPosition;
+    float TickDelta;
+    vec2 ScreenSize;
+};
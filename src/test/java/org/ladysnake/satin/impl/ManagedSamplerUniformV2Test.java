@@ -0,0 +1,167 @@
+/*
+ * Satin
+ * Copyright (C) 2019-2024 Ladysnake
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; If not, see <https://www.gnu.org/licenses>.
+ */
+package org.ladysnake.satin.impl;
+
+import net.minecraft.client.texture.AbstractTexture;
+import net.minecraft.resource.ResourceManager;
+import org.junit.jupiter.api.Test;
+import org.ladysnake.satin.api.managed.uniform.SamplerSettings;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.function.IntSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class ManagedSamplerUniformV2Test {
+    private static final int FRAMES = 10_000;
+
+    @Test
+    void sameTextureIsNotBoundAgain() {
+        CountingTarget target = new CountingTarget();
+        ManagedSamplerUniformV2 sampler = new ManagedSamplerUniformV2("DiffuseSampler");
+        sampler.setTargets(new SamplerAccess[] {target}, new int[] {0});
+
+        sampler.set(3);
+        sampler.set(3);
+        assertEquals(1, target.binds, "same texture got bound again");
+        assertEquals(3, target.bound.getAsInt());
+
+        sampler.set(5);
+        assertEquals(1, target.binds, "changing the texture should update the bound supplier in place");
+        assertEquals(5, target.bound.getAsInt());
+
+        TestTexture texture = new TestTexture(12);
+        sampler.set(texture);
+        sampler.set(texture);
+        assertEquals(12, target.bound.getAsInt());
+        texture.setId(13);
+        assertEquals(13, target.bound.getAsInt(), "texture ids should be queried when drawing");
+    }
+
+    @Test
+    void valueIsKeptAcrossRetargeting() {
+        ManagedSamplerUniformV2 sampler = new ManagedSamplerUniformV2("DiffuseSampler");
+        sampler.set(7);
+
+        CountingTarget target = new CountingTarget();
+        sampler.setTargets(new SamplerAccess[] {target}, new int[] {0});
+        assertEquals(1, target.binds);
+        assertEquals(7, target.bound.getAsInt());
+    }
+
+    @Test
+    void deferredValueIsBoundOnFlush() {
+        CountingTarget target = new CountingTarget();
+        ManagedSamplerUniformV2 sampler = new ManagedSamplerUniformV2("DiffuseSampler");
+        sampler.setTargets(new SamplerAccess[] {target}, new int[] {0});
+        DeferredUniformQueue queue = new DeferredUniformQueue();
+        sampler.setDeferredQueue(queue);
+
+        sampler.set(3);
+        IntSupplier custom = () -> 4;
+        sampler.set(custom);
+        assertEquals(0, target.binds, "deferred sampler got bound before the flush");
+
+        queue.flush();
+        assertEquals(1, target.binds);
+        assertSame(custom, target.bound);
+    }
+
+    @Test
+    void steadyStateDoesNotAllocate() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean, "allocation tracking is not available");
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threadBean.isThreadAllocatedMemorySupported(), "allocation tracking is not supported");
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+
+        ManagedSamplerUniformV2 sampler = new ManagedSamplerUniformV2("DiffuseSampler");
+        sampler.setTargets(new SamplerAccess[] {new CountingTarget(), new CountingTarget()}, new int[] {0, 0});
+        TestTexture texture = new TestTexture(4);
+
+        // warmup, also gets every class loaded
+        runFrames(sampler, texture);
+        long before = threadBean.getCurrentThreadAllocatedBytes();
+        runFrames(sampler, texture);
+        long allocated = threadBean.getCurrentThreadAllocatedBytes() - before;
+
+        assertEquals(0, allocated, "setting samplers allocated " + allocated + " bytes over " + FRAMES + " frames");
+    }
+
+    private static void runFrames(ManagedSamplerUniformV2 sampler, AbstractTexture texture) {
+        for (int i = 0; i < FRAMES; i++) {
+            sampler.set(texture);
+            sampler.set(i & 1);
+        }
+    }
+
+    private static final class TestTexture extends AbstractTexture {
+        TestTexture(int id) {
+            this.setId(id);
+        }
+
+        void setId(int id) {
+            this.glId = id;
+        }
+
+        @Override
+        public void load(ResourceManager manager) { }
+    }
+
+    private static final class CountingTarget implements EffectSamplerAccess {
+        int binds;
+        IntSupplier bound;
+
+        @Override
+        public void satin$bindSampler(String name, IntSupplier value) {
+            this.binds++;
+            this.bound = value;
+        }
+
+        @Override
+        public void satin$removeSampler(String name) {
+            this.bound = null;
+        }
+
+        @Override
+        public boolean satin$hasSampler(String name) {
+            return true;
+        }
+
+        @Override
+        public List<String> satin$getSamplerNames() {
+            return List.of();
+        }
+
+        @Override
+        public List<Integer> satin$getSamplerShaderLocs() {
+            return List.of();
+        }
+
+        @Override
+        public void satin$markManaged() { }
+
+        @Override
+        public void satin$cacheSamplerUnit(int location, int unit) { }
+
+        @Override
+        public void satin$setSamplerSettings(String name, SamplerSettings settings) { }
+    }
+}
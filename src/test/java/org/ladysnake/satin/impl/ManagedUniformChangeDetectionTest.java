@@ -0,0 +1,280 @@
+/*
+ * Satin
+ * Copyright (C) 2019-2024 Ladysnake
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; If not, see <https://www.gnu.org/licenses>.
+ */
+package org.ladysnake.satin.impl;
+
+import net.minecraft.client.gl.GlUniform;
+import net.minecraft.util.Identifier;
+import org.joml.Matrix4f;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ManagedUniformChangeDetectionTest {
+    /**Number of passes declaring each uniform in a typical effect*/
+    private static final int PASSES = 4;
+    private static final int FRAMES = 100;
+
+    /**Every uniform created by a test, which allocate native buffers*/
+    private final List<GlUniform> created = new ArrayList<>();
+    private int totalUploads;
+
+    @AfterEach
+    void closeUniforms() {
+        for (GlUniform uniform : this.created) {
+            uniform.close();
+        }
+        this.created.clear();
+    }
+
+    @Test
+    void identicalMatrixIsNotUploadedTwice() {
+        CountingUniform target = new CountingUniform(16);
+        ManagedUniform uniform = new ManagedUniform("ViewMat", 16);
+        uniform.setTargets(target);
+        Matrix4f view = new Matrix4f().rotateY(0.5f).translate(1, 2, 3);
+
+        uniform.set(view);
+        uniform.set(new Matrix4f(view));
+        assertEquals(1, target.uploads, "identical matrix got uploaded again");
+
+        view.translate(0, 0, 1);
+        uniform.set(view);
+        assertEquals(2, target.uploads, "modified matrix did not get uploaded");
+    }
+
+    @Test
+    void identicalArrayIsNotUploadedTwice() {
+        CountingUniform target = new CountingUniform(16);
+        ManagedUniform uniform = new ManagedUniform("ProjMat", 16);
+        uniform.setTargets(target);
+        float[] values = new Matrix4f().perspective(1.2f, 1.5f, 0.05f, 256f).get(new float[16]);
+
+        uniform.setFromArray(values);
+        uniform.setFromArray(values.clone());
+        assertEquals(1, target.uploads, "identical array got uploaded again");
+
+        values[5] = 2f;
+        uniform.setFromArray(values);
+        assertEquals(2, target.uploads, "modified array did not get uploaded");
+    }
+
+    @Test
+    void matrixIsSyncedWithNewTargets() {
+        ManagedUniform uniform = new ManagedUniform("ViewMat", 16);
+        uniform.setTargets(new CountingUniform(16));
+        uniform.set(new Matrix4f().scale(2f));
+
+        CountingUniform reloaded = new CountingUniform(16);
+        uniform.setTargets(reloaded);
+        assertEquals(1, reloaded.uploads, "matrix value was lost when retargeting");
+    }
+
+    @Test
+    void scalarAfterArrayIsNotSkipped() {
+        CountingUniform target = new CountingUniform(GlUniform.FLOAT1, 1);
+        ManagedUniform uniform = new ManagedUniform("Intensity", 1);
+        uniform.setTargets(target);
+
+        uniform.setFromArray(new float[] {1f});
+        uniform.set(0f);
+        assertEquals(2, target.uploads, "scalar value got compared against a stale value");
+    }
+
+    @Test
+    void lastWrittenRepresentationIsSyncedWithNewTargets() {
+        ManagedUniform uniform = new ManagedUniform("Intensity", 1);
+        uniform.setTargets(new CountingUniform(GlUniform.FLOAT1, 1));
+        uniform.setFromArray(new float[] {1f});
+        uniform.set(0.5f);
+
+        CountingUniform reloaded = new CountingUniform(GlUniform.FLOAT1, 1);
+        uniform.setTargets(reloaded);
+        assertEquals(0.5f, reloaded.lastValue, "an older array value overwrote the latest scalar value");
+    }
+
+    @Test
+    void deferredValueIsNotWrittenToReleasedTargets() {
+        CountingUniform released = new CountingUniform(GlUniform.FLOAT1, 1);
+        ManagedUniform uniform = new ManagedUniform("Intensity", 1);
+        uniform.setTargets(released);
+        DeferredUniformQueue queue = new DeferredUniformQueue();
+        uniform.setDeferredQueue(queue);
+
+        uniform.set(0.5f);
+        uniform.clearTargets();
+        uniform.setDeferredQueue(null);
+        assertEquals(0, released.uploads, "deferred value got written to a released target");
+
+        CountingUniform reloaded = new CountingUniform(GlUniform.FLOAT1, 1);
+        uniform.setTargets(reloaded);
+        assertEquals(0.5f, reloaded.lastValue, "deferred value was lost when retargeting");
+    }
+
+    @Test
+    void everyPassLookupReturnsPlainLookup() {
+        ResettableManagedShaderEffect effect = new ResettableManagedShaderEffect(Identifier.of("test", "shaders/post/lookup.json"), e -> { });
+        assertSame(effect.findUniform1f("Intensity"), effect.findUniform1f("Intensity", -1));
+        assertSame(effect.findUniformMat4("ViewMat", -1), effect.findUniformMat4("ViewMat"));
+        assertNotSame(effect.findUniform1f("Intensity"), effect.findUniform1f("Intensity", 0));
+    }
+
+    /**
+     * Simulates an effect receiving view, projection and inverse view matrices every frame,
+     * first while the camera moves, then while it does not.
+     */
+    @Test
+    void staticCameraDoesNotUploadMatrices() {
+        CountingUniform[] targets = new CountingUniform[PASSES];
+        for (int i = 0; i < PASSES; i++) {
+            targets[i] = new CountingUniform(16);
+        }
+        ManagedUniform view = new ManagedUniform("ViewMat", 16);
+        ManagedUniform proj = new ManagedUniform("ProjMat", 16);
+        ManagedUniform inverseView = new ManagedUniform("InverseViewMat", 16);
+        view.setTargets(targets);
+        proj.setTargets(targets);
+        inverseView.setTargets(targets);
+
+        Matrix4f viewMat = new Matrix4f().rotateX(0.3f).translate(-12, -70, 5);
+        Matrix4f projMat = new Matrix4f().perspective(1.2f, 16f / 9f, 0.05f, 512f);
+        Matrix4f inverseViewMat = new Matrix4f();
+
+        // first frame uploads everything
+        runFrames(1, view, proj, inverseView, viewMat, projMat, inverseViewMat, false);
+        int changingUploads = runFrames(FRAMES, view, proj, inverseView, viewMat, projMat, inverseViewMat, true);
+        int staticUploads = runFrames(FRAMES, view, proj, inverseView, viewMat, projMat, inverseViewMat, false);
+
+        // the view and inverse view matrices change every frame, the projection never does
+        assertEquals(2 * PASSES * FRAMES, changingUploads);
+        assertEquals(0, staticUploads);
+    }
+
+    /**
+     * Microbenchmark comparing the per-frame cost of an effect receiving a static camera's matrices
+     * with and without change detection. Opt-in, run with {@code -Dsatin.benchmark=true}.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "satin.benchmark", matches = "true")
+    void staticCameraBenchmark() {
+        final int benchmarkFrames = 100_000;
+        CountingUniform[] targets = new CountingUniform[PASSES];
+        for (int i = 0; i < PASSES; i++) {
+            targets[i] = new CountingUniform(16);
+        }
+        ManagedUniform view = new ManagedUniform("ViewMat", 16);
+        ManagedUniform proj = new ManagedUniform("ProjMat", 16);
+        ManagedUniform inverseView = new ManagedUniform("InverseViewMat", 16);
+        view.setTargets(targets);
+        proj.setTargets(targets);
+        inverseView.setTargets(targets);
+        Matrix4f viewMat = new Matrix4f().rotateX(0.3f).translate(-12, -70, 5);
+        Matrix4f projMat = new Matrix4f().perspective(1.2f, 16f / 9f, 0.05f, 512f);
+        Matrix4f inverseViewMat = new Matrix4f();
+
+        // warmup
+        runFrames(benchmarkFrames, view, proj, inverseView, viewMat, projMat, inverseViewMat, false);
+        runUndetectedFrames(benchmarkFrames, targets, viewMat, projMat, inverseViewMat);
+
+        long undetectedStart = System.nanoTime();
+        int undetectedUploads = runUndetectedFrames(benchmarkFrames, targets, viewMat, projMat, inverseViewMat);
+        long undetectedTime = System.nanoTime() - undetectedStart;
+        long detectedStart = System.nanoTime();
+        int detectedUploads = runFrames(benchmarkFrames, view, proj, inverseView, viewMat, projMat, inverseViewMat, false);
+        long detectedTime = System.nanoTime() - detectedStart;
+
+        System.out.printf("Static camera, 3 matrices over %d passes: %.1f ns/frame and %d uploads/frame without change detection, %.1f ns/frame and %d uploads/frame with it%n",
+                PASSES,
+                (double) undetectedTime / benchmarkFrames, undetectedUploads / benchmarkFrames,
+                (double) detectedTime / benchmarkFrames, detectedUploads / benchmarkFrames);
+    }
+
+    /**
+     * Writes matrices to every target each frame, like setting them through vanilla's uniforms would
+     */
+    private int runUndetectedFrames(int frames, CountingUniform[] targets, Matrix4f viewMat, Matrix4f projMat, Matrix4f inverseViewMat) {
+        int before = totalUploads;
+        for (int i = 0; i < frames; i++) {
+            viewMat.invert(inverseViewMat);
+            for (CountingUniform target : targets) {
+                target.set(viewMat);
+                target.set(projMat);
+                target.set(inverseViewMat);
+            }
+        }
+        return totalUploads - before;
+    }
+
+    private int runFrames(int frames, ManagedUniform view, ManagedUniform proj, ManagedUniform inverseView,
+            Matrix4f viewMat, Matrix4f projMat, Matrix4f inverseViewMat, boolean moving) {
+        int before = totalUploads;
+        for (int i = 0; i < frames; i++) {
+            if (moving) {
+                viewMat.rotateY(0.001f);
+            }
+            view.set(viewMat);
+            proj.set(projMat);
+            inverseView.set(viewMat.invert(inverseViewMat));
+        }
+        return totalUploads - before;
+    }
+
+    private final class CountingUniform extends GlUniform {
+        int uploads;
+
+        float lastValue;
+
+        CountingUniform(int count) {
+            this(GlUniform.MAT4X4, count);
+        }
+
+        CountingUniform(int dataType, int count) {
+            super("test", dataType, count, null);
+            created.add(this);
+        }
+
+        @Override
+        public void set(float value) {
+            this.lastValue = value;
+            this.uploads++;
+            totalUploads++;
+        }
+
+        @Override
+        public void setForDataType(float value1, float value2, float value3, float value4) {
+            this.set(value1);
+        }
+
+        @Override
+        public void set(float[] values) {
+            this.lastValue = values[0];
+            this.uploads++;
+            totalUploads++;
+        }
+
+        @Override
+        public void set(Matrix4f values) {
+            this.uploads++;
+            totalUploads++;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Satin
+ * Copyright (C) 2019-2024 Ladysnake
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; If not, see <https://www.gnu.org/licenses>.
+ */
+package org.ladysnake.satin.impl;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import net.minecraft.resource.Resource;
+import net.minecraft.resource.ResourceFactory;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.JsonHelper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PassFusionTest {
+    private static final Identifier EFFECT = Identifier.of("test", "shaders/post/graded.json");
+    private static final String EFFECT_JSON = """
+            {
+                "satin:fuse_passes": true,
+                "targets": ["swap", "swap2"],
+                "passes": [
+                    {"name": "test:grade", "intarget": "minecraft:main", "outtarget": "swap"},
+                    {"name": "test:tint", "intarget": "swap", "outtarget": "swap2"},
+                    {"name": "test:blur", "intarget": "swap2", "outtarget": "minecraft:main"}
+                ]
+            }
+            """;
+    private static final String GRADE_FSH = """
+            #version 150
+
+            uniform sampler2D DiffuseSampler;
+            uniform float Saturation;
+
+            in vec2 texCoord;
+
+            out vec4 fragColor;
+
+            const vec3 LUMA = vec3(0.299, 0.587, 0.114); // luminance weights
+
+            vec3 saturate(vec3 color) {
+                return mix(vec3(dot(color, LUMA)), color, Saturation);
+            }
+
+            void main() {
+                vec4 color = texture(DiffuseSampler, texCoord);
+                fragColor = vec4(saturate(color.rgb), 1.0);
+            }
+            """;
+    private static final String TINT_FSH = """
+            #version 150
+
+            uniform sampler2D DiffuseSampler;
+            uniform vec3 Tint;
+
+            in vec2 texCoord;
+
+            out vec4 fragColor;
+
+            /* not the same function as in grade.fsh */
+            vec3 saturate(vec3 color) {
+                return clamp(color, 0.0, 1.0);
+            }
+
+            void main() {
+                fragColor = vec4(saturate(texture(DiffuseSampler, texCoord).rgb * Tint), 1.0);
+            }
+            """;
+    private static final String BLUR_FSH = """
+            #version 150
+
+            uniform sampler2D DiffuseSampler;
+
+            in vec2 texCoord;
+            in vec2 oneTexel;
+
+            out vec4 fragColor;
+
+            void main() {
+                fragColor = (texture(DiffuseSampler, texCoord - oneTexel) + texture(DiffuseSampler, texCoord + oneTexel)) * 0.5;
+            }
+            """;
+
+    @Test
+    void perPixelPassesAreFused() throws IOException {
+        PassFusion.Result result = PassFusion.fuse(createFactory(EFFECT_JSON), EFFECT, Set.of());
+        assertNotNull(result, "grade and tint passes should be fused");
+        assertArrayEquals(new int[] {0, 0, 1}, result.passMapping());
+
+        JsonObject effect = readJson(result.resourceFactory(), EFFECT);
+        JsonArray targets = JsonHelper.getArray(effect, "targets");
+        assertEquals(1, targets.size(), "fused intermediate target should be removed");
+        assertEquals("swap2", targets.get(0).getAsString());
+        JsonArray passes = JsonHelper.getArray(effect, "passes");
+        assertEquals(2, passes.size());
+        JsonObject fusedPass = passes.get(0).getAsJsonObject();
+        assertEquals("minecraft:main", JsonHelper.getString(fusedPass, "intarget"));
+        assertEquals("swap2", JsonHelper.getString(fusedPass, "outtarget"));
+
+        String fusedName = JsonHelper.getString(fusedPass, "name");
+        JsonObject program = readJson(result.resourceFactory(), PreloadedShaderResources.resolve("shaders/program/", fusedName, ".json"));
+        assertEquals(2, JsonHelper.getArray(program, "uniforms").size());
+        String fragment;
+        try (InputStream in = result.resourceFactory().open(PreloadedShaderResources.resolve("shaders/program/", JsonHelper.getString(program, "fragment"), ".fsh"))) {
+            fragment = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        assertTrue(fragment.startsWith("#version 150\n"));
+        assertEquals(1, fragment.split("uniform sampler2D DiffuseSampler;", -1).length - 1, "sampler should only be declared once");
+        assertEquals(1, fragment.split("in vec2 texCoord;", -1).length - 1, "input should only be declared once");
+        assertTrue(fragment.contains("uniform float Saturation;"), "uniforms should keep their name");
+        assertTrue(fragment.contains("uniform vec3 Tint;"), "uniforms should keep their name");
+        assertTrue(fragment.contains("vec4 satin_s0_fragColor;"), "intermediate output should become a global");
+        assertTrue(fragment.contains("out vec4 fragColor;"));
+        assertTrue(fragment.contains("satin_s0_LUMA"));
+        assertTrue(fragment.contains("vec3 satin_s0_saturate(vec3 color)"));
+        assertTrue(fragment.contains("satin_s0_fragColor = vec4(satin_s0_saturate(color.rgb), 1.0);"));
+        assertTrue(fragment.contains("fragColor = vec4(satin_s1_saturate(clamp(satin_s0_fragColor, 0.0, 1.0).rgb * Tint), 1.0);"), "input reads should use the previous stage's clamped output");
+        assertTrue(fragment.contains("satin_s0_main();\n    satin_s1_main();"));
+    }
+
+    @Test
+    void intermediatesWithCustomFormatsAreKept() {
+        // an RGBA16F target holds values outside of [0, 1], which a fused stage would have to reproduce exactly
+        String json = EFFECT_JSON.replace("\"targets\": [\"swap\", \"swap2\"]", "\"targets\": [{\"name\": \"swap\", \"satin:format\": \"RGBA16F\"}, \"swap2\"]");
+        assertNotEquals(EFFECT_JSON, json);
+        assertNull(PassFusion.fuse(createFactory(json), EFFECT, Set.of()));
+    }
+
+    @Test
+    void targetsUsedFromCodeAreKept() {
+        assertNull(PassFusion.fuse(createFactory(EFFECT_JSON), EFFECT, Set.of("swap")));
+    }
+
+    @Test
+    void fusionIsOptIn() {
+        String json = EFFECT_JSON.replace("\"satin:fuse_passes\": true,", "");
+        assertNull(PassFusion.fuse(createFactory(json), EFFECT, Set.of()));
+    }
+
+    private static JsonObject readJson(ResourceFactory factory, Identifier id) throws IOException {
+        try (Reader reader = factory.openAsReader(id)) {
+            return JsonHelper.deserialize(reader);
+        }
+    }
+
+    private static ResourceFactory createFactory(String effectJson) {
+        Map<Identifier, String> files = new HashMap<>();
+        files.put(EFFECT, effectJson);
+        addProgram(files, "grade", GRADE_FSH, "[{\"name\": \"Saturation\", \"type\": \"float\", \"count\": 1, \"values\": [1.0]}]");
+        addProgram(files, "tint", TINT_FSH, "[{\"name\": \"Tint\", \"type\": \"float\", \"count\": 3, \"values\": [1.0, 1.0, 1.0]}]");
+        addProgram(files, "blur", BLUR_FSH, "[]");
+        return id -> Optional.ofNullable(files.get(id)).map(content -> new Resource(null, () -> new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    private static void addProgram(Map<Identifier, String> files, String name, String fragment, String uniforms) {
+        files.put(Identifier.of("test", "shaders/program/" + name + ".json"), """
+                {"vertex": "sobel", "fragment": "test:%s", "samplers": [{"name": "DiffuseSampler"}], "uniforms": %s}
+                """.formatted(name, uniforms));
+        files.put(Identifier.of("test", "shaders/program/" + name + ".fsh"), fragment);
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Satin
+ * Copyright (C) 2019-2024 Ladysnake
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; If not, see <https://www.gnu.org/licenses>.
+ */
+package org.ladysnake.satin.impl;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProgramPoolTest {
+    @AfterEach
+    void clearPool() {
+        while (ProgramPool.isPooling()) {
+            ProgramPool.endPooling();
+        }
+        ProgramPool.invalidate();
+    }
+
+    @Test
+    void instancesReuploadTheirValuesWhenAlternating() {
+        Object first = new Object();
+        Object second = new Object();
+        ProgramPool.beginPooling(true);
+        assertTrue(ProgramPool.reserve("test:blit"));
+        ProgramPool.Entry entry = ProgramPool.register("test:blit", 1);
+        ProgramPool.endPooling();
+        ProgramPool.beginPooling(true);
+        assertTrue(ProgramPool.reserve("test:blit"));
+        assertSame(entry, ProgramPool.acquire("test:blit"));
+        ProgramPool.endPooling();
+        assertNotNull(entry);
+
+        assertTrue(entry.claim(first));
+        assertFalse(entry.claim(first), "values of the current user are still in the program");
+        assertTrue(entry.claim(second), "second instance did not upload its own values");
+        assertTrue(entry.claim(first), "first instance did not restore its own values after the second one");
+
+        assertFalse(entry.release(first));
+        assertTrue(entry.release(second), "last reference should delete the program");
+    }
+
+    @Test
+    void passesOfOneEffectDoNotShareProgram() {
+        ProgramPool.beginPooling(true);
+        assertTrue(ProgramPool.reserve("test:blur"));
+        assertFalse(ProgramPool.reserve("test:blur"), "two passes of one effect got the same program");
+        ProgramPool.endPooling();
+
+        ProgramPool.beginPooling(true);
+        assertTrue(ProgramPool.reserve("test:blur"), "reservations leaked into the next effect");
+        ProgramPool.endPooling();
+    }
+
+    @Test
+    void effectsWithRawUniformWritesDoNotSharePrograms() {
+        ProgramPool.beginPooling(false);
+        assertFalse(ProgramPool.reserve("test:blit"));
+        ProgramPool.endPooling();
+        assertFalse(ProgramPool.reserve("test:blit"), "programs created outside of managed effects got pooled");
+    }
+}
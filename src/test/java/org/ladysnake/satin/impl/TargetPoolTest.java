@@ -0,0 +1,78 @@
+/*
+ * Satin
+ * Copyright (C) 2019-2024 Ladysnake
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; If not, see <https://www.gnu.org/licenses>.
+ */
+package org.ladysnake.satin.impl;
+
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import net.minecraft.resource.Resource;
+import net.minecraft.resource.ResourceFactory;
+import net.minecraft.util.Identifier;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TargetPoolTest {
+    private static final Identifier EFFECT = Identifier.of("test", "shaders/post/trail.json");
+    private static final String EFFECT_JSON = """
+            {
+                "targets": ["a", "b", "c", {"name": "hdr", "satin:format": "RGBA16F"}, "previous"],
+                "passes": [
+                    {"name": "test:copy", "intarget": "minecraft:main", "outtarget": "a"},
+                    {"name": "test:blur", "intarget": "a", "outtarget": "b"},
+                    {"name": "test:blur", "intarget": "b", "outtarget": "c"},
+                    {"name": "test:tonemap", "intarget": "c", "outtarget": "hdr"},
+                    {"name": "test:blend", "intarget": "hdr", "outtarget": "minecraft:main", "auxtargets": [{"name": "PrevSampler", "id": "previous"}]},
+                    {"name": "test:copy", "intarget": "minecraft:main", "outtarget": "previous"}
+                ]
+            }
+            """;
+
+    @Test
+    void targetsWithDisjointLifetimesShareSlots() {
+        Object2IntMap<String> slots = TargetPool.assignSlots(createFactory(EFFECT_JSON), EFFECT, Set.of());
+        assertEquals(0, slots.getInt("a"));
+        assertEquals(1, slots.getInt("b"), "b is read and written along with a and c");
+        assertEquals(0, slots.getInt("c"), "a is not used anymore once c gets written");
+        assertEquals(0, slots.getInt("hdr"), "targets with different formats never share textures");
+        assertEquals(-1, slots.getInt("previous"), "targets read before being written hold data across renders");
+    }
+
+    @Test
+    void keptTargetsAreNotPooled() {
+        Object2IntMap<String> slots = TargetPool.assignSlots(createFactory(EFFECT_JSON), EFFECT, Set.of("b"));
+        assertEquals(-1, slots.getInt("b"));
+        assertEquals(0, slots.getInt("a"));
+        assertEquals(0, slots.getInt("c"));
+    }
+
+    @Test
+    void poolingCanBeDisabled() {
+        String json = EFFECT_JSON.replaceFirst("\\{", "{\"satin:pool_targets\": false,");
+        assertTrue(TargetPool.assignSlots(createFactory(json), EFFECT, Set.of()).isEmpty());
+    }
+
+    private static ResourceFactory createFactory(String effectJson) {
+        return id -> id.equals(EFFECT)
+                ? Optional.of(new Resource(null, () -> new ByteArrayInputStream(effectJson.getBytes(StandardCharsets.UTF_8))))
+                : Optional.empty();
+    }
+}